@@ -0,0 +1,52 @@
+package de.betacoding.mysql.benchmark;
+
+import de.betacoding.mysql.MySQLExecutionStrategy;
+import de.betacoding.mysql.MySQLQueryService;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Shares one database between the library service and a raw JDBC connection, so every suite can compare both paths.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class AbstractServiceBenchmark {
+    protected BenchmarkDatabase database;
+    protected MySQLQueryService service;
+    protected Connection rawConnection;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        this.database = new BenchmarkDatabase();
+        this.service = this.database.openService(4, MySQLExecutionStrategy.POOLED);
+        this.rawConnection = this.database.openConnection();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        this.rawConnection.close();
+        this.service.shutdown();
+        this.service.getPool().close();
+        this.database.close();
+    }
+
+    protected static long randomId() {
+        return ThreadLocalRandom.current().nextLong(BenchmarkDatabase.ROWS);
+    }
+}
@@ -0,0 +1,69 @@
+package de.betacoding.mysql.benchmark;
+
+import de.betacoding.mysql.MySQLBatchLoader;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Many callers looking up single rows at once, each with its own query or through a batch loader. The loader's figure
+// only pays off with concurrent callers, hence the threads. Its lookups, keys and queries are reported as secondary
+// results, keys divided by queries being the keys each query carried on average, and one per query the per-key baseline.
+@Threads(32)
+public class BatchLoaderBenchmark extends AbstractServiceBenchmark {
+    private MySQLBatchLoader<Long, String> loader;
+    // The loader's counters up to where the threads have reported them, so every query is reported by one thread only.
+    private final AtomicLong reportedLookups = new AtomicLong();
+    private final AtomicLong reportedKeys = new AtomicLong();
+    private final AtomicLong reportedQueries = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void createLoader() {
+        this.loader = this.service.batchLoader("bench_user", "id", Long.class, resultSet -> resultSet.getString("name"));
+    }
+
+    @Benchmark
+    public Optional<String> perKeyQuery() {
+        return this.service.executeQueryAsync(BenchmarkDatabase.SELECT_BY_ID,
+                resultSet -> resultSet.next() ? resultSet.getString(2) : null, randomId()).join();
+    }
+
+    @Benchmark
+    public Optional<String> batchLoader(LoaderCounters counters) {
+        return this.loader.load(randomId()).join();
+    }
+
+    private static long report(AtomicLong reported, long count) {
+        return Math.max(0, count - reported.getAndAccumulate(count, Math::max));
+    }
+
+    // JMH sums these over the threads and iterations of a trial.
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class LoaderCounters {
+        public long lookups;
+        public long keys;
+        public long queries;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.lookups = 0;
+            this.keys = 0;
+            this.queries = 0;
+        }
+
+        @TearDown(Level.Iteration)
+        public void collect(BatchLoaderBenchmark benchmark) {
+            this.lookups = report(benchmark.reportedLookups, benchmark.loader.getRequestedKeys());
+            this.keys = report(benchmark.reportedKeys, benchmark.loader.getLoadedKeys());
+            this.queries = report(benchmark.reportedQueries, benchmark.loader.getBatches());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package de.betacoding.mysql.benchmark;
+
+import de.betacoding.mysql.MySQLConnectionPool;
+import de.betacoding.mysql.MySQLExecutionStrategy;
+import de.betacoding.mysql.MySQLPoolSettings;
+import de.betacoding.mysql.MySQLQueryService;
+import de.betacoding.util.DebugLogger;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// In-memory H2 in MySQL mode stands in for a server so the suites run without network access.
+public final class BenchmarkDatabase {
+    public static final int ROWS = 10_000;
+    public static final String SELECT_BY_ID = "SELECT id, name, score FROM bench_user WHERE id = ?";
+    public static final String UPDATE_SCORE = "UPDATE bench_user SET score = score + 1 WHERE id = ?";
+
+    public static final DebugLogger SILENT_LOGGER = new DebugLogger() {
+        @Override
+        public void info(@NotNull String s) {
+        }
+
+        @Override
+        public void warning(@NotNull String s) {
+        }
+
+        @Override
+        public void severe(@NotNull String s) {
+        }
+
+        @Override
+        public void severe(@NotNull String s, @NotNull Throwable throwable) {
+        }
+    };
+
+    private static final AtomicInteger DATABASE_IDS = new AtomicInteger();
+
+    private final String url;
+    private final Connection keepAlive;
+
+    public BenchmarkDatabase() throws SQLException {
+        this.url = "jdbc:h2:mem:bench" + DATABASE_IDS.incrementAndGet() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        this.keepAlive = DriverManager.getConnection(this.url);
+
+        try (Statement statement = this.keepAlive.createStatement()) {
+            statement.execute("CREATE TABLE bench_user (id BIGINT PRIMARY KEY, name VARCHAR(64) NOT NULL, score INT NOT NULL)");
+            statement.execute("CREATE ALIAS BENCH_SLEEP FOR \"de.betacoding.mysql.benchmark.BenchmarkDatabase.sleep\"");
+        }
+        try (PreparedStatement statement = this.keepAlive.prepareStatement("INSERT INTO bench_user (id, name, score) VALUES (?, ?, ?)")) {
+            for (int id = 0; id < ROWS; id++) {
+                statement.setLong(1, id);
+                statement.setString(2, "user-" + id);
+                statement.setInt(3, id % 100);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    public @NotNull Connection openConnection() throws SQLException {
+        return DriverManager.getConnection(this.url);
+    }
+
+    public @NotNull MySQLConnectionPool openPool(int maxSize) throws SQLException {
+        MySQLPoolSettings settings = new MySQLPoolSettings(1, maxSize, Duration.ofMinutes(10), Duration.ofSeconds(30), false, 64);
+        MySQLConnectionPool pool = new MySQLConnectionPool(this::openConnection, settings, SILENT_LOGGER);
+        pool.start();
+        return pool;
+    }
+
+    public @NotNull MySQLQueryService openService(int maxSize, @NotNull MySQLExecutionStrategy executionStrategy) throws SQLException {
+        return new MySQLQueryService(this.openPool(maxSize), executionStrategy, null, null);
+    }
+
+    public void close() throws SQLException {
+        this.keepAlive.close();
+    }
+
+    // Called by H2 through the BENCH_SLEEP alias to simulate server-side latency.
+    public static int sleep(int millis) throws InterruptedException {
+        Thread.sleep(millis);
+        return millis;
+    }
+
+    public record User(long id, String name, int score) {
+    }
+
+    public static class UserBean {
+        private long id;
+        private String name;
+        private int score;
+
+        public long getId() {
+            return this.id;
+        }
+        public void setId(long id) {
+            this.id = id;
+        }
+        public String getName() {
+            return this.name;
+        }
+        public void setName(String name) {
+            this.name = name;
+        }
+        public int getScore() {
+            return this.score;
+        }
+        public void setScore(int score) {
+            this.score = score;
+        }
+    }
+}
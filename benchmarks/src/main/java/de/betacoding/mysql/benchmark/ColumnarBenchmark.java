@@ -0,0 +1,43 @@
+package de.betacoding.mysql.benchmark;
+
+import de.betacoding.mysql.MySQLColumnarResult;
+import de.betacoding.mysql.MySQLServiceException;
+import de.betacoding.util.ThrowableFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+// Pulls every row's numeric columns, boxed into lists versus primitive columns. Run with -prof gc to compare bytes per op.
+public class ColumnarBenchmark extends AbstractServiceBenchmark {
+    private static final String SELECT_ALL = "SELECT id, score FROM bench_user";
+
+    private static final ThrowableFunction<ResultSet, List<List<Long>>> BOXED = resultSet -> {
+        List<Long> ids = new ArrayList<>();
+        List<Long> scores = new ArrayList<>();
+        while (resultSet.next()) {
+            ids.add(resultSet.getLong(1));
+            scores.add(resultSet.getLong(2));
+        }
+        return List.of(ids, scores);
+    };
+    private static final ThrowableFunction<ResultSet, MySQLColumnarResult> COLUMNAR = MySQLColumnarResult.collect("id", "score");
+    private static final ThrowableFunction<ResultSet, MySQLColumnarResult> COLUMNAR_OFF_HEAP = MySQLColumnarResult.collectOffHeap("id", "score");
+
+    @Benchmark
+    public Optional<List<List<Long>>> boxedLists() throws MySQLServiceException {
+        return this.service.executeQuery(SELECT_ALL, BOXED);
+    }
+
+    @Benchmark
+    public Optional<MySQLColumnarResult> columnar() throws MySQLServiceException {
+        return this.service.executeQuery(SELECT_ALL, COLUMNAR);
+    }
+
+    @Benchmark
+    public Optional<MySQLColumnarResult> columnarOffHeap() throws MySQLServiceException {
+        return this.service.executeQuery(SELECT_ALL, COLUMNAR_OFF_HEAP);
+    }
+}
@@ -0,0 +1,65 @@
+package de.betacoding.mysql.benchmark;
+
+import de.betacoding.mysql.MySQLCompiledQuery;
+import de.betacoding.mysql.MySQLServiceException;
+import de.betacoding.util.ThrowableFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Optional;
+
+// Run with -prof gc and compare gc.alloc.rate.norm (bytes per call). The compiled path runs on the benchmark thread, so its
+// figure includes the driver's own allocations; the raw JDBC baseline with a reused statement isolates those. The varargs
+// path executes on the service's executor, so only the submitting side of it shows up in the per-thread numbers.
+public class CompiledQueryBenchmark extends AbstractServiceBenchmark {
+    private static final ThrowableFunction<ResultSet, Integer> SCORE = resultSet -> resultSet.next() ? resultSet.getInt(3) : null;
+
+    private MySQLCompiledQuery selectById;
+    private MySQLCompiledQuery updateScore;
+    private PreparedStatement rawSelectById;
+
+    @Setup(Level.Trial)
+    public void compile() throws SQLException {
+        this.selectById = this.service.compile(BenchmarkDatabase.SELECT_BY_ID);
+        this.updateScore = this.service.compile(BenchmarkDatabase.UPDATE_SCORE);
+        this.rawSelectById = this.rawConnection.prepareStatement(BenchmarkDatabase.SELECT_BY_ID);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeStatements() throws SQLException {
+        this.rawSelectById.close();
+    }
+
+    @Benchmark
+    public Optional<Integer> varargsQuery() throws MySQLServiceException {
+        return this.service.executeQuery(BenchmarkDatabase.SELECT_BY_ID, SCORE, randomId());
+    }
+
+    @Benchmark
+    public Optional<Integer> compiledQuery() throws MySQLServiceException {
+        return this.selectById.bind().setLong(1, randomId()).executeQuery(SCORE);
+    }
+
+    @Benchmark
+    public Integer rawJdbcQuery() throws Throwable {
+        this.rawSelectById.setLong(1, randomId());
+        try (ResultSet resultSet = this.rawSelectById.executeQuery()) {
+            return SCORE.apply(resultSet);
+        }
+    }
+
+    @Benchmark
+    public Integer varargsUpdate() throws MySQLServiceException {
+        return this.service.executeUpdate(BenchmarkDatabase.UPDATE_SCORE, randomId());
+    }
+
+    @Benchmark
+    public int compiledUpdate() throws MySQLServiceException {
+        return this.updateScore.bind().setLong(1, randomId()).executeUpdate();
+    }
+}
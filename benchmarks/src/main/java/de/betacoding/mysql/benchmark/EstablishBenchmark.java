@@ -0,0 +1,66 @@
+package de.betacoding.mysql.benchmark;
+
+import de.betacoding.mysql.MySQLConnectionPool;
+import de.betacoding.mysql.MySQLExecutionStrategy;
+import de.betacoding.mysql.MySQLQueryService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EstablishBenchmark {
+    private BenchmarkDatabase database;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        this.database = new BenchmarkDatabase();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        this.database.close();
+    }
+
+    @Benchmark
+    public boolean rawJdbc() throws SQLException {
+        try (Connection connection = this.database.openConnection()) {
+            return connection.isValid(1);
+        }
+    }
+
+    @Benchmark
+    public int pool() throws SQLException {
+        try (MySQLConnectionPool pool = this.database.openPool(1)) {
+            return pool.getIdleConnections();
+        }
+    }
+
+    @Benchmark
+    public int service() throws SQLException {
+        MySQLQueryService service = this.database.openService(1, MySQLExecutionStrategy.POOLED);
+        try {
+            return service.getPool().getIdleConnections();
+        } finally {
+            service.shutdown();
+            service.getPool().close();
+        }
+    }
+}
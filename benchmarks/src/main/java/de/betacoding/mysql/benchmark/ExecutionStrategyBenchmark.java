@@ -0,0 +1,81 @@
+package de.betacoding.mysql.benchmark;
+
+import de.betacoding.mysql.MySQLExecutionStrategy;
+import de.betacoding.mysql.MySQLQueryService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Fans out queries that each block for 1 ms on the server and measures how many complete per second per strategy.
+// VIRTUAL needs a JDK 21+ runtime: older ones fall back to a cached platform thread pool, so the VIRTUAL runs refuse to
+// start there rather than report that pool's numbers under the wrong name.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class ExecutionStrategyBenchmark {
+    private static final int FAN_OUT = 256;
+
+    @Param({"SEQUENTIAL", "POOLED", "VIRTUAL"})
+    public String strategy;
+
+    @Param({"1", "16", "64"})
+    public int connections;
+
+    private BenchmarkDatabase database;
+    private MySQLQueryService service;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        MySQLExecutionStrategy executionStrategy = switch (this.strategy) {
+            case "SEQUENTIAL" -> MySQLExecutionStrategy.SEQUENTIAL;
+            case "POOLED" -> MySQLExecutionStrategy.POOLED;
+            case "VIRTUAL" -> {
+                if (Runtime.version().feature() < 21) {
+                    throw new IllegalStateException("VIRTUAL needs a JDK 21+ runtime, this is " + Runtime.version());
+                }
+                yield MySQLExecutionStrategy.VIRTUAL;
+            }
+            default -> throw new IllegalArgumentException(this.strategy);
+        };
+        this.database = new BenchmarkDatabase();
+        this.service = this.database.openService(this.connections, executionStrategy);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        this.service.shutdown();
+        this.service.getPool().close();
+        this.database.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FAN_OUT)
+    public void fanOut() {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[FAN_OUT];
+        for (int i = 0; i < FAN_OUT; i++) {
+            CompletableFuture<Optional<Integer>> future = this.service.executeQueryAsync("SELECT BENCH_SLEEP(1)",
+                    resultSet -> resultSet.next() ? resultSet.getInt(1) : null);
+            futures[i] = future;
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+}
@@ -0,0 +1,74 @@
+package de.betacoding.mysql.benchmark;
+
+import de.betacoding.mysql.MySQLRowMapper;
+import de.betacoding.mysql.MySQLServiceException;
+import de.betacoding.util.ThrowableFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+// Maps a 100 row page into records, which makes the per-row mapper cost visible next to the round trip.
+public class MapperBenchmark extends AbstractServiceBenchmark {
+    private static final String SELECT_PAGE = "SELECT id, name, score FROM bench_user WHERE id >= ? ORDER BY id LIMIT 100";
+
+    private static final ThrowableFunction<ResultSet, List<BenchmarkDatabase.User>> BY_NAME = resultSet -> {
+        List<BenchmarkDatabase.User> users = new ArrayList<>();
+        while (resultSet.next()) {
+            users.add(new BenchmarkDatabase.User(resultSet.getLong("id"), resultSet.getString("name"), resultSet.getInt("score")));
+        }
+        return users;
+    };
+    private static final ThrowableFunction<ResultSet, List<BenchmarkDatabase.User>> BY_INDEX = resultSet -> {
+        List<BenchmarkDatabase.User> users = new ArrayList<>();
+        while (resultSet.next()) {
+            users.add(new BenchmarkDatabase.User(resultSet.getLong(1), resultSet.getString(2), resultSet.getInt(3)));
+        }
+        return users;
+    };
+    private static final ThrowableFunction<ResultSet, List<BenchmarkDatabase.User>> GENERATED_RECORD = MySQLRowMapper.of(BenchmarkDatabase.User.class).toList();
+    private static final ThrowableFunction<ResultSet, List<BenchmarkDatabase.UserBean>> GENERATED_BEAN = MySQLRowMapper.of(BenchmarkDatabase.UserBean.class).toList();
+
+    private static long pageStart() {
+        return randomId() % (BenchmarkDatabase.ROWS - 100);
+    }
+
+    @Benchmark
+    public Optional<List<BenchmarkDatabase.User>> syncByName() throws MySQLServiceException {
+        return this.service.executeQuery(SELECT_PAGE, BY_NAME, pageStart());
+    }
+
+    @Benchmark
+    public Optional<List<BenchmarkDatabase.User>> syncByIndex() throws MySQLServiceException {
+        return this.service.executeQuery(SELECT_PAGE, BY_INDEX, pageStart());
+    }
+
+    @Benchmark
+    public Optional<List<BenchmarkDatabase.User>> syncGeneratedRecord() throws MySQLServiceException {
+        return this.service.executeQuery(SELECT_PAGE, GENERATED_RECORD, pageStart());
+    }
+
+    @Benchmark
+    public Optional<List<BenchmarkDatabase.UserBean>> syncGeneratedBean() throws MySQLServiceException {
+        return this.service.executeQuery(SELECT_PAGE, GENERATED_BEAN, pageStart());
+    }
+
+    @Benchmark
+    public Optional<List<BenchmarkDatabase.User>> asyncByIndex() {
+        return this.service.executeQueryAsync(SELECT_PAGE, BY_INDEX, pageStart()).join();
+    }
+
+    @Benchmark
+    public List<BenchmarkDatabase.User> rawJdbc() throws Throwable {
+        try (PreparedStatement statement = this.rawConnection.prepareStatement(SELECT_PAGE)) {
+            statement.setLong(1, pageStart());
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return BY_INDEX.apply(resultSet);
+            }
+        }
+    }
+}
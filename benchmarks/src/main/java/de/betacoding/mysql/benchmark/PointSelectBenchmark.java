@@ -0,0 +1,33 @@
+package de.betacoding.mysql.benchmark;
+
+import de.betacoding.mysql.MySQLServiceException;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Optional;
+
+public class PointSelectBenchmark extends AbstractServiceBenchmark {
+    @Benchmark
+    public Optional<String> sync() throws MySQLServiceException {
+        return this.service.executeQuery(BenchmarkDatabase.SELECT_BY_ID,
+                resultSet -> resultSet.next() ? resultSet.getString(2) : null, randomId());
+    }
+
+    @Benchmark
+    public Optional<String> async() {
+        return this.service.executeQueryAsync(BenchmarkDatabase.SELECT_BY_ID,
+                resultSet -> resultSet.next() ? resultSet.getString(2) : null, randomId()).join();
+    }
+
+    @Benchmark
+    public String rawJdbc() throws SQLException {
+        try (PreparedStatement statement = this.rawConnection.prepareStatement(BenchmarkDatabase.SELECT_BY_ID)) {
+            statement.setLong(1, randomId());
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getString(2) : null;
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package de.betacoding.mysql.benchmark;
+
+import de.betacoding.mysql.MySQLServiceException;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+// A two statement transaction: through transmit, through an inline session, and by hand on a raw connection.
+public class TransmitBenchmark extends AbstractServiceBenchmark {
+    @Benchmark
+    public void transmit() {
+        final long first = randomId();
+        final long second = randomId();
+        this.service.transmit(() -> {
+            this.service.executeUpdate(BenchmarkDatabase.UPDATE_SCORE, first);
+            this.service.executeUpdate(BenchmarkDatabase.UPDATE_SCORE, second);
+        }).join();
+    }
+
+    @Benchmark
+    public int session() throws MySQLServiceException {
+        final long first = randomId();
+        final long second = randomId();
+        return this.service.transaction(transaction ->
+                transaction.executeUpdate(BenchmarkDatabase.UPDATE_SCORE, first)
+                        + transaction.executeUpdate(BenchmarkDatabase.UPDATE_SCORE, second));
+    }
+
+    @Benchmark
+    public void rawJdbc() throws SQLException {
+        this.rawConnection.setAutoCommit(false);
+        try (PreparedStatement statement = this.rawConnection.prepareStatement(BenchmarkDatabase.UPDATE_SCORE)) {
+            statement.setLong(1, randomId());
+            statement.executeUpdate();
+            statement.setLong(1, randomId());
+            statement.executeUpdate();
+            this.rawConnection.commit();
+        } catch (SQLException exception) {
+            this.rawConnection.rollback();
+            throw exception;
+        } finally {
+            this.rawConnection.setAutoCommit(true);
+        }
+    }
+}
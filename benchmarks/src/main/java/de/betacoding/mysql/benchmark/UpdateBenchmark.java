@@ -0,0 +1,27 @@
+package de.betacoding.mysql.benchmark;
+
+import de.betacoding.mysql.MySQLServiceException;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+public class UpdateBenchmark extends AbstractServiceBenchmark {
+    @Benchmark
+    public Integer sync() throws MySQLServiceException {
+        return this.service.executeUpdate(BenchmarkDatabase.UPDATE_SCORE, randomId());
+    }
+
+    @Benchmark
+    public Integer async() {
+        return this.service.executeUpdateAsync(BenchmarkDatabase.UPDATE_SCORE, randomId()).join();
+    }
+
+    @Benchmark
+    public int rawJdbc() throws SQLException {
+        try (PreparedStatement statement = this.rawConnection.prepareStatement(BenchmarkDatabase.UPDATE_SCORE)) {
+            statement.setLong(1, randomId());
+            return statement.executeUpdate();
+        }
+    }
+}
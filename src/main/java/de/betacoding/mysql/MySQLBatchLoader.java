@@ -0,0 +1,275 @@
+package de.betacoding.mysql;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.betacoding.util.ThrowableFunction;
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+// Coalesces point lookups by key. Keys requested within the window, or until maxBatchSize distinct keys are waiting, are
+// fetched with one WHERE key IN (...) query and the rows handed back to each caller by their key. A key requested again
+// while its batch is waiting shares that batch's lookup.
+//
+// The server compares the keys in the column's collation, while rows are matched back to callers in Java. The key column
+// is read as the key type, and the default key normalizer bridges MySQL's default collations: strings are matched
+// without case and trailing spaces, and numbers by value. Columns with a binary or case-sensitive collation need
+// setKeyNormalizer(Function.identity()), and accent-insensitive matches are not bridged at all.
+public class MySQLBatchLoader<K, V> {
+    public static final int DEFAULT_MAX_BATCH_SIZE = 128;
+    public static final Duration DEFAULT_WINDOW = Duration.ofMillis(1);
+
+    // Dispatching a batch only hands its query to the scheduler without waiting, so a single thread serves every loader.
+    private static final ScheduledThreadPoolExecutor TIMER = createTimer();
+
+    private final MySQLQueryService service;
+    private final String table;
+    private final String keyColumn;
+    private final Class<K> keyType;
+    private final ThrowableFunction<ResultSet, V> rowMapper;
+    private final int maxBatchSize;
+    private final long windowNanos;
+    private volatile List<String> columns = List.of();
+    private volatile Function<Object, Object> keyNormalizer = MySQLBatchLoader::normalizeKey;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private Batch<K, V> pending;
+
+    private final LongAdder requestedKeys = new LongAdder();
+    private final LongAdder loadedKeys = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    protected MySQLBatchLoader(@NotNull MySQLQueryService service,
+                               @NotNull String table,
+                               @NotNull String keyColumn,
+                               @NotNull Class<K> keyType,
+                               @NotNull ThrowableFunction<ResultSet, V> rowMapper,
+                               int maxBatchSize,
+                               @NotNull Duration window) {
+        Preconditions.checkArgument(maxBatchSize > 0, "Max batch size must be positive");
+        Preconditions.checkArgument(!window.isNegative(), "Window cannot be negative");
+        this.service = service;
+        this.table = table;
+        this.keyColumn = keyColumn;
+        this.keyType = keyType;
+        this.rowMapper = rowMapper;
+        this.maxBatchSize = maxBatchSize;
+        this.windowNanos = window.toNanos();
+    }
+
+    private static @NotNull ScheduledThreadPoolExecutor createTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                .setNameFormat("mysql-batch-loader-%d")
+                .setDaemon(true)
+                .build());
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    // Selects only these columns, plus the key column, instead of all of them.
+    public @NotNull MySQLBatchLoader<K, V> setColumns(@NotNull String... columns) {
+        this.columns = List.of(columns);
+        return this;
+    }
+
+    // Maps keys, both the callers' and the ones read from the rows, to the value they are matched by. Keys the
+    // normalizer maps to the same value share a lookup.
+    public @NotNull MySQLBatchLoader<K, V> setKeyNormalizer(@NotNull Function<Object, Object> keyNormalizer) {
+        this.keyNormalizer = keyNormalizer;
+        return this;
+    }
+
+    static @NotNull Object normalizeKey(@NotNull Object key) {
+        if (key instanceof String string) return string.stripTrailing().toLowerCase(Locale.ROOT);
+        if (key instanceof Number number) {
+            try {
+                return new BigDecimal(number.toString()).stripTrailingZeros();
+            } catch (NumberFormatException exception) {
+                // NaN and the infinities.
+                return number;
+            }
+        }
+        return key;
+    }
+
+    // Completes with the row of the key, or empty if there is none. Runs outside any transaction of the caller, and a
+    // batch that finds its scheduler lane full fails instead of waiting for room.
+    public @NotNull CompletableFuture<Optional<V>> load(@NotNull K key) {
+        Preconditions.checkNotNull(key, "Key cannot be null");
+        this.requestedKeys.increment();
+        final Object normalized = this.keyNormalizer.apply(key);
+
+        Batch<K, V> full = null;
+        CompletableFuture<Optional<V>> future;
+        this.lock.lock();
+        try {
+            if (this.pending == null) {
+                this.pending = new Batch<>();
+                final Batch<K, V> batch = this.pending;
+                batch.timer = TIMER.schedule(() -> this.dispatch(batch), this.windowNanos, TimeUnit.NANOSECONDS);
+            }
+
+            future = this.pending.futures.get(normalized);
+            if (future != null) {
+                // Callers must not be able to complete or cancel each other's lookups.
+                return future.copy();
+            }
+            future = new CompletableFuture<>();
+            this.pending.futures.put(normalized, future);
+            this.pending.keys.add(key);
+            if (this.pending.futures.size() >= this.maxBatchSize) {
+                full = this.pending;
+                this.pending = null;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+
+        if (full != null) {
+            full.timer.cancel(false);
+            this.execute(full);
+        }
+        return future;
+    }
+
+    // Completes with the rows of the keys that exist.
+    public @NotNull CompletableFuture<Map<K, V>> loadAll(@NotNull Collection<? extends K> keys) {
+        final Map<K, CompletableFuture<Optional<V>>> futures = new LinkedHashMap<>();
+        for (K key : keys) {
+            futures.computeIfAbsent(key, this::load);
+        }
+        return CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new)).thenApply($ -> {
+            final Map<K, V> rows = new LinkedHashMap<>();
+            futures.forEach((key, future) -> future.join().ifPresent(row -> rows.put(key, row)));
+            return rows;
+        });
+    }
+
+    // Sends the waiting keys now instead of at the end of the window.
+    public void dispatch() {
+        final Batch<K, V> batch;
+        this.lock.lock();
+        try {
+            batch = this.pending;
+        } finally {
+            this.lock.unlock();
+        }
+        if (batch != null) this.dispatch(batch);
+    }
+
+    private void dispatch(@NotNull Batch<K, V> batch) {
+        this.lock.lock();
+        try {
+            // The batch may have filled up and left already.
+            if (this.pending != batch) return;
+            this.pending = null;
+        } finally {
+            this.lock.unlock();
+        }
+        batch.timer.cancel(false);
+        this.execute(batch);
+    }
+
+    private void execute(@NotNull Batch<K, V> batch) {
+        final List<K> keys = batch.keys;
+        final Function<Object, Object> keyNormalizer = this.keyNormalizer;
+        this.batches.increment();
+        this.loadedKeys.add(keys.size());
+
+        // Padding the list to the next power of two with repeats of the last key keeps the number of distinct statements,
+        // and so of prepared statements per connection, down to a handful.
+        final int size = keys.size();
+        final Object[] values = new Object[Math.min(size == 1 ? 1 : Integer.highestOneBit(size - 1) << 1, this.maxBatchSize)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = keys.get(Math.min(i, size - 1));
+        }
+
+        final ThrowableFunction<ResultSet, Map<Object, V>> mapper = resultSet -> {
+            final Map<Object, V> rows = new HashMap<>();
+            long read = 0;
+            while (resultSet.next()) {
+                read++;
+                final K key = resultSet.getObject(this.keyColumn, this.keyType);
+                if (key != null) rows.putIfAbsent(keyNormalizer.apply(key), this.rowMapper.apply(resultSet));
+            }
+            MySQLMappedRows.report(read);
+            return rows;
+        };
+
+        this.service.executeDetachedQueryAsync(this.sqlString(values.length), mapper, values).whenComplete((rows, exception) -> {
+            if (exception != null) {
+                batch.futures.values().forEach(future -> future.completeExceptionally(exception));
+                return;
+            }
+            final Map<Object, V> found = rows.orElse(Map.of());
+            batch.futures.forEach((key, future) -> future.complete(Optional.ofNullable(found.get(key))));
+        });
+    }
+
+    private @NotNull String sqlString(int parameters) {
+        final String key = MySQLQueryService.quoteIdentifier(this.keyColumn);
+        final List<String> columns = this.columns;
+
+        final StringJoiner select = new StringJoiner(", ");
+        if (columns.isEmpty()) {
+            select.add("*");
+        } else {
+            if (columns.stream().noneMatch(this.keyColumn::equalsIgnoreCase)) select.add(key);
+            columns.forEach(column -> select.add(MySQLQueryService.quoteIdentifier(column)));
+        }
+
+        final StringJoiner placeholders = new StringJoiner(", ", "(", ")");
+        for (int i = 0; i < parameters; i++) {
+            placeholders.add("?");
+        }
+        return "SELECT " + select + " FROM " + MySQLQueryService.quoteIdentifier(this.table) + " WHERE " + key + " IN " + placeholders;
+    }
+
+    public @NotNull Class<K> getKeyType() {
+        return this.keyType;
+    }
+    public int getMaxBatchSize() {
+        return this.maxBatchSize;
+    }
+    public @NotNull Duration getWindow() {
+        return Duration.ofNanos(this.windowNanos);
+    }
+    // Calls to load, including the ones that shared a lookup.
+    public long getRequestedKeys() {
+        return this.requestedKeys.sum();
+    }
+    // Distinct keys sent to the server.
+    public long getLoadedKeys() {
+        return this.loadedKeys.sum();
+    }
+    // Queries sent to the server.
+    public long getBatches() {
+        return this.batches.sum();
+    }
+
+    private static class Batch<K, V> {
+        // Guarded by the loader's lock until the batch is taken out of it. Futures are keyed by the normalized key, and
+        // keys holds the first key the callers passed for each of them.
+        private final Map<Object, CompletableFuture<Optional<V>>> futures = new LinkedHashMap<>();
+        private final List<K> keys = new ArrayList<>();
+        private ScheduledFuture<?> timer;
+    }
+}
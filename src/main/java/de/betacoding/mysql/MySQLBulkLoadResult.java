@@ -0,0 +1,45 @@
+package de.betacoding.mysql;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+
+public class MySQLBulkLoadResult {
+    private final long rowsSent;
+    private final long rowsLoaded;
+    private final long bytesSent;
+    private final Duration elapsed;
+
+    protected MySQLBulkLoadResult(long rowsSent, long rowsLoaded, long bytesSent, @NotNull Duration elapsed) {
+        this.rowsSent = rowsSent;
+        this.rowsLoaded = rowsLoaded;
+        this.bytesSent = bytesSent;
+        this.elapsed = elapsed;
+    }
+
+    public long getRowsSent() {
+        return this.rowsSent;
+    }
+    // As reported by the server; rows skipped because of duplicate keys or conversion errors are not counted.
+    public long getRowsLoaded() {
+        return this.rowsLoaded;
+    }
+    public long getBytesSent() {
+        return this.bytesSent;
+    }
+    public @NotNull Duration getElapsed() {
+        return this.elapsed;
+    }
+
+    public double getRowsPerSecond() {
+        return this.perSecond(this.rowsLoaded);
+    }
+    public double getBytesPerSecond() {
+        return this.perSecond(this.bytesSent);
+    }
+
+    private double perSecond(long amount) {
+        long nanos = this.elapsed.toNanos();
+        return nanos == 0 ? 0 : amount * 1_000_000_000D / nanos;
+    }
+}
@@ -0,0 +1,255 @@
+package de.betacoding.mysql;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.RecordComponent;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+// Encodes rows on demand into the tab-separated format LOAD DATA expects by default (ESCAPED BY '\\', LINES TERMINATED BY '\n').
+// Only the rows needed to answer the current read are encoded, so memory stays bounded by the buffer size.
+class MySQLBulkLoadStream extends InputStream {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS");
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss.SSSSSS");
+    // Connector/J 8 and later, then 5.1.
+    private static final String[] DRIVER_STATEMENTS = {"com.mysql.cj.jdbc.JdbcStatement", "com.mysql.jdbc.Statement"};
+
+    private final Iterator<Object[]> rows;
+    private final int columnCount;
+
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private long rowCount;
+    private long byteCount;
+    private RuntimeException failure;
+
+    MySQLBulkLoadStream(@NotNull Iterator<Object[]> rows, int columnCount) {
+        this.rows = rows;
+        this.columnCount = columnCount;
+    }
+
+    // Makes the driver answer the server's file request with this stream instead of reading a local file.
+    void attachTo(@NotNull Statement statement) throws SQLException {
+        for (String className : DRIVER_STATEMENTS) {
+            final Class<?> type;
+            try {
+                type = Class.forName(className, false, statement.getClass().getClassLoader());
+            } catch (ClassNotFoundException exception) {
+                continue;
+            }
+            if (!statement.isWrapperFor(type)) continue;
+
+            try {
+                type.getMethod("setLocalInfileInputStream", InputStream.class).invoke(statement.unwrap(type), this);
+                return;
+            } catch (ReflectiveOperationException exception) {
+                throw new SQLException("Failed to attach the bulk load stream to " + className, exception);
+            }
+        }
+        throw new SQLFeatureNotSupportedException("Bulk loading needs MySQL Connector/J");
+    }
+
+    static @NotNull List<String> recordColumns(@NotNull Class<? extends Record> type) {
+        return Arrays.stream(type.getRecordComponents()).map(RecordComponent::getName).toList();
+    }
+
+    // Reads record components through their accessor handles, in declaration order.
+    static <R extends Record> @NotNull Function<R, Object[]> recordValues(@NotNull Class<R> type) {
+        final RecordComponent[] components = type.getRecordComponents();
+        final MethodHandle[] accessors = new MethodHandle[components.length];
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            for (int i = 0; i < components.length; i++) {
+                accessors[i] = lookup.unreflect(components[i].getAccessor()).asType(MethodType.methodType(Object.class, Record.class));
+            }
+        } catch (IllegalAccessException exception) {
+            throw new IllegalArgumentException("Cannot access the components of " + type.getName(), exception);
+        }
+
+        return record -> {
+            Object[] values = new Object[accessors.length];
+            try {
+                for (int i = 0; i < accessors.length; i++) {
+                    values[i] = accessors[i].invokeExact((Record) record);
+                }
+            } catch (RuntimeException | Error exception) {
+                throw exception;
+            } catch (Throwable exception) {
+                throw new IllegalStateException(exception);
+            }
+            return values;
+        };
+    }
+
+    long getRowCount() {
+        return this.rowCount;
+    }
+    long getByteCount() {
+        return this.byteCount;
+    }
+    // Set when a row could not be encoded, in which case the driver was cut off in the middle of the transfer.
+    RuntimeException getFailure() {
+        return this.failure;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (this.position == this.limit && !this.fill()) return -1;
+        return this.buffer[this.position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte @NotNull [] target, int offset, int length) throws IOException {
+        if (length == 0) return 0;
+        if (this.position == this.limit && !this.fill()) return -1;
+
+        int count = Math.min(length, this.limit - this.position);
+        System.arraycopy(this.buffer, this.position, target, offset, count);
+        this.position += count;
+        return count;
+    }
+
+    // The driver only expects IOExceptions from the stream, so bad rows and failing iterators are reported as one.
+    private boolean fill() throws IOException {
+        this.position = 0;
+        this.limit = 0;
+        try {
+            while (this.limit < BUFFER_SIZE && this.rows.hasNext()) {
+                this.encodeRow(this.rows.next());
+            }
+        } catch (RuntimeException exception) {
+            this.failure = exception;
+            throw new IOException("Failed to encode row " + (this.rowCount + 1) + " for bulk loading", exception);
+        }
+        this.byteCount += this.limit;
+        return this.limit > 0;
+    }
+
+    private void encodeRow(Object @NotNull [] row) {
+        if (row.length != this.columnCount) {
+            throw new IllegalArgumentException("Row " + (this.rowCount + 1) + " has " + row.length + " values, expected " + this.columnCount);
+        }
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) this.put((byte) '\t');
+            this.encodeValue(row[i]);
+        }
+        this.put((byte) '\n');
+        this.rowCount++;
+    }
+
+    private void encodeValue(Object value) {
+        if (value == null) {
+            this.put((byte) '\\');
+            this.put((byte) 'N');
+        } else if (value instanceof String string) {
+            this.putEscaped(string);
+        } else if (value instanceof Boolean bool) {
+            this.put((byte) (bool ? '1' : '0'));
+        } else if (value instanceof BigDecimal decimal) {
+            this.putAscii(decimal.toPlainString());
+        } else if ((value instanceof Double || value instanceof Float) && !Double.isFinite(((Number) value).doubleValue())) {
+            throw new IllegalArgumentException("MySQL cannot store " + value + " in row " + (this.rowCount + 1));
+        } else if (value instanceof Number number) {
+            this.putAscii(number.toString());
+        } else if (value instanceof byte[] bytes) {
+            for (byte b : bytes) {
+                this.putEscaped(b);
+            }
+        } else if (value instanceof LocalDateTime dateTime) {
+            this.putAscii(DATE_TIME.format(dateTime));
+        } else if (value instanceof Timestamp timestamp) {
+            this.putAscii(DATE_TIME.format(timestamp.toLocalDateTime()));
+        } else if (value instanceof LocalTime time) {
+            this.putAscii(TIME.format(time));
+        } else if (value instanceof OffsetDateTime || value instanceof ZonedDateTime || value instanceof OffsetTime || value instanceof Instant) {
+            // LOAD DATA has no notion of offsets, and which local time is meant depends on the column and session.
+            throw new IllegalArgumentException("Convert " + value.getClass().getSimpleName() + " values to LocalDateTime or LocalTime before bulk loading them");
+        } else if (value instanceof Enum<?> constant) {
+            this.putEscaped(constant.name());
+        } else {
+            this.putEscaped(value.toString());
+        }
+    }
+
+    private void putAscii(@NotNull String string) {
+        this.ensure(string.length());
+        for (int i = 0; i < string.length(); i++) {
+            this.buffer[this.limit++] = (byte) string.charAt(i);
+        }
+    }
+
+    // Encodes UTF-8 by hand so strings are escaped without an intermediate byte array.
+    private void putEscaped(@NotNull String string) {
+        this.ensure(string.length() * 2);
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                this.putEscaped((byte) c);
+            } else if (c < 0x800) {
+                this.put((byte) (0xC0 | (c >> 6)));
+                this.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < string.length() && Character.isLowSurrogate(string.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, string.charAt(++i));
+                this.put((byte) (0xF0 | (codePoint >> 18)));
+                this.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                this.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                this.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                this.put((byte) '?');
+            } else {
+                this.put((byte) (0xE0 | (c >> 12)));
+                this.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                this.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    private void putEscaped(byte b) {
+        switch (b) {
+            case '\\' -> this.putPair('\\');
+            case '\t' -> this.putPair('t');
+            case '\n' -> this.putPair('n');
+            case '\r' -> this.putPair('r');
+            case 0 -> this.putPair('0');
+            default -> this.put(b);
+        }
+    }
+
+    private void putPair(char escaped) {
+        this.put((byte) '\\');
+        this.put((byte) escaped);
+    }
+
+    private void put(byte b) {
+        if (this.limit == this.buffer.length) this.ensure(1);
+        this.buffer[this.limit++] = b;
+    }
+
+    // A single oversized row may grow the buffer past its nominal size.
+    private void ensure(int additional) {
+        if (this.limit + additional > this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(this.limit + additional, this.buffer.length * 2));
+        }
+    }
+}
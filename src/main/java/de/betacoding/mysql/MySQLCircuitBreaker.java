@@ -0,0 +1,66 @@
+package de.betacoding.mysql;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Opens after a run of consecutive connection failures or timeouts and fails fast until the open duration has passed. Then one caller
+// per open duration is let through as a probe; its success closes the breaker again.
+public class MySQLCircuitBreaker {
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private static final long CLOSED = Long.MIN_VALUE;
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong openUntil = new AtomicLong(CLOSED);
+    private final AtomicLong rejected = new AtomicLong();
+
+    protected MySQLCircuitBreaker(@NotNull MySQLResiliencePolicy policy) {
+        this.failureThreshold = policy.getFailureThreshold();
+        this.openNanos = policy.getOpenDuration().toNanos();
+    }
+
+    public @NotNull State getState() {
+        long until = this.openUntil.get();
+        if (until == CLOSED) return State.CLOSED;
+        return System.nanoTime() - until < 0 ? State.OPEN : State.HALF_OPEN;
+    }
+    public long getRejectedCalls() {
+        return this.rejected.get();
+    }
+
+    protected void acquirePermission() throws MySQLCircuitOpenException {
+        long until = this.openUntil.get();
+        if (until == CLOSED) return;
+
+        long now = System.nanoTime();
+        if (now - until >= 0 && this.openUntil.compareAndSet(until, now + this.openNanos)) return;
+
+        this.rejected.incrementAndGet();
+        throw new MySQLCircuitOpenException("Circuit breaker is open after " + this.consecutiveFailures.get() + " consecutive connection failures or timeouts");
+    }
+
+    protected void onSuccess() {
+        if (this.consecutiveFailures.get() != 0) this.consecutiveFailures.set(0);
+        if (this.openUntil.get() != CLOSED) this.openUntil.set(CLOSED);
+    }
+
+    protected void onFailure(@NotNull MySQLErrorKind kind) {
+        if (kind == MySQLErrorKind.CLIENT_TIMEOUT) return;
+        // Any answer from the server, even an error, shows it is reachable. A timeout is no answer at all.
+        if (kind != MySQLErrorKind.CONNECTION && kind != MySQLErrorKind.TIMEOUT) {
+            this.onSuccess();
+            return;
+        }
+        if (this.consecutiveFailures.incrementAndGet() >= this.failureThreshold && this.openUntil.get() == CLOSED) {
+            this.openUntil.compareAndSet(CLOSED, System.nanoTime() + this.openNanos);
+        }
+    }
+}
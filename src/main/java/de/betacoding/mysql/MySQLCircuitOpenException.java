@@ -0,0 +1,11 @@
+package de.betacoding.mysql;
+
+import java.sql.SQLTransientConnectionException;
+
+public class MySQLCircuitOpenException extends SQLTransientConnectionException {
+    private static final long serialVersionUID = 1L;
+
+    public MySQLCircuitOpenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,13 @@
+package de.betacoding.mysql;
+
+import java.sql.SQLTimeoutException;
+
+// A timeout that ran out before the statement reached the server, such as waiting for a pooled connection. It says
+// nothing about the server's health.
+public class MySQLClientTimeoutException extends SQLTimeoutException {
+    private static final long serialVersionUID = 1L;
+
+    public MySQLClientTimeoutException(String message) {
+        super(message);
+    }
+}
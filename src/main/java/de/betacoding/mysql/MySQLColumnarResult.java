@@ -0,0 +1,335 @@
+package de.betacoding.mysql;
+
+import com.google.common.base.Preconditions;
+import de.betacoding.util.ThrowableFunction;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Materializes integer and floating-point columns into primitive arrays (or direct buffers) with a null bitmap per column,
+// instead of one boxed object per cell. Every other column, DECIMAL included, is kept as objects.
+public class MySQLColumnarResult {
+    private static final int INITIAL_NULL_WORDS = 16;
+
+    private final Column[] columns;
+    private final int rowCount;
+
+    private MySQLColumnarResult(Column @NotNull [] columns, int rowCount) {
+        this.columns = columns;
+        this.rowCount = rowCount;
+    }
+
+    // Reads the given columns (all columns when none are given) onto the heap. Pass the result to executeQuery.
+    public static @NotNull ThrowableFunction<ResultSet, MySQLColumnarResult> collect(final String... labels) {
+        return resultSet -> read(resultSet, false, labels);
+    }
+
+    // Like collect, but keeps the values in direct buffers outside the Java heap.
+    public static @NotNull ThrowableFunction<ResultSet, MySQLColumnarResult> collectOffHeap(final String... labels) {
+        return resultSet -> read(resultSet, true, labels);
+    }
+
+    private static @NotNull MySQLColumnarResult read(@NotNull ResultSet resultSet, boolean offHeap, String @NotNull [] labels) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        int[] indexes = resolve(metaData, labels);
+
+        Column[] columns = new Column[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            String label = metaData.getColumnLabel(indexes[i]);
+            columns[i] = switch (kindOf(metaData, indexes[i])) {
+                case LONG -> new LongColumn(label, offHeap);
+                case DOUBLE -> new DoubleColumn(label, offHeap);
+                case OBJECT -> new ObjectColumn(label);
+            };
+        }
+
+        int rowCount = 0;
+        while (resultSet.next()) {
+            for (int i = 0; i < columns.length; i++) {
+                columns[i].read(resultSet, indexes[i], rowCount);
+            }
+            rowCount++;
+        }
+        MySQLMappedRows.report(rowCount);
+        return new MySQLColumnarResult(columns, rowCount);
+    }
+
+    private static int @NotNull [] resolve(@NotNull ResultSetMetaData metaData, String @NotNull [] labels) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        if (labels.length == 0) {
+            int[] indexes = new int[columnCount];
+            Arrays.setAll(indexes, i -> i + 1);
+            return indexes;
+        }
+
+        int[] indexes = new int[labels.length];
+        next:
+        for (int i = 0; i < labels.length; i++) {
+            for (int column = 1; column <= columnCount; column++) {
+                if (metaData.getColumnLabel(column).equalsIgnoreCase(labels[i])) {
+                    indexes[i] = column;
+                    continue next;
+                }
+            }
+            throw new IllegalArgumentException("Result set has no column '" + labels[i] + "'");
+        }
+        return indexes;
+    }
+
+    private static @NotNull Kind kindOf(@NotNull ResultSetMetaData metaData, int column) throws SQLException {
+        return switch (metaData.getColumnType(column)) {
+            case Types.BIT, Types.BOOLEAN, Types.TINYINT, Types.SMALLINT, Types.INTEGER -> Kind.LONG;
+            // BIGINT UNSIGNED goes past Long.MAX_VALUE, so it stays a BigInteger.
+            case Types.BIGINT -> metaData.isSigned(column) ? Kind.LONG : Kind.OBJECT;
+            case Types.REAL, Types.FLOAT, Types.DOUBLE -> Kind.DOUBLE;
+            // DECIMAL and NUMERIC stay exact as BigDecimal; cast them to DOUBLE in the query to get a primitive column.
+            default -> Kind.OBJECT;
+        };
+    }
+
+    public int getRowCount() {
+        return this.rowCount;
+    }
+    public int getColumnCount() {
+        return this.columns.length;
+    }
+
+    public @NotNull Column getColumn(int index) {
+        Preconditions.checkElementIndex(index, this.columns.length, "Column index");
+        return this.columns[index];
+    }
+    public @NotNull Column getColumn(@NotNull String label) {
+        for (Column column : this.columns) {
+            if (column.label.equalsIgnoreCase(label)) return column;
+        }
+        throw new IllegalArgumentException("Result has no column '" + label + "'");
+    }
+
+    public @NotNull LongColumn getLongColumn(@NotNull String label) {
+        return this.typed(label, LongColumn.class);
+    }
+    public @NotNull DoubleColumn getDoubleColumn(@NotNull String label) {
+        return this.typed(label, DoubleColumn.class);
+    }
+    public @NotNull ObjectColumn getObjectColumn(@NotNull String label) {
+        return this.typed(label, ObjectColumn.class);
+    }
+
+    private <C extends Column> @NotNull C typed(@NotNull String label, @NotNull Class<C> type) {
+        Column column = this.getColumn(label);
+        if (!type.isInstance(column)) {
+            throw new IllegalArgumentException("Column '" + label + "' is a " + column.getClass().getSimpleName() + ", not a " + type.getSimpleName());
+        }
+        return type.cast(column);
+    }
+
+    // Approximate bytes held by primitive values, null bitmaps and object references, on and off heap.
+    public long getFootprint() {
+        long footprint = 0;
+        for (Column column : this.columns) {
+            footprint += column.getFootprint();
+        }
+        return footprint;
+    }
+
+    private enum Kind {
+        LONG, DOUBLE, OBJECT
+    }
+
+    public abstract static class Column {
+        private final String label;
+        private long[] nulls = new long[INITIAL_NULL_WORDS];
+        protected int size;
+
+        private Column(@NotNull String label) {
+            this.label = label;
+        }
+
+        public @NotNull String getLabel() {
+            return this.label;
+        }
+        public int size() {
+            return this.size;
+        }
+
+        public boolean isNull(int row) {
+            Preconditions.checkElementIndex(row, this.size, "Row");
+            return (this.nulls[row >>> 6] & (1L << row)) != 0;
+        }
+
+        protected abstract void read(@NotNull ResultSet resultSet, int column, int row) throws SQLException;
+
+        protected void markNull(int row) {
+            int word = row >>> 6;
+            if (word >= this.nulls.length) {
+                this.nulls = Arrays.copyOf(this.nulls, Math.max(word + 1, this.nulls.length + (this.nulls.length >> 1)));
+            }
+            this.nulls[word] |= 1L << row;
+        }
+
+        protected long getFootprint() {
+            return (long) this.nulls.length * Long.BYTES;
+        }
+    }
+
+    public static class LongColumn extends Column {
+        private final Int64Storage values;
+
+        private LongColumn(@NotNull String label, boolean offHeap) {
+            super(label);
+            this.values = new Int64Storage(offHeap);
+        }
+
+        @Override
+        protected void read(@NotNull ResultSet resultSet, int column, int row) throws SQLException {
+            long value = resultSet.getLong(column);
+            if (resultSet.wasNull()) this.markNull(row);
+            this.values.set(row, value);
+            this.size = row + 1;
+        }
+
+        // SQL NULL reads as 0; check isNull to tell them apart.
+        public long getLong(int row) {
+            Preconditions.checkElementIndex(row, this.size, "Row");
+            return this.values.get(row);
+        }
+
+        public long @NotNull [] toArray() {
+            long[] array = new long[this.size];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = this.values.get(i);
+            }
+            return array;
+        }
+
+        @Override
+        protected long getFootprint() {
+            return super.getFootprint() + this.values.getFootprint();
+        }
+    }
+
+    public static class DoubleColumn extends Column {
+        private final Int64Storage values;
+
+        private DoubleColumn(@NotNull String label, boolean offHeap) {
+            super(label);
+            this.values = new Int64Storage(offHeap);
+        }
+
+        @Override
+        protected void read(@NotNull ResultSet resultSet, int column, int row) throws SQLException {
+            double value = resultSet.getDouble(column);
+            if (resultSet.wasNull()) this.markNull(row);
+            this.values.set(row, Double.doubleToRawLongBits(value));
+            this.size = row + 1;
+        }
+
+        // SQL NULL reads as 0.0; check isNull to tell them apart.
+        public double getDouble(int row) {
+            Preconditions.checkElementIndex(row, this.size, "Row");
+            return Double.longBitsToDouble(this.values.get(row));
+        }
+
+        public double @NotNull [] toArray() {
+            double[] array = new double[this.size];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = Double.longBitsToDouble(this.values.get(i));
+            }
+            return array;
+        }
+
+        @Override
+        protected long getFootprint() {
+            return super.getFootprint() + this.values.getFootprint();
+        }
+    }
+
+    // Non-numeric columns are kept as objects; only numeric columns are stored primitively.
+    public static class ObjectColumn extends Column {
+        private final List<Object> values = new ArrayList<>();
+
+        private ObjectColumn(@NotNull String label) {
+            super(label);
+        }
+
+        @Override
+        protected void read(@NotNull ResultSet resultSet, int column, int row) throws SQLException {
+            Object value = resultSet.getObject(column);
+            if (value == null) this.markNull(row);
+            this.values.add(value);
+            this.size = row + 1;
+        }
+
+        public Object get(int row) {
+            Preconditions.checkElementIndex(row, this.size, "Row");
+            return this.values.get(row);
+        }
+
+        @Override
+        protected long getFootprint() {
+            return super.getFootprint() + (long) this.values.size() * Integer.BYTES;
+        }
+    }
+
+    // Storage for 8-byte values in fixed-size chunks, so growing never copies. Chunks are long[] or native-order direct buffers.
+    private static class Int64Storage {
+        private static final int CHUNK_SHIFT = 12;
+        private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+        private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+        private final boolean offHeap;
+        private long[][] arrays;
+        private ByteBuffer[] buffers;
+        private int chunkCount;
+
+        private Int64Storage(boolean offHeap) {
+            this.offHeap = offHeap;
+            if (offHeap) {
+                this.buffers = new ByteBuffer[8];
+            } else {
+                this.arrays = new long[8][];
+            }
+        }
+
+        private void set(int index, long value) {
+            int chunk = index >>> CHUNK_SHIFT;
+            while (chunk >= this.chunkCount) {
+                this.addChunk();
+            }
+            if (this.offHeap) {
+                this.buffers[chunk].putLong((index & CHUNK_MASK) * Long.BYTES, value);
+            } else {
+                this.arrays[chunk][index & CHUNK_MASK] = value;
+            }
+        }
+
+        private long get(int index) {
+            int chunk = index >>> CHUNK_SHIFT;
+            return this.offHeap
+                    ? this.buffers[chunk].getLong((index & CHUNK_MASK) * Long.BYTES)
+                    : this.arrays[chunk][index & CHUNK_MASK];
+        }
+
+        private void addChunk() {
+            if (this.offHeap) {
+                if (this.chunkCount == this.buffers.length) this.buffers = Arrays.copyOf(this.buffers, this.chunkCount * 2);
+                this.buffers[this.chunkCount++] = ByteBuffer.allocateDirect(CHUNK_SIZE * Long.BYTES).order(ByteOrder.nativeOrder());
+            } else {
+                if (this.chunkCount == this.arrays.length) this.arrays = Arrays.copyOf(this.arrays, this.chunkCount * 2);
+                this.arrays[this.chunkCount++] = new long[CHUNK_SIZE];
+            }
+        }
+
+        private long getFootprint() {
+            return (long) this.chunkCount * CHUNK_SIZE * Long.BYTES;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package de.betacoding.mysql;
+
+import com.google.common.base.Preconditions;
+import de.betacoding.util.ThrowableFunction;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Optional;
+
+// Parsed once, bound through typed setters into a reusable per-thread binding, and executed on the calling thread.
+public class MySQLCompiledQuery {
+    private final MySQLQueryService service;
+    private final String sqlString;
+    private final int parameterCount;
+    private final ThreadLocal<Binding> bindings;
+
+    protected MySQLCompiledQuery(@NotNull MySQLQueryService service, @NotNull String sqlString) {
+        Preconditions.checkArgument(!sqlString.isEmpty() && !sqlString.isBlank(), "SQLString cannot be empty");
+
+        this.service = service;
+        this.sqlString = sqlString;
+        this.parameterCount = countPlaceholders(sqlString);
+        this.bindings = ThreadLocal.withInitial(Binding::new);
+    }
+
+    public @NotNull String getSQLString() {
+        return this.sqlString;
+    }
+    public int getParameterCount() {
+        return this.parameterCount;
+    }
+
+    // The returned binding belongs to the calling thread and is cleared on every call, so bind and execute it right away.
+    public @NotNull Binding bind() {
+        Binding binding = this.bindings.get();
+        binding.clear();
+        return binding;
+    }
+
+    protected static int countPlaceholders(@NotNull String sqlString) {
+        int count = 0;
+        final int length = sqlString.length();
+        for (int i = 0; i < length; i++) {
+            char c = sqlString.charAt(i);
+            if (c == '\'' || c == '"' || c == '`') {
+                // Skip quoted literals and identifiers, honoring backslash escapes and doubled quotes.
+                for (i++; i < length; i++) {
+                    char current = sqlString.charAt(i);
+                    if (current == '\\' && c != '`') {
+                        i++;
+                    } else if (current == c) {
+                        if (i + 1 < length && sqlString.charAt(i + 1) == c) i++;
+                        else break;
+                    }
+                }
+            } else if (c == '#' || (c == '-' && sqlString.startsWith("-- ", i))) {
+                while (i < length && sqlString.charAt(i) != '\n') i++;
+            } else if (c == '/' && sqlString.startsWith("/*", i)) {
+                int end = sqlString.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 1;
+            } else if (c == '?') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public class Binding {
+        private static final byte UNBOUND = 0;
+        private static final byte INT = 1;
+        private static final byte LONG = 2;
+        private static final byte DOUBLE = 3;
+        private static final byte FLOAT = 4;
+        private static final byte BOOLEAN = 5;
+        private static final byte SHORT = 6;
+        private static final byte BYTE = 7;
+        private static final byte STRING = 8;
+        private static final byte BYTES = 9;
+        private static final byte NULL = 10;
+        private static final byte OBJECT = 11;
+
+        private final byte[] kinds = new byte[MySQLCompiledQuery.this.parameterCount];
+        private final long[] primitives = new long[MySQLCompiledQuery.this.parameterCount];
+        private final Object[] references = new Object[MySQLCompiledQuery.this.parameterCount];
+
+        private Binding() {
+        }
+
+        private void clear() {
+            Arrays.fill(this.kinds, UNBOUND);
+            Arrays.fill(this.references, null);
+        }
+
+        private int slot(int parameterIndex) {
+            return Preconditions.checkElementIndex(parameterIndex - 1, this.kinds.length, "Parameter index");
+        }
+
+        private @NotNull Binding primitive(int parameterIndex, byte kind, long bits) {
+            int slot = this.slot(parameterIndex);
+            this.kinds[slot] = kind;
+            this.primitives[slot] = bits;
+            return this;
+        }
+
+        private @NotNull Binding reference(int parameterIndex, byte kind, @Nullable Object value) {
+            int slot = this.slot(parameterIndex);
+            this.kinds[slot] = value == null ? NULL : kind;
+            this.references[slot] = value;
+            return this;
+        }
+
+        public @NotNull Binding setInt(int parameterIndex, int value) {
+            return this.primitive(parameterIndex, INT, value);
+        }
+        public @NotNull Binding setLong(int parameterIndex, long value) {
+            return this.primitive(parameterIndex, LONG, value);
+        }
+        public @NotNull Binding setDouble(int parameterIndex, double value) {
+            return this.primitive(parameterIndex, DOUBLE, Double.doubleToRawLongBits(value));
+        }
+        public @NotNull Binding setFloat(int parameterIndex, float value) {
+            return this.primitive(parameterIndex, FLOAT, Float.floatToRawIntBits(value));
+        }
+        public @NotNull Binding setBoolean(int parameterIndex, boolean value) {
+            return this.primitive(parameterIndex, BOOLEAN, value ? 1 : 0);
+        }
+        public @NotNull Binding setShort(int parameterIndex, short value) {
+            return this.primitive(parameterIndex, SHORT, value);
+        }
+        public @NotNull Binding setByte(int parameterIndex, byte value) {
+            return this.primitive(parameterIndex, BYTE, value);
+        }
+        public @NotNull Binding setString(int parameterIndex, @Nullable String value) {
+            return this.reference(parameterIndex, STRING, value);
+        }
+        public @NotNull Binding setBytes(int parameterIndex, byte @Nullable [] value) {
+            return this.reference(parameterIndex, BYTES, value);
+        }
+        public @NotNull Binding setNull(int parameterIndex) {
+            return this.reference(parameterIndex, NULL, null);
+        }
+        public @NotNull Binding setObject(int parameterIndex, @Nullable Object value) {
+            return this.reference(parameterIndex, OBJECT, value);
+        }
+
+        protected void applyTo(@NotNull PreparedStatement statement) throws SQLException {
+            for (int slot = 0; slot < this.kinds.length; slot++) {
+                final int index = slot + 1;
+                final long bits = this.primitives[slot];
+                switch (this.kinds[slot]) {
+                    case INT -> statement.setInt(index, (int) bits);
+                    case LONG -> statement.setLong(index, bits);
+                    case DOUBLE -> statement.setDouble(index, Double.longBitsToDouble(bits));
+                    case FLOAT -> statement.setFloat(index, Float.intBitsToFloat((int) bits));
+                    case BOOLEAN -> statement.setBoolean(index, bits != 0);
+                    case SHORT -> statement.setShort(index, (short) bits);
+                    case BYTE -> statement.setByte(index, (byte) bits);
+                    case STRING -> statement.setString(index, (String) this.references[slot]);
+                    case BYTES -> statement.setBytes(index, (byte[]) this.references[slot]);
+                    case NULL -> statement.setNull(index, Types.NULL);
+                    case OBJECT -> MySQLLob.bind(statement, index, this.references[slot]);
+                    default -> throw new IllegalStateException("Parameter " + index + " of '" + MySQLCompiledQuery.this.sqlString + "' is not bound");
+                }
+            }
+        }
+
+        private void checkBound() {
+            for (int slot = 0; slot < this.kinds.length; slot++) {
+                if (this.kinds[slot] == UNBOUND) {
+                    throw new IllegalStateException("Parameter " + (slot + 1) + " of '" + MySQLCompiledQuery.this.sqlString + "' is not bound");
+                }
+            }
+        }
+
+        public <T> @NotNull Optional<T> executeQuery(final @NotNull ThrowableFunction<ResultSet, T> mapper) throws MySQLServiceException {
+            this.checkBound();
+            try {
+                return MySQLCompiledQuery.this.service.executeCompiledQuery(MySQLCompiledQuery.this.sqlString, this, mapper);
+            } catch (SQLException | RuntimeException exception) {
+                throw new MySQLServiceException(exception);
+            }
+        }
+
+        public int executeUpdate() throws MySQLServiceException {
+            this.checkBound();
+            try {
+                return MySQLCompiledQuery.this.service.executeCompiledUpdate(MySQLCompiledQuery.this.sqlString, this);
+            } catch (SQLException | RuntimeException exception) {
+                throw new MySQLServiceException(exception);
+            }
+        }
+    }
+}
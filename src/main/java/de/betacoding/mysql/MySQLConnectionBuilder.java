@@ -5,8 +5,8 @@ import de.betacoding.util.DebugLogger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Collections;
-import java.util.HashMap;
+import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class MySQLConnectionBuilder {
@@ -15,9 +15,23 @@ public class MySQLConnectionBuilder {
     private final int port;
     private final String databaseName;
     private final String user;
-    private final Map<MySQLConnectionProperty<?>, Object> properties = new HashMap<>();
+    private final Map<MySQLConnectionProperty<?>, Object> properties = new LinkedHashMap<>();
 
     private DebugLogger logger;
+    private MySQLExecutionStrategy executionStrategy = MySQLExecutionStrategy.POOLED;
+    private MySQLResultCache resultCache;
+    private MySQLMetricsListener metricsListener;
+    private MySQLResiliencePolicy resiliencePolicy = MySQLResiliencePolicy.DEFAULT;
+    private MySQLSchedulerSettings schedulerSettings = MySQLSchedulerSettings.DEFAULT;
+    private Duration defaultQueryTimeout;
+    private Duration slowQueryThreshold;
+    private Duration explainInterval = MySQLSlowQueryLog.DEFAULT_EXPLAIN_INTERVAL;
+    private int minPoolSize = MySQLPoolSettings.DEFAULT.getMinSize();
+    private int maxPoolSize = MySQLPoolSettings.DEFAULT.getMaxSize();
+    private Duration idleTimeout = MySQLPoolSettings.DEFAULT.getIdleTimeout();
+    private Duration leaseTimeout = MySQLPoolSettings.DEFAULT.getLeaseTimeout();
+    private boolean validateOnBorrow = MySQLPoolSettings.DEFAULT.isValidateOnBorrow();
+    private int statementCacheSize = MySQLPoolSettings.DEFAULT.getStatementCacheSize();
 
     public MySQLConnectionBuilder(@NotNull String protocol, @NotNull String host, int port, @NotNull String databaseName, @NotNull String user) {
         this.protocol = protocol;
@@ -41,7 +55,11 @@ public class MySQLConnectionBuilder {
         this(protocol, host, port, "", user);
     }
 
+    @SuppressWarnings("deprecation")
     public @NotNull <T> MySQLConnectionBuilder setProperty(@NotNull MySQLConnectionProperty<T> property, @Nullable T value) {
+        if (property == MySQLConnectionProperty.TIMEOUT) {
+            return this.setConnectTimeout(value == null ? null : Duration.ofSeconds((Integer) value));
+        }
         if (value == null) {
             this.properties.remove(property);
         } else {
@@ -50,17 +68,131 @@ public class MySQLConnectionBuilder {
         return this;
     }
 
+    // How long to wait for the socket connect; zero waits forever and null restores the default of ten seconds.
+    public @NotNull MySQLConnectionBuilder setConnectTimeout(@Nullable Duration connectTimeout) {
+        Preconditions.checkArgument(connectTimeout == null || !connectTimeout.isNegative(), "Connect timeout cannot be negative");
+        final Integer millis = connectTimeout == null
+                ? MySQLConnectionProperty.CONNECT_TIMEOUT_MILLIS.getDefaultValue()
+                : (int) Math.min(Integer.MAX_VALUE, connectTimeout.toMillis());
+        return this.setProperty(MySQLConnectionProperty.CONNECT_TIMEOUT_MILLIS, millis);
+    }
+
+    public @NotNull MySQLConnectionBuilder applyProfile(@NotNull MySQLConnectionProfile profile) {
+        profile.applyTo(this);
+        return this;
+    }
+
+    public @NotNull MySQLConnectionBuilder setRewriteBatchedStatements(boolean rewriteBatchedStatements) {
+        return this.setProperty(MySQLConnectionProperty.REWRITE_BATCHED_STATEMENTS, rewriteBatchedStatements);
+    }
+
+    // Required by MySQLQueryService.bulkLoad; the server must also have local_infile enabled.
+    public @NotNull MySQLConnectionBuilder setAllowLoadLocalInfile(boolean allowLoadLocalInfile) {
+        return this.setProperty(MySQLConnectionProperty.ALLOW_LOAD_LOCAL_INFILE, allowLoadLocalInfile);
+    }
+
     public @NotNull MySQLConnectionBuilder setLogger(@NotNull DebugLogger logger) {
         this.logger = logger;
         return this;
     }
 
+    public @NotNull MySQLConnectionBuilder setPoolSize(int minSize, int maxSize) {
+        Preconditions.checkArgument(minSize >= 0, "Minimum pool size cannot be negative");
+        Preconditions.checkArgument(maxSize > 0 && maxSize >= minSize, "Maximum pool size must be positive and at least the minimum pool size");
+        this.minPoolSize = minSize;
+        this.maxPoolSize = maxSize;
+        return this;
+    }
+
+    public @NotNull MySQLConnectionBuilder setIdleTimeout(@NotNull Duration idleTimeout) {
+        Preconditions.checkArgument(!idleTimeout.isNegative() && !idleTimeout.isZero(), "Idle timeout must be positive");
+        this.idleTimeout = idleTimeout;
+        return this;
+    }
+
+    public @NotNull MySQLConnectionBuilder setLeaseTimeout(@NotNull Duration leaseTimeout) {
+        Preconditions.checkArgument(!leaseTimeout.isNegative(), "Lease timeout cannot be negative");
+        this.leaseTimeout = leaseTimeout;
+        return this;
+    }
+
+    public @NotNull MySQLConnectionBuilder setValidateOnBorrow(boolean validateOnBorrow) {
+        this.validateOnBorrow = validateOnBorrow;
+        return this;
+    }
+
+    public @NotNull MySQLConnectionBuilder setStatementCacheSize(int statementCacheSize) {
+        Preconditions.checkArgument(statementCacheSize >= 0, "Statement cache size cannot be negative");
+        this.statementCacheSize = statementCacheSize;
+        return this;
+    }
+
+    public @NotNull MySQLConnectionBuilder setExecutionStrategy(@NotNull MySQLExecutionStrategy executionStrategy) {
+        this.executionStrategy = executionStrategy;
+        return this;
+    }
+
+    public @NotNull MySQLConnectionBuilder setResultCache(@Nullable MySQLResultCache resultCache) {
+        this.resultCache = resultCache;
+        return this;
+    }
+
+    public @NotNull MySQLConnectionBuilder setMetricsListener(@Nullable MySQLMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+        return this;
+    }
+
+    public @NotNull MySQLConnectionBuilder setResiliencePolicy(@NotNull MySQLResiliencePolicy resiliencePolicy) {
+        this.resiliencePolicy = resiliencePolicy;
+        return this;
+    }
+
+    public @NotNull MySQLConnectionBuilder setSchedulerLane(@NotNull MySQLPriority priority, int capacity, int weight) {
+        this.schedulerSettings = this.schedulerSettings.withLane(priority, capacity, weight);
+        return this;
+    }
+
+    // How long a caller waits for room in a full scheduler lane before its work is rejected; zero rejects right away.
+    public @NotNull MySQLConnectionBuilder setMaxAdmissionWait(@NotNull Duration maxAdmissionWait) {
+        this.schedulerSettings = this.schedulerSettings.withMaxAdmissionWait(maxAdmissionWait);
+        return this;
+    }
+
+    // Deadline for queries and updates that are not given one, including compiled queries and the statements of a
+    // MySQLTransaction, each of which gets it separately; null leaves them unbounded.
+    public @NotNull MySQLConnectionBuilder setDefaultQueryTimeout(@Nullable Duration defaultQueryTimeout) {
+        Preconditions.checkArgument(defaultQueryTimeout == null || (!defaultQueryTimeout.isNegative() && !defaultQueryTimeout.isZero()), "Default query timeout must be positive");
+        this.defaultQueryTimeout = defaultQueryTimeout;
+        return this;
+    }
+
+    // Statements slower than the threshold get their EXPLAIN plan logged, at most once per fingerprint and interval; null disables the log.
+    public @NotNull MySQLConnectionBuilder setSlowQueryLog(@Nullable Duration threshold, @NotNull Duration explainInterval) {
+        Preconditions.checkArgument(threshold == null || !threshold.isNegative(), "Slow query threshold cannot be negative");
+        Preconditions.checkArgument(!explainInterval.isNegative(), "Explain interval cannot be negative");
+        this.slowQueryThreshold = threshold;
+        this.explainInterval = explainInterval;
+        return this;
+    }
+    public @NotNull MySQLConnectionBuilder setSlowQueryLog(@Nullable Duration threshold) {
+        return this.setSlowQueryLog(threshold, MySQLSlowQueryLog.DEFAULT_EXPLAIN_INTERVAL);
+    }
+
     public @NotNull MySQLConnector build() {
         Preconditions.checkNotNull(this.protocol);
         Preconditions.checkNotNull(this.host);
         Preconditions.checkNotNull(this.databaseName);
         Preconditions.checkNotNull(this.user);
 
-        return new MySQLConnector(new MySQLConnectionInfo(this.protocol, this.host, this.port, this.databaseName, this.user, Collections.unmodifiableMap(this.properties)), this.logger);
+        return new MySQLConnector(new MySQLConnectionInfo(this.protocol, this.host, this.port, this.databaseName, this.user, this.properties),
+                new MySQLPoolSettings(this.minPoolSize, this.maxPoolSize, this.idleTimeout, this.leaseTimeout, this.validateOnBorrow, this.statementCacheSize),
+                this.executionStrategy,
+                this.resultCache,
+                this.metricsListener,
+                this.resiliencePolicy,
+                this.schedulerSettings,
+                this.defaultQueryTimeout,
+                this.slowQueryThreshold == null ? null : new MySQLSlowQueryLog(this.slowQueryThreshold, this.explainInterval, MySQLSlowQueryLog.DEFAULT_MAX_FINGERPRINTS, this.logger),
+                this.logger);
     }
 }
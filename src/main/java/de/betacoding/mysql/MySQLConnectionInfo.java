@@ -3,6 +3,8 @@ package de.betacoding.mysql;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class MySQLConnectionInfo {
@@ -12,6 +14,7 @@ public class MySQLConnectionInfo {
     private String databaseName;
     private final String user;
     private final Map<MySQLConnectionProperty<?>, Object> properties;
+    private volatile String connectionURL;
 
     public MySQLConnectionInfo(@NotNull String protocol, @NotNull String host, int port, @NotNull String databaseName, @NotNull String user, @NotNull Map<MySQLConnectionProperty<?>, Object> properties) {
         this.protocol = protocol;
@@ -19,7 +22,8 @@ public class MySQLConnectionInfo {
         this.port = port;
         this.databaseName = databaseName;
         this.user = user;
-        this.properties = properties;
+        this.properties = Collections.unmodifiableMap(new LinkedHashMap<>(properties));
+        this.connectionURL = this.buildConnectionURL();
     }
 
     public @NotNull String getProtocol() {
@@ -40,6 +44,7 @@ public class MySQLConnectionInfo {
 
     protected void setDatabaseName(@NotNull String databaseName) {
         this.databaseName = databaseName;
+        this.connectionURL = this.buildConnectionURL();
     }
 
     public <T> T getProperty(@NotNull MySQLConnectionProperty<T> property) {
@@ -47,8 +52,17 @@ public class MySQLConnectionInfo {
         return object == null ? null : property.getType().cast(object);
     }
 
+    public @NotNull Map<MySQLConnectionProperty<?>, Object> getProperties() {
+        return this.properties;
+    }
+
     @NotNull
     public String getConnectionURL() {
+        return this.connectionURL;
+    }
+
+    // The properties are fixed once built, so the URL only changes along with the database.
+    private @NotNull String buildConnectionURL() {
         StringBuilder builder = new StringBuilder(this.protocol + "//" + this.host + ":" + this.port);
 
         if (this.databaseName != null) builder.append('/').append(this.databaseName);
@@ -0,0 +1,310 @@
+package de.betacoding.mysql;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.betacoding.util.DebugLogger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class MySQLConnectionPool implements AutoCloseable {
+    private final ConnectionFactory factory;
+    private final MySQLPoolSettings settings;
+    private final DebugLogger logger;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = this.lock.newCondition();
+    private final Deque<MySQLPooledConnection> idle = new ArrayDeque<>();
+    private final ScheduledExecutorService evictor;
+
+    private final LongAdder acquireCount = new LongAdder();
+    private final LongAdder acquireNanos = new LongAdder();
+    private final AtomicLong maxAcquireNanos = new AtomicLong();
+    private final MySQLStatementCache.Stats statementCacheStats = new MySQLStatementCache.Stats();
+
+    private int total;
+    private int active;
+    private int waiting;
+    private boolean closed;
+    private volatile String catalog;
+    private volatile String defaultCatalog;
+
+    public MySQLConnectionPool(@NotNull ConnectionFactory factory, @NotNull MySQLPoolSettings settings, @NotNull DebugLogger logger) {
+        this.factory = factory;
+        this.settings = settings;
+        this.logger = logger;
+        this.evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("mysql-pool-evictor-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    public void start() throws SQLException {
+        List<MySQLPooledConnection> connections = new ArrayList<>();
+        try {
+            for (int i = 0; i < this.settings.getMinSize(); i++) {
+                connections.add(this.borrow());
+            }
+        } finally {
+            connections.forEach(MySQLPooledConnection::close);
+        }
+
+        long period = Math.max(1000, this.settings.getIdleTimeout().toMillis() / 2);
+        this.evictor.scheduleWithFixedDelay(this::evict, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public @NotNull MySQLPoolSettings getSettings() {
+        return this.settings;
+    }
+
+    public boolean isClosed() {
+        this.lock.lock();
+        try {
+            return this.closed;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public void setCatalog(@Nullable String catalog) {
+        this.catalog = catalog;
+    }
+    // The catalog set last, or else the one the first connection opened in.
+    public @Nullable String getCatalog() {
+        final String catalog = this.catalog;
+        return catalog == null || catalog.isEmpty() ? this.defaultCatalog : catalog;
+    }
+
+    public @NotNull MySQLPooledConnection borrow() throws SQLException {
+        return this.borrow(this.settings.getLeaseTimeout());
+    }
+
+    // Waits at most maxWait, or the lease timeout if that is shorter.
+    public @NotNull MySQLPooledConnection borrow(@NotNull Duration maxWait) throws SQLException {
+        final long start = System.nanoTime();
+        final long timeout = Math.min(maxWait.toNanos(), this.settings.getLeaseTimeout().toNanos());
+        final long deadline = start + timeout;
+
+        while (true) {
+            MySQLPooledConnection connection;
+
+            this.lock.lock();
+            try {
+                connection = this.awaitConnection(deadline, timeout);
+            } finally {
+                this.lock.unlock();
+            }
+
+            if (connection == null) {
+                try {
+                    connection = new MySQLPooledConnection(this, this.factory.open(), this.settings.getStatementCacheSize(), this.statementCacheStats);
+                } catch (SQLException exception) {
+                    this.forget();
+                    throw exception;
+                }
+            } else if (this.settings.isValidateOnBorrow() && !connection.isValid()) {
+                this.discard(connection);
+                this.forget();
+                continue;
+            }
+
+            try {
+                if (this.defaultCatalog == null) this.defaultCatalog = connection.getConnection().getCatalog();
+                connection.applyCatalog(this.catalog);
+            } catch (SQLException exception) {
+                this.discard(connection);
+                this.forget();
+                throw exception;
+            }
+
+            long elapsed = System.nanoTime() - start;
+            this.acquireCount.increment();
+            this.acquireNanos.add(elapsed);
+            this.maxAcquireNanos.accumulateAndGet(elapsed, Math::max);
+            return connection;
+        }
+    }
+
+    // Must be called while holding the lock. Returns null if the caller reserved a slot for a new connection.
+    private @Nullable MySQLPooledConnection awaitConnection(long deadline, long timeout) throws SQLException {
+        while (true) {
+            if (this.closed) throw new SQLException("Connection pool is closed");
+
+            MySQLPooledConnection connection = this.idle.pollFirst();
+            if (connection != null) {
+                this.active++;
+                connection.markBorrowed();
+                return connection;
+            }
+            if (this.total < this.settings.getMaxSize()) {
+                this.total++;
+                this.active++;
+                return null;
+            }
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new MySQLClientTimeoutException("Timed out after " + TimeUnit.NANOSECONDS.toMillis(timeout) + " ms waiting for a pooled connection");
+            }
+
+            this.waiting++;
+            try {
+                this.available.awaitNanos(remaining);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a pooled connection", exception);
+            } finally {
+                this.waiting--;
+            }
+        }
+    }
+
+    protected void release(@NotNull MySQLPooledConnection connection) {
+        boolean reusable;
+        try {
+            Connection rawConnection = connection.getConnection();
+            if (!connection.isBroken() && !rawConnection.isClosed() && !rawConnection.getAutoCommit()) {
+                rawConnection.rollback();
+                rawConnection.setAutoCommit(true);
+            }
+            reusable = !connection.isBroken() && !rawConnection.isClosed();
+        } catch (SQLException exception) {
+            reusable = false;
+        }
+
+        this.lock.lock();
+        try {
+            this.active--;
+            if (reusable && !this.closed) {
+                connection.setLastReleased(System.nanoTime());
+                this.idle.addFirst(connection);
+                this.available.signal();
+                return;
+            }
+            this.total--;
+            this.available.signal();
+        } finally {
+            this.lock.unlock();
+        }
+        this.discard(connection);
+    }
+
+    private void forget() {
+        this.lock.lock();
+        try {
+            this.total--;
+            this.active--;
+            this.available.signal();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void discard(@NotNull MySQLPooledConnection connection) {
+        try {
+            connection.closePhysical();
+        } catch (SQLException exception) {
+            this.logger.warning("Failed to close pooled connection: " + exception.getMessage());
+        }
+    }
+
+    private void evict() {
+        final long now = System.nanoTime();
+        final long idleTimeout = this.settings.getIdleTimeout().toNanos();
+        List<MySQLPooledConnection> evicted = new ArrayList<>();
+
+        this.lock.lock();
+        try {
+            // Least recently released connections sit at the tail of the deque.
+            Iterator<MySQLPooledConnection> iterator = this.idle.descendingIterator();
+            while (iterator.hasNext() && this.total > this.settings.getMinSize()) {
+                MySQLPooledConnection connection = iterator.next();
+                if (now - connection.getLastReleased() < idleTimeout) break;
+                iterator.remove();
+                this.total--;
+                evicted.add(connection);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+
+        evicted.forEach(this::discard);
+    }
+
+    public int getActiveConnections() {
+        this.lock.lock();
+        try {
+            return this.active;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+    public int getIdleConnections() {
+        this.lock.lock();
+        try {
+            return this.idle.size();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+    public int getWaitingThreads() {
+        this.lock.lock();
+        try {
+            return this.waiting;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+    public long getAcquireCount() {
+        return this.acquireCount.sum();
+    }
+    public @NotNull Duration getAverageAcquireLatency() {
+        long count = this.acquireCount.sum();
+        return count == 0 ? Duration.ZERO : Duration.ofNanos(this.acquireNanos.sum() / count);
+    }
+    public @NotNull Duration getMaxAcquireLatency() {
+        return Duration.ofNanos(this.maxAcquireNanos.get());
+    }
+    public @NotNull MySQLStatementCache.Stats getStatementCacheStats() {
+        return this.statementCacheStats;
+    }
+
+    @Override
+    public void close() {
+        List<MySQLPooledConnection> connections;
+
+        this.lock.lock();
+        try {
+            if (this.closed) return;
+            this.closed = true;
+            connections = new ArrayList<>(this.idle);
+            this.total -= this.idle.size();
+            this.idle.clear();
+            this.available.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+
+        this.evictor.shutdownNow();
+        connections.forEach(this::discard);
+    }
+
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        @NotNull Connection open() throws SQLException;
+    }
+}
@@ -0,0 +1,44 @@
+package de.betacoding.mysql;
+
+import org.jetbrains.annotations.NotNull;
+
+// Driver settings tuned for a kind of workload. Applying a profile overwrites the properties it sets; set individual
+// properties afterwards to adjust it.
+public enum MySQLConnectionProfile {
+    // Bulk writes and large reads: batches are rewritten into multi-row statements and larger socket buffers keep big
+    // results flowing.
+    THROUGHPUT {
+        @Override
+        void applyTo(@NotNull MySQLConnectionBuilder builder) {
+            applyStatementCaching(builder);
+            builder.setProperty(MySQLConnectionProperty.REWRITE_BATCHED_STATEMENTS, true)
+                    .setProperty(MySQLConnectionProperty.TCP_RCV_BUF, 1 << 20)
+                    .setProperty(MySQLConnectionProperty.TCP_SND_BUF, 1 << 20);
+        }
+    },
+    // Many small statements: every round trip the driver can answer locally is skipped, and small packets go out
+    // without waiting to be coalesced.
+    LOW_LATENCY {
+        @Override
+        void applyTo(@NotNull MySQLConnectionBuilder builder) {
+            applyStatementCaching(builder);
+            builder.setProperty(MySQLConnectionProperty.TCP_NO_DELAY, true)
+                    .setProperty(MySQLConnectionProperty.USE_COMPRESSION, false)
+                    .setProperty(MySQLConnectionProperty.USE_LOCAL_SESSION_STATE, true)
+                    .setProperty(MySQLConnectionProperty.ELIDE_SET_AUTO_COMMITS, true);
+        }
+    };
+
+    abstract void applyTo(@NotNull MySQLConnectionBuilder builder);
+
+    // Both profiles keep statements prepared on the server and skip work the driver repeats on every connection.
+    private static void applyStatementCaching(@NotNull MySQLConnectionBuilder builder) {
+        builder.setProperty(MySQLConnectionProperty.USE_SERVER_PREP_STMTS, true)
+                .setProperty(MySQLConnectionProperty.CACHE_PREP_STMTS, true)
+                .setProperty(MySQLConnectionProperty.PREP_STMT_CACHE_SIZE, 250)
+                .setProperty(MySQLConnectionProperty.PREP_STMT_CACHE_SQL_LIMIT, 2048)
+                .setProperty(MySQLConnectionProperty.CACHE_RESULT_SET_METADATA, true)
+                .setProperty(MySQLConnectionProperty.CACHE_SERVER_CONFIGURATION, true)
+                .setProperty(MySQLConnectionProperty.MAINTAIN_TIME_STATS, false);
+    }
+}
@@ -6,16 +6,49 @@ import org.jetbrains.annotations.Nullable;
 import java.util.Arrays;
 
 public class MySQLConnectionProperty<T> {
-    public static final MySQLConnectionProperty<Integer> TIMEOUT = new MySQLConnectionProperty<>("connect timeout", Integer.class, 10);
+    // Milliseconds to wait for the socket connect; zero waits forever.
+    public static final MySQLConnectionProperty<Integer> CONNECT_TIMEOUT_MILLIS = new MySQLConnectionProperty<>("connectTimeout", Integer.class, 10_000);
+    // Seconds, as before; the builder converts it into CONNECT_TIMEOUT_MILLIS.
+    @Deprecated
+    public static final MySQLConnectionProperty<Integer> TIMEOUT = new MySQLConnectionProperty<>("connectTimeout", Integer.class, null);
     public static final MySQLConnectionProperty<Boolean> AUTO_RECONNECT = new MySQLConnectionProperty<>("autoReconnect", Boolean.class, false);
     public static final MySQLConnectionProperty<String> CHARACTER_ENCODING = new MySQLConnectionProperty<>("characterEncoding", String.class, null);
+    public static final MySQLConnectionProperty<Boolean> REWRITE_BATCHED_STATEMENTS = new MySQLConnectionProperty<>("rewriteBatchedStatements", Boolean.class, null);
+    public static final MySQLConnectionProperty<Boolean> ALLOW_LOAD_LOCAL_INFILE = new MySQLConnectionProperty<>("allowLoadLocalInfile", Boolean.class, null);
+
+    // Prepared statements: binary protocol on the server, and the driver's cache of them for statements prepared again.
+    public static final MySQLConnectionProperty<Boolean> USE_SERVER_PREP_STMTS = new MySQLConnectionProperty<>("useServerPrepStmts", Boolean.class, null);
+    public static final MySQLConnectionProperty<Boolean> CACHE_PREP_STMTS = new MySQLConnectionProperty<>("cachePrepStmts", Boolean.class, null);
+    public static final MySQLConnectionProperty<Integer> PREP_STMT_CACHE_SIZE = new MySQLConnectionProperty<>("prepStmtCacheSize", Integer.class, null);
+    public static final MySQLConnectionProperty<Integer> PREP_STMT_CACHE_SQL_LIMIT = new MySQLConnectionProperty<>("prepStmtCacheSqlLimit", Integer.class, null);
+    public static final MySQLConnectionProperty<Boolean> CACHE_RESULT_SET_METADATA = new MySQLConnectionProperty<>("cacheResultSetMetadata", Boolean.class, null);
+
+    // Round trips the driver can skip by tracking session state itself.
+    public static final MySQLConnectionProperty<Boolean> USE_LOCAL_SESSION_STATE = new MySQLConnectionProperty<>("useLocalSessionState", Boolean.class, null);
+    public static final MySQLConnectionProperty<Boolean> ELIDE_SET_AUTO_COMMITS = new MySQLConnectionProperty<>("elideSetAutoCommits", Boolean.class, null);
+    public static final MySQLConnectionProperty<Boolean> CACHE_SERVER_CONFIGURATION = new MySQLConnectionProperty<>("cacheServerConfiguration", Boolean.class, null);
+    public static final MySQLConnectionProperty<Boolean> MAINTAIN_TIME_STATS = new MySQLConnectionProperty<>("maintainTimeStats", Boolean.class, null);
+
+    // Network: compression trades CPU for bandwidth, buffer sizes are in bytes with zero leaving them to the OS.
+    public static final MySQLConnectionProperty<Boolean> USE_COMPRESSION = new MySQLConnectionProperty<>("useCompression", Boolean.class, null);
+    public static final MySQLConnectionProperty<Boolean> TCP_NO_DELAY = new MySQLConnectionProperty<>("tcpNoDelay", Boolean.class, null);
+    public static final MySQLConnectionProperty<Integer> TCP_RCV_BUF = new MySQLConnectionProperty<>("tcpRcvBuf", Integer.class, null);
+    public static final MySQLConnectionProperty<Integer> TCP_SND_BUF = new MySQLConnectionProperty<>("tcpSndBuf", Integer.class, null);
+
+    // Result set streaming: with cursor fetch the server hands out results in defaultFetchSize rows at a time instead of all at once.
+    public static final MySQLConnectionProperty<Boolean> USE_CURSOR_FETCH = new MySQLConnectionProperty<>("useCursorFetch", Boolean.class, null);
+    public static final MySQLConnectionProperty<Integer> DEFAULT_FETCH_SIZE = new MySQLConnectionProperty<>("defaultFetchSize", Integer.class, null);
 
     private static final MySQLConnectionProperty<?>[] properties;
     private static final MySQLConnectionProperty<?>[] defaultProperties;
 
     static {
-        properties = new MySQLConnectionProperty[] {
-                TIMEOUT, AUTO_RECONNECT, CHARACTER_ENCODING
+        properties = new MySQLConnectionProperty<?>[] {
+                CONNECT_TIMEOUT_MILLIS, AUTO_RECONNECT, CHARACTER_ENCODING, REWRITE_BATCHED_STATEMENTS, ALLOW_LOAD_LOCAL_INFILE,
+                USE_SERVER_PREP_STMTS, CACHE_PREP_STMTS, PREP_STMT_CACHE_SIZE, PREP_STMT_CACHE_SQL_LIMIT, CACHE_RESULT_SET_METADATA,
+                USE_LOCAL_SESSION_STATE, ELIDE_SET_AUTO_COMMITS, CACHE_SERVER_CONFIGURATION, MAINTAIN_TIME_STATS,
+                USE_COMPRESSION, TCP_NO_DELAY, TCP_RCV_BUF, TCP_SND_BUF,
+                USE_CURSOR_FETCH, DEFAULT_FETCH_SIZE
         };
         defaultProperties = Arrays.stream(properties)
                 .filter(property -> property.getDefaultValue() != null)
@@ -2,44 +2,58 @@ package de.betacoding.mysql;
 
 import de.betacoding.util.DebugLogger;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.Optional;
 
 public class MySQLConnector implements AutoCloseable {
     private final MySQLConnectionInfo connectionInfo;
+    private final MySQLPoolSettings poolSettings;
+    private final MySQLExecutionStrategy executionStrategy;
+    private final MySQLResultCache resultCache;
+    private final MySQLMetricsListener metricsListener;
+    private final MySQLResiliencePolicy resiliencePolicy;
+    private final MySQLSchedulerSettings schedulerSettings;
+    private final Duration defaultQueryTimeout;
+    private final MySQLSlowQueryLog slowQueryLog;
     private final DebugLogger logger;
 
-    private Connection connection;
-    private MySQLQueryService service;
+    // Read without waiting by routers picking a replica, while establish and close run on the lifecycle thread.
+    private volatile MySQLConnectionPool pool;
+    private volatile MySQLQueryService service;
 
-    protected MySQLConnector(@NotNull MySQLConnectionInfo connectionInfo, @NotNull DebugLogger logger) {
+    protected MySQLConnector(@NotNull MySQLConnectionInfo connectionInfo, @NotNull MySQLPoolSettings poolSettings, @NotNull MySQLExecutionStrategy executionStrategy, @Nullable MySQLResultCache resultCache, @Nullable MySQLMetricsListener metricsListener, @NotNull MySQLResiliencePolicy resiliencePolicy, @NotNull MySQLSchedulerSettings schedulerSettings, @Nullable Duration defaultQueryTimeout, @Nullable MySQLSlowQueryLog slowQueryLog, @NotNull DebugLogger logger) {
         this.connectionInfo = connectionInfo;
+        this.poolSettings = poolSettings;
+        this.executionStrategy = executionStrategy;
+        this.resultCache = resultCache;
+        this.metricsListener = metricsListener;
+        this.resiliencePolicy = resiliencePolicy;
+        this.schedulerSettings = schedulerSettings;
+        this.defaultQueryTimeout = defaultQueryTimeout;
+        this.slowQueryLog = slowQueryLog;
         this.logger = logger;
     }
 
     public boolean isEstablished() {
-        try {
-            return this.connection != null && !this.connection.isClosed();
-        } catch (SQLException exception) {
-            return false;
-        }
+        return this.pool != null && !this.pool.isClosed();
     }
 
     public @NotNull MySQLConnectionInfo getConnectionInfo() {
         return this.connectionInfo;
     }
 
+    public @NotNull MySQLExecutionStrategy getExecutionStrategy() {
+        return this.executionStrategy;
+    }
+
     public void setDatabase(@NotNull String databaseName) {
         this.connectionInfo.setDatabaseName(databaseName);
         if (this.isEstablished()) {
-            try {
-                this.connection.setCatalog(databaseName);
-            } catch (SQLException exception) {
-                this.logger.severe("Failed to set database to '" + databaseName + "'", exception);
-            }
+            this.pool.setCatalog(databaseName);
         }
     }
 
@@ -47,6 +61,10 @@ public class MySQLConnector implements AutoCloseable {
         return Optional.ofNullable(this.service);
     }
 
+    public @NotNull Optional<MySQLConnectionPool> getPool() {
+        return Optional.ofNullable(this.pool);
+    }
+
     public void establish(@NotNull final String password) {
         if (this.isEstablished()) {
             this.logger.warning("Failed to establish connection: Connection is already established");
@@ -59,12 +77,20 @@ public class MySQLConnector implements AutoCloseable {
 
         long millis = System.currentTimeMillis();
 
+        final String url = this.connectionInfo.getConnectionURL();
+        final String user = this.connectionInfo.getUser();
+        final MySQLConnectionPool pool = new MySQLConnectionPool(() -> DriverManager.getConnection(url, user, password), this.poolSettings, this.logger);
+
         try {
-            this.connection = DriverManager.getConnection(this.connectionInfo.getConnectionURL(), this.connectionInfo.getUser(), password);
-            this.service = new MySQLQueryService(this.connection);
+            pool.start();
+            this.pool = pool;
+            this.service = new MySQLQueryService(pool, this.executionStrategy, this.resultCache, this.metricsListener, this.resiliencePolicy, this.schedulerSettings);
+            this.service.setDefaultQueryTimeout(this.defaultQueryTimeout);
+            this.service.setSlowQueryLog(this.slowQueryLog);
         } catch (SQLException exception) {
-            this.connection = null;
-            if (exception.getSQLState().equals("08S01")) {
+            pool.close();
+            this.pool = null;
+            if ("08S01".equals(exception.getSQLState())) {
                 this.logger.severe("Failed to establish connection to '" + address + "': timed out", exception);
                 return;
             }
@@ -85,14 +111,10 @@ public class MySQLConnector implements AutoCloseable {
 
         this.logger.info("Closing connection to '" + address + "'");
         long millis = System.currentTimeMillis();
-        try {
-            this.connection.close();
-            this.connection = null;
-            this.service = null;
-        } catch (SQLException exception) {
-            this.logger.severe("Failed to close connection to '" + address + "'" , exception);
-            return;
-        }
+        this.service.shutdown();
+        this.pool.close();
+        this.pool = null;
+        this.service = null;
         millis = System.currentTimeMillis()-millis;
         this.logger.info("Successfully closed connection to '" + address + "' (" + millis + " ms)");
     }
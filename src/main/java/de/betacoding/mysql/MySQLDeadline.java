@@ -0,0 +1,161 @@
+package de.betacoding.mysql;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// The time left for one service call, together with the statement it is running. When the deadline passes or the caller
+// cancels, that statement is cancelled, which makes Connector/J send KILL QUERY over a side connection.
+class MySQLDeadline {
+    private static final Duration MAX_TIMEOUT = Duration.ofDays(365);
+    private static final ScheduledThreadPoolExecutor TIMER = createTimer();
+    // Killing a query opens a side connection, which can take the whole connect timeout when the server struggles. That
+    // must hold up neither the timer nor other deadlines, so every kill gets a thread of its own.
+    private static final ExecutorService CANCELLER = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setNameFormat("mysql-deadline-cancel-%d")
+            .setDaemon(true)
+            .build());
+
+    private final Duration timeout;
+    private final long expiresAt;
+    private volatile boolean cancelled;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private Statement running;
+    private Statement killed;
+
+    MySQLDeadline(@NotNull Duration timeout) {
+        Preconditions.checkArgument(!timeout.isNegative(), "Timeout cannot be negative");
+        this.timeout = timeout;
+        this.expiresAt = System.nanoTime() + (timeout.compareTo(MAX_TIMEOUT) > 0 ? MAX_TIMEOUT : timeout).toNanos();
+    }
+
+    private static @NotNull ScheduledThreadPoolExecutor createTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                .setNameFormat("mysql-deadline-%d")
+                .setDaemon(true)
+                .build());
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    long remainingNanos() {
+        if (this.cancelled) return 0;
+        return Math.max(0, this.expiresAt - System.nanoTime());
+    }
+
+    boolean isExpired() {
+        return this.remainingNanos() == 0;
+    }
+
+    @NotNull SQLTimeoutException expired(@Nullable Throwable cause) {
+        return new SQLTimeoutException("Statement did not finish within its deadline of " + this.timeout.toMillis() + " ms", cause);
+    }
+
+    private void check() throws SQLException {
+        if (this.cancelled) throw new SQLException("Statement was cancelled", "70100");
+        if (this.isExpired()) {
+            throw new MySQLClientTimeoutException("Deadline of " + this.timeout.toMillis() + " ms passed before the statement was sent");
+        }
+    }
+
+    // Fails the future, if any, once the deadline passes and cancels the statement running at that moment.
+    @NotNull ScheduledFuture<?> start(@Nullable CompletableFuture<?> future) {
+        return TIMER.schedule(() -> {
+            if (future == null || future.completeExceptionally(this.expired(null))) this.interrupt();
+        }, this.remainingNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    // A future whose cancel reaches the statement the call is running.
+    <T> @NotNull CompletableFuture<T> newFuture() {
+        return new CancellableFuture<>(this);
+    }
+
+    // Refuses to send a statement after the deadline. Otherwise it sets the statement timeout, which only has whole seconds
+    // and backs up the timer should it stall, and tracks the statement so it can be cancelled.
+    void arm(@NotNull Statement statement) throws SQLException {
+        this.check();
+        statement.setQueryTimeout((int) Math.min(Integer.MAX_VALUE, TimeUnit.NANOSECONDS.toSeconds(this.remainingNanos() + 999_999_999L)));
+        this.lock.lock();
+        try {
+            this.check();
+            this.running = statement;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    // Statements are cached per connection, so the timeout must not outlive this call. A kill sent for the statement may
+    // still be on its way and would hit whatever the connection runs next, so the connection is discarded then.
+    void disarm(@NotNull MySQLPooledConnection connection, @NotNull Statement statement) {
+        final boolean killed;
+        this.lock.lock();
+        try {
+            killed = this.killed == statement;
+            if (this.running == statement) this.running = null;
+        } finally {
+            this.lock.unlock();
+        }
+        if (killed) {
+            connection.markBroken();
+            return;
+        }
+        try {
+            statement.setQueryTimeout(0);
+        } catch (SQLException ignored) {
+        }
+    }
+
+    void cancel() {
+        this.cancelled = true;
+        this.interrupt();
+    }
+
+    // Only takes the statement under the lock; the kill itself runs on the canceller.
+    private void interrupt() {
+        final Statement statement;
+        this.lock.lock();
+        try {
+            statement = this.running;
+            if (statement == null) return;
+            this.running = null;
+            this.killed = statement;
+        } finally {
+            this.lock.unlock();
+        }
+        CANCELLER.execute(() -> {
+            try {
+                statement.cancel();
+            } catch (SQLException ignored) {
+            }
+        });
+    }
+
+    private static class CancellableFuture<T> extends CompletableFuture<T> {
+        private final MySQLDeadline deadline;
+
+        private CancellableFuture(@NotNull MySQLDeadline deadline) {
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) this.deadline.cancel();
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package de.betacoding.mysql;
+
+public enum MySQLErrorKind {
+    // The connection is gone or could not be opened; the statement may or may not have run.
+    CONNECTION,
+    // Deadlock or lock wait timeout; the server rolled the statement back, so running it again is safe.
+    DEADLOCK,
+    // A temporary server condition, such as too many connections or a read-only replica during failover.
+    TRANSIENT,
+    // The server did not finish the statement in time, or it was killed. Retrying only adds load, but the breaker counts
+    // it like a lost connection.
+    TIMEOUT,
+    // No pooled connection became free in time, or the deadline passed before the statement was sent. The breaker ignores
+    // it, as a saturated pool or a tight deadline says nothing about the server.
+    CLIENT_TIMEOUT,
+    // Everything else: constraint violations, syntax errors, mapper bugs. Retrying cannot help.
+    FATAL
+}
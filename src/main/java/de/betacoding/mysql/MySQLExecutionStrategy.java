@@ -0,0 +1,39 @@
+package de.betacoding.mysql;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+@FunctionalInterface
+public interface MySQLExecutionStrategy {
+    @NotNull ExecutorService createExecutor(int parallelism);
+
+    MySQLExecutionStrategy SEQUENTIAL = parallelism -> Executors.newSingleThreadExecutor(threadFactory("mysql-sequential-%d"));
+
+    MySQLExecutionStrategy POOLED = parallelism -> Executors.newFixedThreadPool(parallelism, threadFactory("mysql-query-%d"));
+
+    // One virtual thread per task; concurrency is bounded by the connection pool. Runtimes without virtual threads fall back to a cached platform thread pool.
+    MySQLExecutionStrategy VIRTUAL = parallelism -> {
+        try {
+            return (ExecutorService) MethodHandles.publicLookup()
+                    .findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class))
+                    .invokeExact();
+        } catch (NoSuchMethodException | IllegalAccessException exception) {
+            return Executors.newCachedThreadPool(threadFactory("mysql-query-%d"));
+        } catch (Throwable exception) {
+            throw new IllegalStateException("Failed to create virtual thread executor", exception);
+        }
+    };
+
+    private static @NotNull ThreadFactory threadFactory(@NotNull String nameFormat) {
+        return new ThreadFactoryBuilder()
+                .setNameFormat(nameFormat)
+                .setDaemon(true)
+                .build();
+    }
+}
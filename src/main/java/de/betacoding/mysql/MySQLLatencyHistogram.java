@@ -0,0 +1,58 @@
+package de.betacoding.mysql;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Power-of-two buckets backed by striped counters, so concurrent recording never contends on a single cache line.
+public class MySQLLatencyHistogram {
+    private static final int BUCKETS = 64;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public MySQLLatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        final long value = Math.max(0, nanos);
+        this.buckets[Math.max(0, BUCKETS - 1 - Long.numberOfLeadingZeros(value))].increment();
+        this.count.increment();
+        this.sum.add(value);
+        this.max.accumulate(value);
+    }
+
+    public long getCount() {
+        return this.count.sum();
+    }
+    public @NotNull Duration getMean() {
+        long count = this.count.sum();
+        return count == 0 ? Duration.ZERO : Duration.ofNanos(this.sum.sum() / count);
+    }
+    public @NotNull Duration getMax() {
+        return Duration.ofNanos(this.max.get());
+    }
+
+    // Upper bound of the bucket holding the given percentile, so the result is accurate to within a factor of two.
+    public @NotNull Duration getPercentile(double percentile) {
+        long count = this.count.sum();
+        if (count == 0) return Duration.ZERO;
+
+        long rank = (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.buckets[i].sum();
+            if (seen >= Math.max(1, rank)) {
+                return Duration.ofNanos(i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1);
+            }
+        }
+        return this.getMax();
+    }
+}
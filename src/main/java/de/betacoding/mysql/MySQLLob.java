@@ -0,0 +1,208 @@
+package de.betacoding.mysql;
+
+import com.google.common.base.Preconditions;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+// A BLOB or CLOB parameter read straight from a buffer, a channel or a mapped file region. Pass it as a statement value
+// and the driver pulls the data as it writes the packet, instead of the caller first copying it into a byte[]. With
+// useServerPrepStmts the driver even sends it to the server in chunks. The static transfer methods go the other way and
+// copy a column into a channel one chunk at a time.
+public class MySQLLob {
+    public static final int CHUNK_SIZE = 64 * 1024;
+
+    private final Supplier<InputStream> opener;
+    private final long length;
+    private final Charset charset;
+    private final boolean replayable;
+    private final AtomicBoolean opened = new AtomicBoolean();
+
+    private MySQLLob(@NotNull Supplier<InputStream> opener, long length, @Nullable Charset charset, boolean replayable) {
+        this.opener = opener;
+        this.length = length;
+        this.charset = charset;
+        this.replayable = replayable;
+    }
+
+    // The bytes between the buffer's position and limit. The buffer itself is left untouched, so a retried statement
+    // reads it again from the start.
+    public static @NotNull MySQLLob of(@NotNull ByteBuffer buffer) {
+        final ByteBuffer source = buffer.duplicate();
+        return new MySQLLob(() -> open(source), source.remaining(), null, true);
+    }
+
+    // Reads the channel once, so a statement that binds it cannot be retried. A negative length leaves it to the driver
+    // to read up to the end of the channel.
+    public static @NotNull MySQLLob of(@NotNull ReadableByteChannel channel, long length) {
+        return new MySQLLob(() -> Channels.newInputStream(channel), length, null, false);
+    }
+
+    // Maps the region read-only, so the file's pages go to the driver without passing through the heap first.
+    public static @NotNull MySQLLob map(@NotNull FileChannel file, long position, long length) throws IOException {
+        Preconditions.checkArgument(position >= 0 && length >= 0, "Position and length cannot be negative");
+        return of(file.map(FileChannel.MapMode.READ_ONLY, position, length));
+    }
+
+    // Text encoded in the given charset, for CLOB and TEXT columns.
+    public static @NotNull MySQLLob text(@NotNull ByteBuffer encoded, @NotNull Charset charset) {
+        final ByteBuffer source = encoded.duplicate();
+        return new MySQLLob(() -> open(source), -1, charset, true);
+    }
+    public static @NotNull MySQLLob text(@NotNull ReadableByteChannel channel, @NotNull Charset charset) {
+        return new MySQLLob(() -> Channels.newInputStream(channel), -1, charset, false);
+    }
+
+    public boolean isText() {
+        return this.charset != null;
+    }
+    public long getLength() {
+        return this.length;
+    }
+
+    // Used everywhere the service binds statement values.
+    static void bind(@NotNull PreparedStatement statement, int index, @Nullable Object value) throws SQLException {
+        if (value instanceof MySQLLob lob) {
+            lob.bind(statement, index);
+        } else {
+            statement.setObject(index, value);
+        }
+    }
+
+    private void bind(@NotNull PreparedStatement statement, int index) throws SQLException {
+        if (!this.opened.compareAndSet(false, true) && !this.replayable) {
+            throw new SQLNonTransientException("Channel LOB parameter " + index + " was already read and cannot be sent again");
+        }
+
+        final InputStream stream = this.opener.get();
+        if (this.charset != null) {
+            statement.setCharacterStream(index, new InputStreamReader(stream, this.charset));
+        } else if (this.length >= 0) {
+            statement.setBinaryStream(index, stream, this.length);
+        } else {
+            statement.setBinaryStream(index, stream);
+        }
+    }
+
+    private static @NotNull InputStream open(@NotNull ByteBuffer source) {
+        final ByteBuffer buffer = source.duplicate();
+        if (buffer.hasArray()) {
+            // Reads the backing array in place.
+            return new ByteArrayInputStream(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        return new ByteBufferInputStream(buffer);
+    }
+
+    // Copies the column into the channel and returns the number of bytes written, or -1 if it is NULL.
+    public static long transfer(@NotNull ResultSet resultSet, int column, @NotNull WritableByteChannel target) throws SQLException, IOException {
+        return transfer(resultSet.getBinaryStream(column), target);
+    }
+    public static long transfer(@NotNull ResultSet resultSet, @NotNull String column, @NotNull WritableByteChannel target) throws SQLException, IOException {
+        return transfer(resultSet.getBinaryStream(column), target);
+    }
+
+    // Writes the column to the file from the given position on, regardless of the channel's own position.
+    public static long transfer(@NotNull ResultSet resultSet, int column, @NotNull FileChannel target, long position) throws SQLException, IOException {
+        try (InputStream stream = resultSet.getBinaryStream(column)) {
+            if (stream == null) return -1;
+
+            final byte[] chunk = new byte[CHUNK_SIZE];
+            long total = 0;
+            int read;
+            while ((read = stream.read(chunk)) >= 0) {
+                final ByteBuffer buffer = ByteBuffer.wrap(chunk, 0, read);
+                while (buffer.hasRemaining()) {
+                    total += target.write(buffer, position + total);
+                }
+            }
+            return total;
+        }
+    }
+
+    // Copies a text column into the channel, encoded in the given charset. Returns the number of characters, or -1 if it is NULL.
+    public static long transferText(@NotNull ResultSet resultSet, int column, @NotNull WritableByteChannel target, @NotNull Charset charset) throws SQLException, IOException {
+        try (Reader reader = resultSet.getCharacterStream(column)) {
+            if (reader == null) return -1;
+
+            // Not closed, as that would close the caller's channel as well.
+            final Writer writer = Channels.newWriter(target, charset.newEncoder(), CHUNK_SIZE);
+            final char[] chunk = new char[CHUNK_SIZE];
+            long total = 0;
+            int read;
+            while ((read = reader.read(chunk)) >= 0) {
+                writer.write(chunk, 0, read);
+                total += read;
+            }
+            writer.flush();
+            return total;
+        }
+    }
+
+    private static long transfer(@Nullable InputStream stream, @NotNull WritableByteChannel target) throws IOException {
+        if (stream == null) return -1;
+        try (stream) {
+            final byte[] chunk = new byte[CHUNK_SIZE];
+            long total = 0;
+            int read;
+            while ((read = stream.read(chunk)) >= 0) {
+                final ByteBuffer buffer = ByteBuffer.wrap(chunk, 0, read);
+                while (buffer.hasRemaining()) {
+                    total += target.write(buffer);
+                }
+            }
+            return total;
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(@NotNull ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte @NotNull [] bytes, int offset, int length) {
+            if (length == 0) return 0;
+            if (!this.buffer.hasRemaining()) return -1;
+            final int count = Math.min(length, this.buffer.remaining());
+            this.buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return this.buffer.remaining();
+        }
+
+        @Override
+        public long skip(long count) {
+            final int skipped = (int) Math.max(0, Math.min(count, this.buffer.remaining()));
+            this.buffer.position(this.buffer.position() + skipped);
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package de.betacoding.mysql;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// Rows the mappers of this package walked through on the current thread. Their loops report the count once at the end,
+// so instrumented statements hand the driver's own result set to the mapper instead of wrapping every call.
+final class MySQLMappedRows {
+    private static final long UNREPORTED = -1;
+    private static final ThreadLocal<long[]> ROWS = ThreadLocal.withInitial(() -> new long[] {UNREPORTED});
+
+    private MySQLMappedRows() {
+    }
+
+    static void report(long rows) {
+        final long[] counter = ROWS.get();
+        counter[0] = Math.max(counter[0], 0) + rows;
+    }
+
+    // Mappers run statements of their own, so the outer count is returned here and handed back to end().
+    static long begin() {
+        final long[] counter = ROWS.get();
+        final long outer = counter[0];
+        counter[0] = UNREPORTED;
+        return outer;
+    }
+
+    // Mappers that do not report are counted up to the row they stopped on, which misses the rows of a mapper that
+    // read the result set to its end.
+    static long end(long outer, @NotNull ResultSet resultSet) {
+        final long[] counter = ROWS.get();
+        final long rows = counter[0];
+        counter[0] = outer;
+        if (rows != UNREPORTED) return rows;
+        try {
+            return resultSet.isClosed() ? 0 : resultSet.getRow();
+        } catch (SQLException exception) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package de.betacoding.mysql;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+// Called once per statement on the thread that ran it. All timings are in nanoseconds. Implementations must be thread-safe and cheap.
+@FunctionalInterface
+public interface MySQLMetricsListener {
+    void onStatement(@NotNull MySQLStatementType type,
+                     @NotNull String sqlString,
+                     long queueNanos,
+                     long executionNanos,
+                     long mapperNanos,
+                     long rows,
+                     int retries,
+                     @Nullable Throwable error);
+}
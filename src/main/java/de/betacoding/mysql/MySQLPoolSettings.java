@@ -0,0 +1,50 @@
+package de.betacoding.mysql;
+
+import com.google.common.base.Preconditions;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+
+public class MySQLPoolSettings {
+    public static final MySQLPoolSettings DEFAULT = new MySQLPoolSettings(1, 10, Duration.ofMinutes(10), Duration.ofSeconds(30), true, 64);
+
+    private final int minSize;
+    private final int maxSize;
+    private final Duration idleTimeout;
+    private final Duration leaseTimeout;
+    private final boolean validateOnBorrow;
+    private final int statementCacheSize;
+
+    public MySQLPoolSettings(int minSize, int maxSize, @NotNull Duration idleTimeout, @NotNull Duration leaseTimeout, boolean validateOnBorrow, int statementCacheSize) {
+        Preconditions.checkArgument(minSize >= 0, "Minimum pool size cannot be negative");
+        Preconditions.checkArgument(maxSize > 0 && maxSize >= minSize, "Maximum pool size must be positive and at least the minimum pool size");
+        Preconditions.checkArgument(!idleTimeout.isNegative() && !idleTimeout.isZero(), "Idle timeout must be positive");
+        Preconditions.checkArgument(!leaseTimeout.isNegative(), "Lease timeout cannot be negative");
+        Preconditions.checkArgument(statementCacheSize >= 0, "Statement cache size cannot be negative");
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeout = idleTimeout;
+        this.leaseTimeout = leaseTimeout;
+        this.validateOnBorrow = validateOnBorrow;
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    public int getMinSize() {
+        return this.minSize;
+    }
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+    public @NotNull Duration getIdleTimeout() {
+        return this.idleTimeout;
+    }
+    public @NotNull Duration getLeaseTimeout() {
+        return this.leaseTimeout;
+    }
+    public boolean isValidateOnBorrow() {
+        return this.validateOnBorrow;
+    }
+    public int getStatementCacheSize() {
+        return this.statementCacheSize;
+    }
+}
@@ -0,0 +1,85 @@
+package de.betacoding.mysql;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class MySQLPooledConnection implements AutoCloseable {
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final MySQLConnectionPool pool;
+    private final Connection connection;
+    private final MySQLStatementCache statementCache;
+
+    private String catalog;
+    private long lastReleased;
+    private volatile boolean broken;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    protected MySQLPooledConnection(@NotNull MySQLConnectionPool pool, @NotNull Connection connection, int statementCacheSize, @NotNull MySQLStatementCache.Stats statementCacheStats) {
+        this.pool = pool;
+        this.connection = connection;
+        this.statementCache = new MySQLStatementCache(connection, statementCacheSize, statementCacheStats);
+        this.lastReleased = System.nanoTime();
+    }
+
+    public @NotNull Connection getConnection() {
+        return this.connection;
+    }
+
+    public @NotNull PreparedStatement prepareStatement(@NotNull String sqlString) throws SQLException {
+        return this.statementCache.acquire(sqlString);
+    }
+    public void releaseStatement(@NotNull String sqlString, @NotNull PreparedStatement statement) {
+        this.statementCache.release(sqlString, statement);
+    }
+
+    protected boolean isValid() {
+        try {
+            return !this.connection.isClosed() && this.connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException exception) {
+            return false;
+        }
+    }
+
+    protected void applyCatalog(@Nullable String catalog) throws SQLException {
+        if (catalog == null || catalog.isEmpty() || catalog.equals(this.catalog)) return;
+        this.connection.setCatalog(catalog);
+        this.catalog = catalog;
+    }
+
+    protected long getLastReleased() {
+        return this.lastReleased;
+    }
+    protected void setLastReleased(long lastReleased) {
+        this.lastReleased = lastReleased;
+    }
+
+    // A connection that failed with a connection-level error is discarded on release instead of going back to the pool.
+    protected void markBroken() {
+        this.broken = true;
+    }
+    protected boolean isBroken() {
+        return this.broken;
+    }
+
+    // Called by the pool when it hands out the connection again.
+    protected void markBorrowed() {
+        this.released.set(false);
+    }
+
+    protected void closePhysical() throws SQLException {
+        this.statementCache.close();
+        this.connection.close();
+    }
+
+    // Only the first close of a lease returns the connection, so closing twice cannot hand it to two borrowers.
+    @Override
+    public void close() {
+        if (this.released.compareAndSet(false, true)) this.pool.release(this);
+    }
+}
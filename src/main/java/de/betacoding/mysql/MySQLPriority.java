@@ -0,0 +1,11 @@
+package de.betacoding.mysql;
+
+// Admission lanes of the service's scheduler, in the order ties are broken.
+public enum MySQLPriority {
+    // Latency-critical reads; queries use this lane by default.
+    INTERACTIVE,
+    // Updates and transactions.
+    WRITE,
+    // Batches, bulk loads and result publishers. Never allowed to occupy every worker.
+    BACKGROUND
+}
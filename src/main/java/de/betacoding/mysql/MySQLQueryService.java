@@ -1,63 +1,526 @@
 package de.betacoding.mysql;
 
 import com.google.common.base.Preconditions;
+import com.google.common.primitives.Ints;
 import de.betacoding.util.ThrowableFunction;
 import de.betacoding.util.ThrowableRunnable;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.SQLNonTransientException;
+import java.sql.SQLTimeoutException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.StringJoiner;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import jdk.jfr.EventType;
 
 public class MySQLQueryService {
-    private final Connection connection;
-    private final ExecutorService sequentialExecutor;
+    public static final int DEFAULT_BATCH_CHUNK_SIZE = 1000;
+
+    private static final EventType STATEMENT_EVENT = EventType.getEventType(MySQLStatementEvent.class);
+
+    private final MySQLConnectionPool pool;
+    private final MySQLScheduler scheduler;
+    private final MySQLResultCache resultCache;
+    private final MySQLMetricsListener metricsListener;
+    private final MySQLResiliencePolicy resiliencePolicy;
+    private final MySQLCircuitBreaker circuitBreaker;
+    private final MySQLRetryBudget retryBudget;
+    private volatile Duration defaultQueryTimeout;
+    private volatile MySQLSlowQueryLog slowQueryLog;
+    private final ThreadLocal<MySQLTransaction> currentTransaction = new ThreadLocal<>();
+    private final ThreadLocal<MySQLDeadline> currentDeadline = new ThreadLocal<>();
+    private final ThreadLocal<MySQLPriority> currentPriority = new ThreadLocal<>();
+    private final ThreadLocal<StatementProbe> probes = ThreadLocal.withInitial(StatementProbe::new);
+
+    public MySQLQueryService(@NotNull MySQLConnectionPool pool,
+                             @NotNull MySQLExecutionStrategy executionStrategy,
+                             @Nullable MySQLResultCache resultCache,
+                             @Nullable MySQLMetricsListener metricsListener,
+                             @NotNull MySQLResiliencePolicy resiliencePolicy,
+                             @NotNull MySQLSchedulerSettings schedulerSettings) {
+        final int parallelism = pool.getSettings().getMaxSize();
+        this.pool = pool;
+        // Running more tasks than the strategy has threads would only queue them again in the executor, in FIFO order.
+        this.scheduler = new MySQLScheduler(executionStrategy.createExecutor(parallelism), executionStrategy == MySQLExecutionStrategy.SEQUENTIAL ? 1 : parallelism, schedulerSettings);
+        this.resultCache = resultCache;
+        this.metricsListener = metricsListener;
+        this.resiliencePolicy = resiliencePolicy;
+        this.circuitBreaker = new MySQLCircuitBreaker(resiliencePolicy);
+        this.retryBudget = new MySQLRetryBudget(resiliencePolicy);
+    }
+    public MySQLQueryService(@NotNull MySQLConnectionPool pool,
+                             @NotNull MySQLExecutionStrategy executionStrategy,
+                             @Nullable MySQLResultCache resultCache,
+                             @Nullable MySQLMetricsListener metricsListener,
+                             @NotNull MySQLResiliencePolicy resiliencePolicy) {
+        this(pool, executionStrategy, resultCache, metricsListener, resiliencePolicy, MySQLSchedulerSettings.DEFAULT);
+    }
+    public MySQLQueryService(@NotNull MySQLConnectionPool pool,
+                             @NotNull MySQLExecutionStrategy executionStrategy,
+                             @Nullable MySQLResultCache resultCache,
+                             @Nullable MySQLMetricsListener metricsListener) {
+        this(pool, executionStrategy, resultCache, metricsListener, MySQLResiliencePolicy.DEFAULT);
+    }
+    public MySQLQueryService(@NotNull MySQLConnectionPool pool) {
+        this(pool, MySQLExecutionStrategy.POOLED, null, null);
+    }
+
+    public @NotNull MySQLConnectionPool getPool() {
+        return this.pool;
+    }
+
+    public @NotNull MySQLScheduler getScheduler() {
+        return this.scheduler;
+    }
+
+    public @NotNull Optional<MySQLResultCache> getResultCache() {
+        return Optional.ofNullable(this.resultCache);
+    }
+
+    public @NotNull MySQLResiliencePolicy getResiliencePolicy() {
+        return this.resiliencePolicy;
+    }
+    public @NotNull MySQLCircuitBreaker getCircuitBreaker() {
+        return this.circuitBreaker;
+    }
+
+    // Applies to queries and updates that are not given a timeout of their own; null runs them without a deadline.
+    public void setDefaultQueryTimeout(@Nullable Duration defaultQueryTimeout) {
+        Preconditions.checkArgument(defaultQueryTimeout == null || (!defaultQueryTimeout.isNegative() && !defaultQueryTimeout.isZero()), "Default query timeout must be positive");
+        this.defaultQueryTimeout = defaultQueryTimeout;
+    }
+    public @NotNull Optional<Duration> getDefaultQueryTimeout() {
+        return Optional.ofNullable(this.defaultQueryTimeout);
+    }
+
+    public void setSlowQueryLog(@Nullable MySQLSlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+    }
+    public @NotNull Optional<MySQLSlowQueryLog> getSlowQueryLog() {
+        return Optional.ofNullable(this.slowQueryLog);
+    }
+
+    private void invalidateCachedResults(final @NotNull String sqlString) {
+        if (this.resultCache == null) return;
+        this.resultCache.invalidate(this.pool.getCatalog(), sqlString);
+        // Readers may reload the old rows until the transaction commits, so invalidate again afterwards.
+        final MySQLTransaction transaction = this.currentTransaction.get();
+        if (transaction != null) transaction.recordWrite(sqlString);
+    }
+
+    public void shutdown() {
+        this.scheduler.shutdown();
+    }
+
+    private @Nullable MySQLPooledConnection pinnedConnection() {
+        final MySQLTransaction transaction = this.currentTransaction.get();
+        return transaction == null ? null : transaction.getPooledConnection();
+    }
+
+    private <T> T withConnection(final @NotNull SQLFunction<MySQLPooledConnection, T> action) throws SQLException {
+        return this.withConnection(false, false, action);
+    }
+
+    // Inside a transaction the statement runs once on the pinned connection. Otherwise a connection that breaks is discarded
+    // rather than pooled, and failures the policy deems retryable run again on a fresh connection after a jittered backoff.
+    // A deadline bounds the wait for a connection and rules out retries it could not accommodate.
+    private <T> T withConnection(final boolean retry,
+                                 final boolean idempotent,
+                                 final @NotNull SQLFunction<MySQLPooledConnection, T> action) throws SQLException {
+        final MySQLDeadline deadline = this.currentDeadline.get();
+        MySQLPooledConnection pinned = this.pinnedConnection();
+        if (pinned != null) {
+            try {
+                return action.apply(pinned);
+            } catch (SQLException | RuntimeException exception) {
+                // The transaction is lost either way; a broken connection must not go back to the pool when it ends.
+                if (this.resiliencePolicy.classify(exception) == MySQLErrorKind.CONNECTION) pinned.markBroken();
+                throw exception;
+            }
+        }
+
+        this.retryBudget.deposit();
+        for (int attempt = 1; ; attempt++) {
+            this.circuitBreaker.acquirePermission();
+
+            MySQLPooledConnection pooled = null;
+            try {
+                pooled = deadline == null ? this.pool.borrow() : this.pool.borrow(Duration.ofNanos(deadline.remainingNanos()));
+                T result = action.apply(pooled);
+                this.circuitBreaker.onSuccess();
+                return result;
+            } catch (SQLException | RuntimeException exception) {
+                final MySQLErrorKind kind = this.resiliencePolicy.classify(exception);
+                if (pooled != null && kind == MySQLErrorKind.CONNECTION) pooled.markBroken();
+                this.circuitBreaker.onFailure(kind);
+
+                final long backoff = this.resiliencePolicy.backoff(attempt).toNanos();
+                if (!retry
+                        || attempt >= this.resiliencePolicy.getMaxAttempts()
+                        || !this.resiliencePolicy.isRetryable(kind, idempotent, pooled != null)
+                        || (deadline != null && deadline.remainingNanos() <= backoff)
+                        || !this.retryBudget.tryWithdraw()) {
+                    throw exception;
+                }
+                this.recordRetry();
+
+                if (backoff > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(backoff);
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        throw exception;
+                    }
+                }
+            } finally {
+                if (pooled != null) pooled.close();
+            }
+        }
+    }
+
+    private void onUnretriedFailure(final @Nullable MySQLPooledConnection pooled, final @NotNull Exception exception) {
+        final MySQLErrorKind kind = this.resiliencePolicy.classify(exception);
+        if (pooled != null && kind == MySQLErrorKind.CONNECTION) pooled.markBroken();
+        this.circuitBreaker.onFailure(kind);
+    }
 
-    public MySQLQueryService(@NotNull Connection connection) throws SQLException {
-        this.connection = connection;
-        this.connection.setAutoCommit(true);
-        this.sequentialExecutor = Executors.newSingleThreadExecutor();
+    private boolean isInstrumented() {
+        return this.metricsListener != null || this.slowQueryLog != null || STATEMENT_EVENT.isEnabled();
     }
 
-    private <T> @NotNull Optional<T> _executeQuery(final boolean retry,
+    private <T> T measure(final @NotNull MySQLStatementType type,
+                          final @NotNull String sqlString,
+                          final long submitted,
+                          final @NotNull SQLFunction<MySQLPooledConnection, T> action) throws SQLException {
+        return this.measure(type, sqlString, submitted, false, false, action);
+    }
+
+    // Without a metrics listener, a slow query log or an active JFR recording this is a plain withConnection call.
+    private <T> T measure(final @NotNull MySQLStatementType type,
+                          final @NotNull String sqlString,
+                          final long submitted,
+                          final boolean retry,
+                          final boolean idempotent,
+                          final @NotNull SQLFunction<MySQLPooledConnection, T> action) throws SQLException {
+        if (!this.isInstrumented()) return this.withConnection(retry, idempotent, action);
+
+        // Statements issued from a mapper nest on the same thread, so keep the outer statement's figures on the stack.
+        final StatementProbe probe = this.probes.get();
+        final long outerMapperNanos = probe.mapperNanos;
+        final long outerRows = probe.rows;
+        final int outerRetries = probe.retries;
+        final Object[] outerValues = probe.values;
+        probe.reset();
+
+        final long start = System.nanoTime();
+        Throwable error = null;
+        try {
+            return this.withConnection(retry, idempotent, action);
+        } catch (Throwable exception) {
+            error = exception;
+            throw exception;
+        } finally {
+            final long elapsed = System.nanoTime() - start;
+            this.recordStatement(type, sqlString, probe.values, start - submitted, elapsed - probe.mapperNanos, probe.mapperNanos, probe.rows, probe.retries, error);
+            probe.mapperNanos = outerMapperNanos;
+            probe.rows = outerRows;
+            probe.retries = outerRetries;
+            probe.values = outerValues;
+        }
+    }
+
+    private void recordStatement(final @NotNull MySQLStatementType type,
+                                 final @NotNull String sqlString,
+                                 final Object @Nullable [] values,
+                                 final long queueNanos,
+                                 final long executionNanos,
+                                 final long mapperNanos,
+                                 final long rows,
+                                 final int retries,
+                                 final @Nullable Throwable error) {
+        if (this.metricsListener != null) {
+            this.metricsListener.onStatement(type, sqlString, queueNanos, executionNanos, mapperNanos, rows, retries, error);
+        }
+        final MySQLSlowQueryLog slowQueryLog = this.slowQueryLog;
+        if (slowQueryLog != null && !sqlString.isEmpty() && slowQueryLog.record(type, sqlString, executionNanos, rows, error)) {
+            this.explain(slowQueryLog, type, sqlString, values, executionNanos, rows);
+        }
+        if (STATEMENT_EVENT.isEnabled()) {
+            MySQLStatementEvent event = new MySQLStatementEvent();
+            event.type = type.name();
+            event.sql = sqlString;
+            event.queueTime = queueNanos;
+            event.executionTime = executionNanos;
+            event.mapperTime = mapperNanos;
+            event.rows = rows;
+            event.retries = retries;
+            event.failed = error != null;
+            event.commit();
+        }
+    }
+
+    // The plan is fetched in the background lane, so the slow statement's caller does not wait for it as well.
+    private void explain(final @NotNull MySQLSlowQueryLog slowQueryLog,
+                         final @NotNull MySQLStatementType type,
+                         final @NotNull String sqlString,
+                         final Object @Nullable [] values,
+                         final long executionNanos,
+                         final long rows) {
+        // Compiled queries keep their arguments in the binding, and guessing them could yield a different plan.
+        final boolean guessed = values == null && sqlString.indexOf('?') >= 0;
+        slowQueryLog.explain(type, sqlString, executionNanos, rows, task -> this.scheduler.execute(MySQLPriority.BACKGROUND, task),
+                guessed ? null : () -> this.withConnection(connection -> explain(connection, sqlString, values)));
+    }
+
+    // One-off statement, so it neither takes a slot in the statement cache nor shows up in the metrics.
+    private static @NotNull String explain(final @NotNull MySQLPooledConnection connection,
+                                           final @NotNull String sqlString,
+                                           final Object @Nullable [] values) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.getConnection().prepareStatement("EXPLAIN " + sqlString)) {
+            if (values != null) {
+                for (int i = 0; i < values.length; i++) {
+                    MySQLLob.bind(preparedStatement, i + 1, values[i]);
+                }
+            }
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                final ResultSetMetaData metaData = resultSet.getMetaData();
+                final StringJoiner plan = new StringJoiner(System.lineSeparator());
+                final StringJoiner header = new StringJoiner(" | ");
+                for (int column = 1; column <= metaData.getColumnCount(); column++) {
+                    header.add(metaData.getColumnLabel(column));
+                }
+                plan.add(header.toString());
+                while (resultSet.next()) {
+                    final StringJoiner row = new StringJoiner(" | ");
+                    for (int column = 1; column <= metaData.getColumnCount(); column++) {
+                        row.add(String.valueOf(resultSet.getObject(column)));
+                    }
+                    plan.add(row.toString());
+                }
+                return plan.toString();
+            }
+        }
+    }
+
+    private void recordRows(final long rows) {
+        if (this.isInstrumented()) this.probes.get().rows += rows;
+    }
+
+    private void recordRetry() {
+        if (this.isInstrumented()) this.probes.get().retries++;
+    }
+
+    // Runs the service calls made by the given code in the given scheduler lane instead of their default one.
+    public <T> T withPriority(final @NotNull MySQLPriority priority, final @NotNull Supplier<T> calls) {
+        final MySQLPriority outer = this.currentPriority.get();
+        this.currentPriority.set(priority);
+        try {
+            return calls.get();
+        } finally {
+            if (outer == null) this.currentPriority.remove();
+            else this.currentPriority.set(outer);
+        }
+    }
+
+    private @NotNull Executor lane(final @NotNull MySQLPriority defaultPriority) {
+        final MySQLPriority priority = this.currentPriority.get();
+        return this.scheduler.lane(priority == null ? defaultPriority : priority);
+    }
+
+    // Statements issued from inside a transaction run inline on its pinned connection instead of hopping executors.
+    private <T> @NotNull CompletableFuture<T> submit(final @NotNull MySQLPriority priority, final @NotNull Supplier<T> task) {
+        if (this.currentTransaction.get() != null) {
+            try {
+                return CompletableFuture.completedFuture(task.get());
+            } catch (Throwable exception) {
+                return CompletableFuture.failedFuture(exception);
+            }
+        }
+        try {
+            return CompletableFuture.supplyAsync(task, this.lane(priority));
+        } catch (RejectedExecutionException exception) {
+            return CompletableFuture.failedFuture(exception);
+        }
+    }
+
+    // With a timeout the future fails as soon as the deadline passes, cancelling it cancels the running statement, and work
+    // that is cancelled or expires while queued is dropped without being sent.
+    private <T> @NotNull CompletableFuture<T> submit(final @NotNull MySQLPriority priority,
+                                                     final @Nullable Duration timeout,
+                                                     final @NotNull Supplier<T> task) {
+        if (timeout == null) return this.submit(priority, task);
+
+        final MySQLDeadline deadline = new MySQLDeadline(timeout);
+        if (this.currentTransaction.get() != null) {
+            final ScheduledFuture<?> timer = deadline.start(null);
+            try {
+                return CompletableFuture.completedFuture(this.withDeadline(deadline, task));
+            } catch (Throwable exception) {
+                return CompletableFuture.failedFuture(deadline.isExpired() ? deadline.expired(rootCause(exception)) : exception);
+            } finally {
+                timer.cancel(false);
+            }
+        }
+
+        final CompletableFuture<T> future = deadline.newFuture();
+        final ScheduledFuture<?> timer = deadline.start(future);
+        try {
+            this.lane(priority).execute(() -> {
+                try {
+                    if (!future.isDone()) future.complete(this.withDeadline(deadline, task));
+                } catch (Throwable exception) {
+                    future.completeExceptionally(new CompletionException(exception));
+                } finally {
+                    timer.cancel(false);
+                }
+            });
+        } catch (RejectedExecutionException exception) {
+            timer.cancel(false);
+            future.completeExceptionally(exception);
+        }
+        return future;
+    }
+
+    // Calls that run on the calling thread instead of going through submit, such as compiled queries and the statements of
+    // a MySQLTransaction, get the default deadline here unless one already applies.
+    private boolean needsDefaultDeadline() {
+        return this.defaultQueryTimeout != null && this.currentDeadline.get() == null;
+    }
+
+    private <T> T withDefaultDeadline(final @NotNull SQLSupplier<T> action) throws SQLException {
+        final Duration timeout = this.defaultQueryTimeout;
+        if (timeout == null) return action.get();
+        final MySQLDeadline deadline = new MySQLDeadline(timeout);
+        final ScheduledFuture<?> timer = deadline.start(null);
+        this.currentDeadline.set(deadline);
+        try {
+            return action.get();
+        } catch (SQLException exception) {
+            if (deadline.isExpired() && !(exception instanceof SQLTimeoutException)) throw deadline.expired(exception);
+            throw exception;
+        } finally {
+            timer.cancel(false);
+            this.currentDeadline.remove();
+        }
+    }
+
+    private <T> T withDeadline(final @NotNull MySQLDeadline deadline, final @NotNull Supplier<T> task) {
+        final MySQLDeadline outer = this.currentDeadline.get();
+        this.currentDeadline.set(deadline);
+        try {
+            return task.get();
+        } finally {
+            if (outer == null) this.currentDeadline.remove();
+            else this.currentDeadline.set(outer);
+        }
+    }
+
+    private <T> @NotNull Optional<T> _executeQuery(final long submitted,
+                                                   final boolean retry,
                                                    final @NotNull String sqlString,
                                                    final @NotNull ThrowableFunction<ResultSet, T> mapper,
                                                    final Object... values) throws SQLException {
-        Preconditions.checkArgument(!this.connection.isClosed(), "SQLConnection is closed!");
+        return this.measure(MySQLStatementType.QUERY, sqlString, submitted, retry, true, connection -> this._executeQuery(connection, sqlString, mapper, values));
+    }
+
+    private <T> @NotNull Optional<T> _executeQuery(final @NotNull MySQLPooledConnection connection,
+                                                   final @NotNull String sqlString,
+                                                   final @NotNull ThrowableFunction<ResultSet, T> mapper,
+                                                   final Object... values) throws SQLException {
+        Preconditions.checkArgument(!connection.getConnection().isClosed(), "SQLConnection is closed!");
         Preconditions.checkArgument(!sqlString.isEmpty() && !sqlString.isBlank(), "SQLString cannot be empty");
 
-        try (PreparedStatement preparedStatement = this.connection.prepareStatement(sqlString)) {
+        final MySQLDeadline deadline = this.currentDeadline.get();
+        PreparedStatement preparedStatement = connection.prepareStatement(sqlString);
+        try {
             for (int i = 0; i < values.length; i++) {
-                preparedStatement.setObject(i + 1, values[i]);
+                MySQLLob.bind(preparedStatement, i + 1, values[i]);
             }
+            if (deadline != null) deadline.arm(preparedStatement);
+            if (this.isInstrumented()) this.probes.get().values = values;
 
             try (ResultSet resultSet = preparedStatement.executeQuery()) {
-                T value = mapper.apply(resultSet);
+                T value = this.isInstrumented() ? this.applyMeasured(mapper, resultSet) : mapper.apply(resultSet);
                 return Optional.ofNullable(value);
+            } catch (SQLException | RuntimeException exception) {
+                throw exception;
             } catch (Throwable exception) {
-                if (!retry) throw new RuntimeException(exception);
-                return this._executeQuery(false, sqlString, mapper, values);
+                throw new RuntimeException(exception);
             }
+        } finally {
+            if (deadline != null) deadline.disarm(connection, preparedStatement);
+            connection.releaseStatement(sqlString, preparedStatement);
         }
     }
 
-    public <T> @NotNull CompletableFuture<Optional<T>> executeQueryAsync(final boolean retry,
+    private <T> T applyMeasured(final @NotNull ThrowableFunction<ResultSet, T> mapper, final @NotNull ResultSet resultSet) throws Throwable {
+        final long outerRows = MySQLMappedRows.begin();
+        final long start = System.nanoTime();
+        try {
+            return mapper.apply(resultSet);
+        } finally {
+            final StatementProbe probe = this.probes.get();
+            probe.mapperNanos += System.nanoTime() - start;
+            probe.rows += MySQLMappedRows.end(outerRows, resultSet);
+        }
+    }
+
+    // A null timeout runs the query without a deadline.
+    public <T> @NotNull CompletableFuture<Optional<T>> executeQueryAsync(final @Nullable Duration timeout,
+                                                                         final boolean retry,
                                                                          final @NotNull String sqlString,
                                                                          final @NotNull ThrowableFunction<ResultSet, T> mapper,
                                                                          final Object... values) {
-        return CompletableFuture.supplyAsync(() -> {
+        final long submitted = System.nanoTime();
+        return this.submit(MySQLPriority.INTERACTIVE, timeout, () -> {
             try {
-                return this._executeQuery(retry, sqlString, mapper, values);
+                return this._executeQuery(submitted, retry, sqlString, mapper, values);
             } catch (SQLException exception) {
                 throw new RuntimeException(exception);
             }
-        }, this.sequentialExecutor);
+        });
+    }
+    public <T> @NotNull CompletableFuture<Optional<T>> executeQueryAsync(final @NotNull Duration timeout,
+                                                                         final @NotNull String sqlString,
+                                                                         final @NotNull ThrowableFunction<ResultSet, T> mapper,
+                                                                         final Object... values) {
+        return this.executeQueryAsync(timeout, true, sqlString, mapper, values);
+    }
+    public <T> @NotNull CompletableFuture<Optional<T>> executeQueryAsync(final boolean retry,
+                                                                         final @NotNull String sqlString,
+                                                                         final @NotNull ThrowableFunction<ResultSet, T> mapper,
+                                                                         final Object... values) {
+        return this.executeQueryAsync(this.defaultQueryTimeout, retry, sqlString, mapper, values);
     }
     public <T> @NotNull CompletableFuture<Optional<T>> executeQueryAsync(final @NotNull String sqlString,
                                                                          final @NotNull ThrowableFunction<ResultSet, T> mapper,
@@ -65,13 +528,14 @@ public class MySQLQueryService {
         return this.executeQueryAsync(true, sqlString, mapper, values);
     }
 
-    public <T> @NotNull Optional<T> executeQuery(final boolean retry,
+    public <T> @NotNull Optional<T> executeQuery(final @Nullable Duration timeout,
+                                                 final boolean retry,
                                                  final @NotNull String sqlString,
                                                  final @NotNull ThrowableFunction<ResultSet, T> mapper,
                                                  final Object... values) throws MySQLServiceException {
         AtomicReference<Throwable> caughtException = new AtomicReference<>();
 
-        Optional<T> optionalResult = this.executeQueryAsync(retry, sqlString, mapper, values)
+        Optional<T> optionalResult = this.executeQueryAsync(timeout, retry, sqlString, mapper, values)
                 .exceptionally(
                         exception -> {
                             caughtException.set(exception);
@@ -89,53 +553,144 @@ public class MySQLQueryService {
 
         return optionalResult;
     }
+    public <T> @NotNull Optional<T> executeQuery(final @NotNull Duration timeout,
+                                                 final @NotNull String sqlString,
+                                                 final @NotNull ThrowableFunction<ResultSet, T> mapper,
+                                                 final Object... values) throws MySQLServiceException {
+        return this.executeQuery(timeout, true, sqlString, mapper, values);
+    }
+    public <T> @NotNull Optional<T> executeQuery(final boolean retry,
+                                                 final @NotNull String sqlString,
+                                                 final @NotNull ThrowableFunction<ResultSet, T> mapper,
+                                                 final Object... values) throws MySQLServiceException {
+        return this.executeQuery(this.defaultQueryTimeout, retry, sqlString, mapper, values);
+    }
     public <T> @NotNull Optional<T> executeQuery(final @NotNull String sqlString,
                                                  final @NotNull ThrowableFunction<ResultSet, T> mapper,
                                                  final Object... values) throws MySQLServiceException {
         return this.executeQuery(true, sqlString, mapper, values);
     }
 
+    // Streams the first column of the first row into the channel in MySQLLob.CHUNK_SIZE chunks and returns the number
+    // of bytes written, or -1 if there is no row or the value is NULL. Connector/J still reads that row off the wire as a
+    // whole, so select one row. Never retried, since the channel may already hold part of the value.
+    public @NotNull CompletableFuture<Long> readBlobAsync(final @NotNull String sqlString,
+                                                          final @NotNull WritableByteChannel target,
+                                                          final Object... values) {
+        return this.executeQueryAsync(false, sqlString, resultSet -> resultSet.next() ? MySQLLob.transfer(resultSet, 1, target) : -1L, values)
+                .thenApply(written -> written.orElse(-1L));
+    }
+    public long readBlob(final @NotNull String sqlString,
+                         final @NotNull WritableByteChannel target,
+                         final Object... values) throws MySQLServiceException {
+        return await(this.readBlobAsync(sqlString, target, values));
+    }
+
+    // Like readBlobAsync for text columns, encoding them in the given charset. Returns the number of characters.
+    public @NotNull CompletableFuture<Long> readClobAsync(final @NotNull String sqlString,
+                                                          final @NotNull WritableByteChannel target,
+                                                          final @NotNull Charset charset,
+                                                          final Object... values) {
+        return this.executeQueryAsync(false, sqlString, resultSet -> resultSet.next() ? MySQLLob.transferText(resultSet, 1, target, charset) : -1L, values)
+                .thenApply(written -> written.orElse(-1L));
+    }
+    public long readClob(final @NotNull String sqlString,
+                         final @NotNull WritableByteChannel target,
+                         final @NotNull Charset charset,
+                         final Object... values) throws MySQLServiceException {
+        return await(this.readClobAsync(sqlString, target, charset, values));
+    }
+
+
+    // Entries are keyed by the statement, its values and the mapper, so callers share entries only when they pass the
+    // same mapper instance, such as a constant.
+    public <T> @NotNull CompletableFuture<Optional<T>> executeCachedQueryAsync(final @NotNull Duration ttl,
+                                                                               final @NotNull String sqlString,
+                                                                               final @NotNull ThrowableFunction<ResultSet, T> mapper,
+                                                                               final Object... values) {
+        // Reads inside a transaction may see its own uncommitted writes, so they bypass the cache.
+        if (this.resultCache == null || this.currentTransaction.get() != null) {
+            return this.executeQueryAsync(sqlString, mapper, values);
+        }
+        return this.resultCache.get(ttl, this.pool.getCatalog(), sqlString, mapper, values, () -> this.executeQueryAsync(sqlString, mapper, values));
+    }
 
-    private int _executeUpdate(final boolean retry,
+    public <T> @NotNull Optional<T> executeCachedQuery(final @NotNull Duration ttl,
+                                                       final @NotNull String sqlString,
+                                                       final @NotNull ThrowableFunction<ResultSet, T> mapper,
+                                                       final Object... values) throws MySQLServiceException {
+        return await(this.executeCachedQueryAsync(ttl, sqlString, mapper, values));
+    }
+
+
+    private int _executeUpdate(final long submitted,
+                               final boolean retry,
                                final @NotNull String sqlString,
                                final Object... values) throws SQLException {
-        Preconditions.checkArgument(!this.connection.isClosed(), "SQLConnection is closed!");
+        return this.measure(MySQLStatementType.UPDATE, sqlString, submitted, retry, false, connection -> this._executeUpdate(connection, sqlString, values));
+    }
+
+    private int _executeUpdate(final @NotNull MySQLPooledConnection connection,
+                               final @NotNull String sqlString,
+                               final Object... values) throws SQLException {
+        Preconditions.checkArgument(!connection.getConnection().isClosed(), "SQLConnection is closed!");
         Preconditions.checkArgument(!sqlString.isEmpty() && !sqlString.isBlank(), "SQLString cannot be empty");
 
-        try (PreparedStatement preparedStatement = this.connection.prepareStatement(sqlString)) {
+        final MySQLDeadline deadline = this.currentDeadline.get();
+        PreparedStatement preparedStatement = connection.prepareStatement(sqlString);
+        try {
             for (int i = 0; i < values.length; i++) {
-                preparedStatement.setObject(i + 1, values[i]);
+                MySQLLob.bind(preparedStatement, i + 1, values[i]);
             }
+            if (deadline != null) deadline.arm(preparedStatement);
+            if (this.isInstrumented()) this.probes.get().values = values;
 
-            return preparedStatement.executeUpdate();
-        } catch (SQLException exception) {
-            if (!retry) throw new SQLException(exception);
-            return this._executeUpdate(false, sqlString, values);
+            int updateCount = preparedStatement.executeUpdate();
+            this.recordRows(updateCount);
+            return updateCount;
+        } finally {
+            if (deadline != null) deadline.disarm(connection, preparedStatement);
+            connection.releaseStatement(sqlString, preparedStatement);
+            this.invalidateCachedResults(sqlString);
         }
     }
 
-    public @NotNull CompletableFuture<Integer> executeUpdateAsync(final boolean retry,
+    // A null timeout runs the update without a deadline.
+    public @NotNull CompletableFuture<Integer> executeUpdateAsync(final @Nullable Duration timeout,
+                                                                  final boolean retry,
                                                                   final @NotNull String sqlString,
                                                                   final Object... values) {
-        return CompletableFuture.supplyAsync(() -> {
+        final long submitted = System.nanoTime();
+        return this.submit(MySQLPriority.WRITE, timeout, () -> {
             try {
-                return this._executeUpdate(retry, sqlString, values);
+                return this._executeUpdate(submitted, retry, sqlString, values);
             } catch (SQLException exception) {
                 throw new RuntimeException(exception);
             }
-        }, this.sequentialExecutor);
+        });
+    }
+    public @NotNull CompletableFuture<Integer> executeUpdateAsync(final @NotNull Duration timeout,
+                                                                  final @NotNull String sqlString,
+                                                                  final Object... values) {
+        return this.executeUpdateAsync(timeout, true, sqlString, values);
+    }
+    public @NotNull CompletableFuture<Integer> executeUpdateAsync(final boolean retry,
+                                                                  final @NotNull String sqlString,
+                                                                  final Object... values) {
+        return this.executeUpdateAsync(this.defaultQueryTimeout, retry, sqlString, values);
     }
     public @NotNull CompletableFuture<Integer> executeUpdateAsync(final @NotNull String sqlString,
                                                                   final Object... values) {
         return this.executeUpdateAsync(true, sqlString, values);
     }
 
-    public @NotNull Integer executeUpdate(final boolean retry,
+    public @NotNull Integer executeUpdate(final @Nullable Duration timeout,
+                                          final boolean retry,
                                           final @NotNull String sqlString,
                                           final Object... values) throws MySQLServiceException {
         AtomicReference<Throwable> caughtException = new AtomicReference<>();
 
-        Integer optionalResult = this.executeUpdateAsync(retry, sqlString, values)
+        Integer optionalResult = this.executeUpdateAsync(timeout, retry, sqlString, values)
                 .exceptionally(
                         exception -> {
                             caughtException.set(exception);
@@ -153,30 +708,701 @@ public class MySQLQueryService {
 
         return optionalResult;
     }
+    public @NotNull Integer executeUpdate(final @NotNull Duration timeout,
+                                          final @NotNull String sqlString,
+                                          final Object... values) throws MySQLServiceException {
+        return this.executeUpdate(timeout, true, sqlString, values);
+    }
+    public @NotNull Integer executeUpdate(final boolean retry,
+                                          final @NotNull String sqlString,
+                                          final Object... values) throws MySQLServiceException {
+        return this.executeUpdate(this.defaultQueryTimeout, retry, sqlString, values);
+    }
     public @NotNull Integer executeUpdate(final @NotNull String sqlString,
                                           final Object... values) throws MySQLServiceException {
         return this.executeUpdate(true, sqlString, values);
     }
 
 
-    public CompletableFuture<Void> transmit(ThrowableRunnable transmission) {
-        return CompletableFuture.runAsync(() -> {
+    private <T> @NotNull MySQLResultCursor<T> openCursor(final boolean pinnable,
+                                                         final @NotNull String sqlString,
+                                                         final @NotNull ThrowableFunction<ResultSet, T> rowMapper,
+                                                         final Object... values) throws SQLException {
+        Preconditions.checkArgument(!sqlString.isEmpty() && !sqlString.isBlank(), "SQLString cannot be empty");
+
+        MySQLPooledConnection pinned = pinnable ? this.pinnedConnection() : null;
+        if (pinned != null) return MySQLResultCursor.open(pinned, false, sqlString, rowMapper, values);
+
+        MySQLPooledConnection pooled = this.pool.borrow();
+        try {
+            return MySQLResultCursor.open(pooled, true, sqlString, rowMapper, values);
+        } catch (SQLException exception) {
+            pooled.close();
+            throw exception;
+        }
+    }
+
+    // The returned stream holds a connection until it is exhausted or closed, so use it with try-with-resources.
+    public <T> @NotNull Stream<T> streamQuery(final @NotNull String sqlString,
+                                              final @NotNull ThrowableFunction<ResultSet, T> rowMapper,
+                                              final Object... values) throws MySQLServiceException {
+        final MySQLResultCursor<T> cursor;
+        try {
+            cursor = this.openCursor(true, sqlString, rowMapper, values);
+        } catch (SQLException exception) {
+            throw new MySQLServiceException(exception);
+        }
+
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!cursor.advance()) return false;
+                    action.accept(cursor.map());
+                    return true;
+                } catch (RuntimeException exception) {
+                    cursor.close();
+                    throw exception;
+                } catch (Throwable exception) {
+                    cursor.close();
+                    throw new RuntimeException(exception);
+                }
+            }
+        };
+        return StreamSupport.stream(spliterator, false).onClose(cursor::close);
+    }
+
+    public <T> @NotNull Flow.Publisher<T> publishQuery(final @NotNull String sqlString,
+                                                       final @NotNull ThrowableFunction<ResultSet, T> rowMapper,
+                                                       final Object... values) {
+        return new MySQLResultPublisher<>(() -> this.openCursor(false, sqlString, rowMapper, values), this.lane(MySQLPriority.BACKGROUND));
+    }
+
+
+    // Splits the table by its unique key and reads the parts in parallel in the background lane; see MySQLTableScan.
+    public <T> @NotNull MySQLTableScan<T> scan(final @NotNull String table,
+                                              final @NotNull String keyColumn,
+                                              final @NotNull ThrowableFunction<ResultSet, T> rowMapper) {
+        return new MySQLTableScan<>(this, this.lane(MySQLPriority.BACKGROUND), table, keyColumn, rowMapper);
+    }
+
+    // Runs one page of a table scan on the calling thread, which is already one of the scan's workers.
+    protected <T> @NotNull Optional<T> executeScanQuery(final @NotNull String sqlString,
+                                                        final @NotNull ThrowableFunction<ResultSet, T> mapper,
+                                                        final Object... values) throws SQLException {
+        return this.measure(MySQLStatementType.QUERY, sqlString, System.nanoTime(), true, true, connection -> this._executeQuery(connection, sqlString, mapper, values));
+    }
+
+    public @NotNull MySQLCompiledQuery compile(final @NotNull String sqlString) {
+        return new MySQLCompiledQuery(this, sqlString);
+    }
+
+    // Compiled queries run on the calling thread; the uninstrumented path avoids capturing lambdas so a call allocates
+    // nothing, unless it needs a default deadline.
+    protected <T> @NotNull Optional<T> executeCompiledQuery(final @NotNull String sqlString,
+                                                            final @NotNull MySQLCompiledQuery.Binding binding,
+                                                            final @NotNull ThrowableFunction<ResultSet, T> mapper) throws SQLException {
+        if (this.needsDefaultDeadline()) {
+            return this.withDefaultDeadline(() -> this.executeCompiledQuery(sqlString, binding, mapper));
+        }
+        if (this.isInstrumented()) {
+            return this.measure(MySQLStatementType.QUERY, sqlString, System.nanoTime(), connection -> this._executeCompiledQuery(connection, sqlString, binding, mapper));
+        }
+
+        MySQLPooledConnection pinned = this.pinnedConnection();
+        if (pinned != null) return this._executeCompiledQuery(pinned, sqlString, binding, mapper);
+
+        this.circuitBreaker.acquirePermission();
+        MySQLPooledConnection pooled = null;
+        try {
+            pooled = this.pool.borrow();
+            Optional<T> result = this._executeCompiledQuery(pooled, sqlString, binding, mapper);
+            this.circuitBreaker.onSuccess();
+            return result;
+        } catch (SQLException | RuntimeException exception) {
+            this.onUnretriedFailure(pooled, exception);
+            throw exception;
+        } finally {
+            if (pooled != null) pooled.close();
+        }
+    }
+
+    private <T> @NotNull Optional<T> _executeCompiledQuery(final @NotNull MySQLPooledConnection connection,
+                                                           final @NotNull String sqlString,
+                                                           final @NotNull MySQLCompiledQuery.Binding binding,
+                                                           final @NotNull ThrowableFunction<ResultSet, T> mapper) throws SQLException {
+        final MySQLDeadline deadline = this.currentDeadline.get();
+        PreparedStatement preparedStatement = connection.prepareStatement(sqlString);
+        try {
+            binding.applyTo(preparedStatement);
+            if (deadline != null) deadline.arm(preparedStatement);
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                T value = this.isInstrumented() ? this.applyMeasured(mapper, resultSet) : mapper.apply(resultSet);
+                return Optional.ofNullable(value);
+            } catch (SQLException | RuntimeException exception) {
+                throw exception;
+            } catch (Throwable exception) {
+                throw new RuntimeException(exception);
+            }
+        } finally {
+            if (deadline != null) deadline.disarm(connection, preparedStatement);
+            connection.releaseStatement(sqlString, preparedStatement);
+        }
+    }
+
+    protected int executeCompiledUpdate(final @NotNull String sqlString,
+                                        final @NotNull MySQLCompiledQuery.Binding binding) throws SQLException {
+        if (this.needsDefaultDeadline()) {
+            return this.withDefaultDeadline(() -> this.executeCompiledUpdate(sqlString, binding));
+        }
+        if (this.isInstrumented()) {
+            return this.measure(MySQLStatementType.UPDATE, sqlString, System.nanoTime(), connection -> this._executeCompiledUpdate(connection, sqlString, binding));
+        }
+
+        MySQLPooledConnection pinned = this.pinnedConnection();
+        if (pinned != null) return this._executeCompiledUpdate(pinned, sqlString, binding);
+
+        this.circuitBreaker.acquirePermission();
+        MySQLPooledConnection pooled = null;
+        try {
+            pooled = this.pool.borrow();
+            int updateCount = this._executeCompiledUpdate(pooled, sqlString, binding);
+            this.circuitBreaker.onSuccess();
+            return updateCount;
+        } catch (SQLException | RuntimeException exception) {
+            this.onUnretriedFailure(pooled, exception);
+            throw exception;
+        } finally {
+            if (pooled != null) pooled.close();
+        }
+    }
+
+    private int _executeCompiledUpdate(final @NotNull MySQLPooledConnection connection,
+                                       final @NotNull String sqlString,
+                                       final @NotNull MySQLCompiledQuery.Binding binding) throws SQLException {
+        final MySQLDeadline deadline = this.currentDeadline.get();
+        PreparedStatement preparedStatement = connection.prepareStatement(sqlString);
+        try {
+            binding.applyTo(preparedStatement);
+            if (deadline != null) deadline.arm(preparedStatement);
+
+            int updateCount = preparedStatement.executeUpdate();
+            this.recordRows(updateCount);
+            return updateCount;
+        } finally {
+            if (deadline != null) deadline.disarm(connection, preparedStatement);
+            connection.releaseStatement(sqlString, preparedStatement);
+            this.invalidateCachedResults(sqlString);
+        }
+    }
+
+
+    private int @NotNull [] _executeBatch(final long submitted,
+                                          final boolean transactional,
+                                          final int chunkSize,
+                                          final @NotNull String sqlString,
+                                          final @NotNull Iterable<Object[]> rows) throws SQLException {
+        return this.measure(MySQLStatementType.BATCH, sqlString, submitted, connection -> this._executeBatch(connection, transactional, chunkSize, sqlString, rows));
+    }
+
+    private int @NotNull [] _executeBatch(final @NotNull MySQLPooledConnection connection,
+                                          final boolean transactional,
+                                          final int chunkSize,
+                                          final @NotNull String sqlString,
+                                          final @NotNull Iterable<Object[]> rows) throws SQLException {
+        final Connection rawConnection = connection.getConnection();
+        Preconditions.checkArgument(!rawConnection.isClosed(), "SQLConnection is closed!");
+        Preconditions.checkArgument(!sqlString.isEmpty() && !sqlString.isBlank(), "SQLString cannot be empty");
+        Preconditions.checkArgument(chunkSize > 0, "Chunk size must be positive");
+
+        // Inside a transaction the surrounding session already owns commit and rollback.
+        final boolean ownsTransaction = transactional && rawConnection.getAutoCommit();
+        if (ownsTransaction) rawConnection.setAutoCommit(false);
+
+        final MySQLDeadline deadline = this.currentDeadline.get();
+        try {
+            int[] updateCounts = new int[0];
+            PreparedStatement preparedStatement = connection.prepareStatement(sqlString);
             try {
-                this.connection.setAutoCommit(false);
+                if (deadline != null) deadline.arm(preparedStatement);
+                int pending = 0;
+                for (Object[] values : rows) {
+                    for (int i = 0; i < values.length; i++) {
+                        MySQLLob.bind(preparedStatement, i + 1, values[i]);
+                    }
+                    preparedStatement.addBatch();
 
-                transmission.run();
+                    if (++pending == chunkSize) {
+                        updateCounts = Ints.concat(updateCounts, preparedStatement.executeBatch());
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    updateCounts = Ints.concat(updateCounts, preparedStatement.executeBatch());
+                }
+            } finally {
+                if (deadline != null) deadline.disarm(connection, preparedStatement);
+                preparedStatement.clearBatch();
+                connection.releaseStatement(sqlString, preparedStatement);
+                this.invalidateCachedResults(sqlString);
+            }
 
-                this.connection.commit();
-                this.connection.setAutoCommit(true);
-            } catch (Exception exception) {
+            if (ownsTransaction) rawConnection.commit();
+            this.recordRows(updateCounts.length);
+            return updateCounts;
+        } catch (Throwable exception) {
+            // Bad rows and failing iterators surface as unchecked exceptions, and must not leave the chunks sent so far behind.
+            if (ownsTransaction) rollback(connection, exception);
+            throw exception;
+        } finally {
+            if (ownsTransaction && !connection.isBroken()) rawConnection.setAutoCommit(true);
+        }
+    }
+
+    // Restoring autocommit after a failed rollback would commit the open transaction, so such a connection is discarded.
+    private static void rollback(final @NotNull MySQLPooledConnection connection, final @NotNull Throwable failure) {
+        try {
+            connection.getConnection().rollback();
+        } catch (SQLException exception) {
+            failure.addSuppressed(exception);
+            connection.markBroken();
+        }
+    }
+
+    // A null timeout runs the batch without a deadline.
+    public @NotNull CompletableFuture<int[]> executeBatchAsync(final @Nullable Duration timeout,
+                                                               final boolean transactional,
+                                                               final int chunkSize,
+                                                               final @NotNull String sqlString,
+                                                               final @NotNull Iterable<Object[]> rows) {
+        final long submitted = System.nanoTime();
+        return this.submit(MySQLPriority.BACKGROUND, timeout, () -> {
+            try {
+                return this._executeBatch(submitted, transactional, chunkSize, sqlString, rows);
+            } catch (SQLException exception) {
+                throw new RuntimeException(exception);
+            }
+        });
+    }
+    public @NotNull CompletableFuture<int[]> executeBatchAsync(final boolean transactional,
+                                                               final int chunkSize,
+                                                               final @NotNull String sqlString,
+                                                               final @NotNull Iterable<Object[]> rows) {
+        return this.executeBatchAsync(this.defaultQueryTimeout, transactional, chunkSize, sqlString, rows);
+    }
+    public @NotNull CompletableFuture<int[]> executeBatchAsync(final @NotNull String sqlString,
+                                                               final @NotNull Iterable<Object[]> rows) {
+        return this.executeBatchAsync(false, DEFAULT_BATCH_CHUNK_SIZE, sqlString, rows);
+    }
+
+    public int @NotNull [] executeBatch(final boolean transactional,
+                                        final int chunkSize,
+                                        final @NotNull String sqlString,
+                                        final @NotNull Iterable<Object[]> rows) throws MySQLServiceException {
+        return await(this.executeBatchAsync(transactional, chunkSize, sqlString, rows));
+    }
+    public int @NotNull [] executeBatch(final @NotNull String sqlString,
+                                        final @NotNull Iterable<Object[]> rows) throws MySQLServiceException {
+        return this.executeBatch(false, DEFAULT_BATCH_CHUNK_SIZE, sqlString, rows);
+    }
+
+    // Runs the batches in the given order in one transaction on the calling thread and returns their update counts in the
+    // same order. The same statement may appear more than once.
+    protected @NotNull List<int[]> executeGroupCommit(final @NotNull List<String> sqlStrings,
+                                                      final @NotNull List<? extends Iterable<Object[]>> batches) throws SQLException {
+        Preconditions.checkArgument(sqlStrings.size() == batches.size(), "Every batch needs exactly one statement");
+        return this.withConnection(connection -> {
+            final Connection rawConnection = connection.getConnection();
+            final boolean ownsTransaction = rawConnection.getAutoCommit();
+            if (ownsTransaction) rawConnection.setAutoCommit(false);
+
+            try {
+                List<int[]> updateCounts = new ArrayList<>(batches.size());
+                for (int i = 0; i < batches.size(); i++) {
+                    updateCounts.add(this._executeBatch(connection, false, DEFAULT_BATCH_CHUNK_SIZE, sqlStrings.get(i), batches.get(i)));
+                }
+                if (ownsTransaction) rawConnection.commit();
+                return updateCounts;
+            } catch (Throwable exception) {
+                // Restoring autocommit below would otherwise commit the batches that did run.
+                if (ownsTransaction) rollback(connection, exception);
+                throw exception;
+            } finally {
+                if (ownsTransaction && !connection.isBroken()) rawConnection.setAutoCommit(true);
+            }
+        });
+    }
+
+    // Runs the group commit in the write lane, so it queues behind interactive work like any other write, and under the
+    // given deadline unless that is null.
+    protected @NotNull CompletableFuture<List<int[]>> executeGroupCommitAsync(final @Nullable Duration timeout,
+                                                                              final @NotNull List<String> sqlStrings,
+                                                                              final @NotNull List<? extends Iterable<Object[]>> batches) {
+        return this.submit(MySQLPriority.WRITE, timeout, () -> {
+            try {
+                return this.executeGroupCommit(sqlStrings, batches);
+            } catch (SQLException exception) {
+                throw new RuntimeException(exception);
+            }
+        }).exceptionallyCompose(exception -> CompletableFuture.failedFuture(rootCause(exception)));
+    }
+
+    // Streams rows into LOAD DATA LOCAL INFILE while they are encoded; nothing is staged on disk. Needs MySQL Connector/J
+    // with allowLoadLocalInfile enabled, and local_infile on the server. A null timeout runs the load without a deadline,
+    // which large loads may need as the default query timeout applies otherwise.
+    public @NotNull CompletableFuture<MySQLBulkLoadResult> bulkLoadAsync(final @Nullable Duration timeout,
+                                                                        final @NotNull String table,
+                                                                        final @NotNull List<String> columns,
+                                                                        final @NotNull Iterator<Object[]> rows) {
+        final long submitted = System.nanoTime();
+        return this.submit(MySQLPriority.BACKGROUND, timeout, () -> {
+            try {
+                return this._bulkLoad(submitted, table, columns, rows);
+            } catch (SQLException exception) {
+                throw new RuntimeException(exception);
+            }
+        });
+    }
+    public @NotNull CompletableFuture<MySQLBulkLoadResult> bulkLoadAsync(final @NotNull String table,
+                                                                        final @NotNull List<String> columns,
+                                                                        final @NotNull Iterator<Object[]> rows) {
+        return this.bulkLoadAsync(this.defaultQueryTimeout, table, columns, rows);
+    }
+    // Record components map onto equally named columns.
+    public <R extends Record> @NotNull CompletableFuture<MySQLBulkLoadResult> bulkLoadAsync(final @NotNull String table,
+                                                                                           final @NotNull Class<R> type,
+                                                                                           final @NotNull Stream<R> records) {
+        return this.bulkLoadAsync(table, MySQLBulkLoadStream.recordColumns(type), records.map(MySQLBulkLoadStream.recordValues(type)).iterator());
+    }
+
+    public @NotNull MySQLBulkLoadResult bulkLoad(final @NotNull String table,
+                                                 final @NotNull List<String> columns,
+                                                 final @NotNull Iterator<Object[]> rows) throws MySQLServiceException {
+        return await(this.bulkLoadAsync(table, columns, rows));
+    }
+    public <R extends Record> @NotNull MySQLBulkLoadResult bulkLoad(final @NotNull String table,
+                                                                    final @NotNull Class<R> type,
+                                                                    final @NotNull Stream<R> records) throws MySQLServiceException {
+        return await(this.bulkLoadAsync(table, type, records));
+    }
+
+    private @NotNull MySQLBulkLoadResult _bulkLoad(final long submitted,
+                                                   final @NotNull String table,
+                                                   final @NotNull List<String> columns,
+                                                   final @NotNull Iterator<Object[]> rows) throws SQLException {
+        Preconditions.checkArgument(!table.isBlank(), "Table cannot be empty");
+        Preconditions.checkArgument(!columns.isEmpty(), "Columns cannot be empty");
+
+        final StringJoiner columnList = new StringJoiner(", ", " (", ")");
+        columns.forEach(column -> columnList.add(quoteIdentifier(column)));
+        final String sqlString = "LOAD DATA LOCAL INFILE 'stream' INTO TABLE " + quoteIdentifier(table) + " CHARACTER SET utf8mb4" + columnList;
+
+        return this.measure(MySQLStatementType.BATCH, sqlString, submitted, connection -> {
+            final MySQLBulkLoadStream stream = new MySQLBulkLoadStream(rows, columns.size());
+            final MySQLDeadline deadline = this.currentDeadline.get();
+            final long start = System.nanoTime();
+            try (Statement statement = connection.getConnection().createStatement()) {
+                stream.attachTo(statement);
+                if (deadline != null) deadline.arm(statement);
                 try {
-                    this.connection.rollback();
-                    this.connection.setAutoCommit(true);
-                } catch (SQLException rollbackException) {
-                    throw new RuntimeException(rollbackException);
+                    long rowsLoaded = statement.executeLargeUpdate(sqlString);
+                    this.recordRows(rowsLoaded);
+                    return new MySQLBulkLoadResult(stream.getRowCount(), rowsLoaded, stream.getByteCount(), Duration.ofNanos(System.nanoTime() - start));
+                } finally {
+                    if (deadline != null) deadline.disarm(connection, statement);
                 }
+            } catch (SQLException | RuntimeException exception) {
+                if (stream.getFailure() == null) throw exception;
+                // The transfer was cut off mid-stream, so the connection's protocol state cannot be trusted anymore.
+                connection.markBroken();
+                final SQLException failure = new SQLNonTransientException(stream.getFailure().getMessage(), stream.getFailure());
+                failure.addSuppressed(exception);
+                throw failure;
+            } finally {
+                this.invalidateCachedResults(sqlString);
             }
-        }, this.sequentialExecutor);
+        });
+    }
+
+    // Quotes each part of a possibly schema-qualified name in backticks.
+    static @NotNull String quoteIdentifier(final @NotNull String identifier) {
+        final StringJoiner quoted = new StringJoiner(".");
+        for (String part : identifier.split("\\.")) {
+            quoted.add('`' + part.replace("`", "``") + '`');
+        }
+        return quoted.toString();
+    }
+
+    // Runs the query on a worker even when called from inside a transaction, so it never sees the transaction's rows. It
+    // never waits for room in the lane either: when the lane is full the future fails right away.
+    protected <T> @NotNull CompletableFuture<Optional<T>> executeDetachedQueryAsync(final @NotNull String sqlString,
+                                                                                   final @NotNull ThrowableFunction<ResultSet, T> mapper,
+                                                                                   final Object... values) {
+        final long submitted = System.nanoTime();
+        final CompletableFuture<Optional<T>> future = new CompletableFuture<>();
+        try {
+            this.scheduler.tryExecute(MySQLPriority.INTERACTIVE, () -> {
+                try {
+                    future.complete(this.withDefaultDeadline(() -> this._executeQuery(submitted, true, sqlString, mapper, values)));
+                } catch (Throwable exception) {
+                    future.completeExceptionally(exception);
+                }
+            });
+        } catch (RejectedExecutionException exception) {
+            future.completeExceptionally(exception);
+        }
+        return future;
+    }
+
+    // Coalesces concurrent lookups of single rows by key into IN queries; see MySQLBatchLoader.
+    public <K, V> @NotNull MySQLBatchLoader<K, V> batchLoader(final @NotNull String table,
+                                                             final @NotNull String keyColumn,
+                                                             final @NotNull Class<K> keyType,
+                                                             final @NotNull ThrowableFunction<ResultSet, V> rowMapper,
+                                                             final int maxBatchSize,
+                                                             final @NotNull Duration window) {
+        return new MySQLBatchLoader<>(this, table, keyColumn, keyType, rowMapper, maxBatchSize, window);
+    }
+    public <K, V> @NotNull MySQLBatchLoader<K, V> batchLoader(final @NotNull String table,
+                                                             final @NotNull String keyColumn,
+                                                             final @NotNull Class<K> keyType,
+                                                             final @NotNull ThrowableFunction<ResultSet, V> rowMapper) {
+        return this.batchLoader(table, keyColumn, keyType, rowMapper, MySQLBatchLoader.DEFAULT_MAX_BATCH_SIZE, MySQLBatchLoader.DEFAULT_WINDOW);
+    }
+
+    // Flushes run under the given timeout; null runs them without a deadline.
+    public @NotNull MySQLWriteBehindQueue writeBehind(final int capacity, final int flushSize, final @NotNull Duration flushInterval, final @Nullable Duration flushTimeout) {
+        return new MySQLWriteBehindQueue(this, capacity, flushSize, flushInterval, flushTimeout);
+    }
+    public @NotNull MySQLWriteBehindQueue writeBehind(final int capacity, final int flushSize, final @NotNull Duration flushInterval) {
+        return this.writeBehind(capacity, flushSize, flushInterval, this.defaultQueryTimeout);
+    }
+
+
+    public @NotNull MySQLTransaction beginTransaction() throws MySQLServiceException {
+        return this.beginTransaction(null, false);
+    }
+    public @NotNull MySQLTransaction beginTransaction(final @Nullable MySQLIsolationLevel isolationLevel,
+                                                      final boolean readOnly) throws MySQLServiceException {
+        try {
+            return this.openTransaction(System.nanoTime(), isolationLevel, readOnly);
+        } catch (SQLException exception) {
+            throw new MySQLServiceException(exception);
+        }
+    }
+
+    private @NotNull MySQLTransaction openTransaction(final long submitted,
+                                                      final @Nullable MySQLIsolationLevel isolationLevel,
+                                                      final boolean readOnly) throws SQLException {
+        this.circuitBreaker.acquirePermission();
+        MySQLPooledConnection pooled = null;
+        try {
+            pooled = this.pool.borrow();
+            return new MySQLTransaction(this, pooled, submitted, isolationLevel, readOnly);
+        } catch (SQLException | RuntimeException exception) {
+            this.onUnretriedFailure(pooled, exception);
+            if (pooled != null) pooled.close();
+            throw exception;
+        }
+    }
+
+    // Runs the work on the calling thread and commits it. Service calls made by the work join the transaction as well.
+    // A nested call joins the surrounding transaction through a savepoint, so its isolation level and read-only hint are ignored.
+    public <T> T transaction(final @Nullable MySQLIsolationLevel isolationLevel,
+                             final boolean readOnly,
+                             final @NotNull ThrowableFunction<MySQLTransaction, T> work) throws MySQLServiceException {
+        try {
+            return this._transaction(System.nanoTime(), isolationLevel, readOnly, work);
+        } catch (MySQLServiceException exception) {
+            throw exception;
+        } catch (Throwable exception) {
+            throw new MySQLServiceException(exception);
+        }
+    }
+    public <T> T transaction(final @NotNull ThrowableFunction<MySQLTransaction, T> work) throws MySQLServiceException {
+        return this.transaction(null, false, work);
+    }
+
+    // Hops to the scheduler once; the returned future fails with the exception that caused the rollback.
+    public <T> @NotNull CompletableFuture<T> transactionAsync(final @Nullable MySQLIsolationLevel isolationLevel,
+                                                              final boolean readOnly,
+                                                              final @NotNull ThrowableFunction<MySQLTransaction, T> work) {
+        final long submitted = System.nanoTime();
+        if (this.currentTransaction.get() != null) {
+            try {
+                return CompletableFuture.completedFuture(this._transaction(submitted, isolationLevel, readOnly, work));
+            } catch (Throwable exception) {
+                return CompletableFuture.failedFuture(rootCause(exception));
+            }
+        }
+
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            this.lane(MySQLPriority.WRITE).execute(() -> {
+                try {
+                    future.complete(this._transaction(submitted, isolationLevel, readOnly, work));
+                } catch (Throwable exception) {
+                    future.completeExceptionally(rootCause(exception));
+                }
+            });
+        } catch (RejectedExecutionException exception) {
+            future.completeExceptionally(exception);
+        }
+        return future;
+    }
+    public <T> @NotNull CompletableFuture<T> transactionAsync(final @NotNull ThrowableFunction<MySQLTransaction, T> work) {
+        return this.transactionAsync(null, false, work);
+    }
+
+    private <T> T _transaction(final long submitted,
+                               final @Nullable MySQLIsolationLevel isolationLevel,
+                               final boolean readOnly,
+                               final @NotNull ThrowableFunction<MySQLTransaction, T> work) throws Throwable {
+        final MySQLTransaction outer = this.currentTransaction.get();
+        if (outer != null) {
+            final Savepoint savepoint = outer.getPooledConnection().getConnection().setSavepoint();
+            try {
+                T result = work.apply(outer);
+                outer.getPooledConnection().getConnection().releaseSavepoint(savepoint);
+                return result;
+            } catch (Throwable exception) {
+                outer.getPooledConnection().getConnection().rollback(savepoint);
+                throw exception;
+            }
+        }
+
+        final MySQLTransaction transaction = this.openTransaction(submitted, isolationLevel, readOnly);
+        this.currentTransaction.set(transaction);
+        try {
+            T result = work.apply(transaction);
+            if (transaction.isActive()) transaction.commit();
+            return result;
+        } catch (Throwable exception) {
+            transaction.setFailure(rootCause(exception));
+            throw exception;
+        } finally {
+            this.currentTransaction.remove();
+            transaction.close();
+        }
+    }
+
+    public @NotNull CompletableFuture<Void> transmit(final @NotNull ThrowableRunnable transmission) {
+        return this.transactionAsync(null, false, transaction -> {
+            transmission.run();
+            return null;
+        });
+    }
+
+    // Runs a statement of a transaction on its pinned connection, on the calling thread.
+    private <T> T inTransaction(final @NotNull MySQLTransaction transaction,
+                                final @NotNull MySQLStatementType type,
+                                final @NotNull String sqlString,
+                                final @NotNull SQLFunction<MySQLPooledConnection, T> action) throws SQLException {
+        if (this.needsDefaultDeadline()) {
+            return this.withDefaultDeadline(() -> this.inTransaction(transaction, type, sqlString, action));
+        }
+        final MySQLTransaction outer = this.currentTransaction.get();
+        if (outer == transaction) return this.measure(type, sqlString, System.nanoTime(), action);
+
+        this.currentTransaction.set(transaction);
+        try {
+            return this.measure(type, sqlString, System.nanoTime(), action);
+        } finally {
+            if (outer == null) this.currentTransaction.remove();
+            else this.currentTransaction.set(outer);
+        }
+    }
+
+    protected <T> @NotNull Optional<T> executeTransactionalQuery(final @NotNull MySQLTransaction transaction,
+                                                                 final @NotNull String sqlString,
+                                                                 final @NotNull ThrowableFunction<ResultSet, T> mapper,
+                                                                 final Object... values) throws SQLException {
+        return this.inTransaction(transaction, MySQLStatementType.QUERY, sqlString, connection -> this._executeQuery(connection, sqlString, mapper, values));
+    }
+
+    protected int executeTransactionalUpdate(final @NotNull MySQLTransaction transaction,
+                                             final @NotNull String sqlString,
+                                             final Object... values) throws SQLException {
+        return this.inTransaction(transaction, MySQLStatementType.UPDATE, sqlString, connection -> this._executeUpdate(connection, sqlString, values));
+    }
+
+    protected int @NotNull [] executeTransactionalBatch(final @NotNull MySQLTransaction transaction,
+                                                        final int chunkSize,
+                                                        final @NotNull String sqlString,
+                                                        final @NotNull Iterable<Object[]> rows) throws SQLException {
+        return this.inTransaction(transaction, MySQLStatementType.BATCH, sqlString, connection -> this._executeBatch(connection, false, chunkSize, sqlString, rows));
+    }
+
+    protected void completeTransaction(final @NotNull MySQLTransaction transaction,
+                                       final @NotNull Set<String> writes,
+                                       final @Nullable Throwable failure) {
+        if (this.resultCache != null) {
+            final String catalog = this.pool.getCatalog();
+            writes.forEach(write -> this.resultCache.invalidate(catalog, write));
+        }
+        if (this.isInstrumented()) {
+            final long started = transaction.getStarted();
+            this.recordStatement(MySQLStatementType.TRANSMIT, "", null, started - transaction.getSubmitted(), System.nanoTime() - started, 0, 0, 0, failure);
+        }
+    }
+
+    // Strips the wrappers the service adds on its way out: service and completion exceptions, bare RuntimeExceptions and retried SQLExceptions.
+    private static @NotNull Throwable rootCause(@NotNull Throwable exception) {
+        Throwable cause = exception;
+        while (cause.getCause() != null && (cause instanceof MySQLServiceException
+                || cause instanceof CompletionException
+                || cause.getClass() == RuntimeException.class
+                || (cause instanceof SQLException && cause.getCause() instanceof SQLException))) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private static <T> T await(final @NotNull CompletableFuture<T> future) throws MySQLServiceException {
+        AtomicReference<Throwable> caughtException = new AtomicReference<>();
+
+        T result = future
+                .exceptionally(
+                        exception -> {
+                            caughtException.set(exception);
+                            return null;
+                        }
+                ).join();
+
+        if (caughtException.get() != null) {
+            Throwable exception = caughtException.get();
+            if (exception instanceof MySQLServiceException serviceException) {
+                throw serviceException;
+            }
+            throw new MySQLServiceException(exception);
+        }
+
+        return result;
+    }
+
+    @FunctionalInterface
+    private interface SQLFunction<T, R> {
+        R apply(T t) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface SQLSupplier<T> {
+        T get() throws SQLException;
+    }
+
+    private static class StatementProbe {
+        private long mapperNanos;
+        private long rows;
+        private int retries;
+        private Object[] values;
+
+        private void reset() {
+            this.mapperNanos = 0;
+            this.rows = 0;
+            this.retries = 0;
+            this.values = null;
+        }
     }
 
     /*
@@ -0,0 +1,213 @@
+package de.betacoding.mysql;
+
+import de.betacoding.util.ThrowableFunction;
+import de.betacoding.util.ThrowableRunnable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Sends reads to the replicas and everything else to the primary. Reads a thread makes shortly after its own write stay
+// on the primary, so it reads its writes; the reads of other threads are not held up by it.
+public class MySQLReadWriteRouter {
+    private final MySQLRepository primary;
+    private final List<Replica> replicas;
+    private final MySQLReplicaSelection selection;
+    private final long stickinessNanos;
+
+    private final ThreadLocal<WriteMark> lastWrite = ThreadLocal.withInitial(WriteMark::new);
+
+    public MySQLReadWriteRouter(@NotNull MySQLRepository primary, @NotNull List<MySQLRepository> replicas, @NotNull MySQLReplicaSelection selection, @NotNull Duration stickiness) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.selection = selection;
+        this.stickinessNanos = stickiness.toNanos();
+    }
+
+    public @NotNull MySQLRepository getPrimary() {
+        return this.primary;
+    }
+
+    public @NotNull CompletableFuture<Void> establish(final @NotNull String password) {
+        return this.establish(password, password);
+    }
+    public @NotNull CompletableFuture<Void> establish(final @NotNull String primaryPassword, final @NotNull String replicaPassword) {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[this.replicas.size() + 1];
+        futures[0] = this.primary.establish(primaryPassword);
+        for (int i = 0; i < this.replicas.size(); i++) {
+            futures[i + 1] = this.replicas.get(i).repository.establish(replicaPassword);
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    public @NotNull CompletableFuture<Void> close() {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[this.replicas.size() + 1];
+        futures[0] = this.primary.close();
+        for (int i = 0; i < this.replicas.size(); i++) {
+            futures[i + 1] = this.replicas.get(i).repository.close();
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    private @Nullable Replica selectReplica() {
+        if (this.lastWrite.get().isWithin(this.stickinessNanos)) return null;
+
+        Replica selected = null;
+        for (Replica replica : this.replicas) {
+            if (!replica.repository.isEstablishedNow()) continue;
+            if (selected == null || replica.load(this.selection) < selected.load(this.selection)) {
+                selected = replica;
+            }
+        }
+        return selected;
+    }
+
+    // Returns the calling thread's mark, so a write completing on another thread still extends it.
+    private @NotNull WriteMark markWrite() {
+        final WriteMark mark = this.lastWrite.get();
+        mark.touch();
+        return mark;
+    }
+
+    public <T> @NotNull CompletableFuture<Optional<T>> executeQueryAsync(final boolean retry,
+                                                                         final @NotNull String sqlString,
+                                                                         final @NotNull ThrowableFunction<ResultSet, T> mapper,
+                                                                         final Object... values) {
+        Replica replica = this.selectReplica();
+        if (replica == null) return this.primary.getService().executeQueryAsync(retry, sqlString, mapper, values);
+
+        final long start = replica.begin();
+        return replica.repository.getService().executeQueryAsync(retry, sqlString, mapper, values)
+                .whenComplete(($, exception) -> replica.end(start, exception == null));
+    }
+    public <T> @NotNull CompletableFuture<Optional<T>> executeQueryAsync(final @NotNull String sqlString,
+                                                                         final @NotNull ThrowableFunction<ResultSet, T> mapper,
+                                                                         final Object... values) {
+        return this.executeQueryAsync(true, sqlString, mapper, values);
+    }
+
+    public <T> @NotNull Optional<T> executeQuery(final boolean retry,
+                                                 final @NotNull String sqlString,
+                                                 final @NotNull ThrowableFunction<ResultSet, T> mapper,
+                                                 final Object... values) throws MySQLServiceException {
+        Replica replica = this.selectReplica();
+        if (replica == null) return this.primary.getService().executeQuery(retry, sqlString, mapper, values);
+
+        final long start = replica.begin();
+        boolean succeeded = false;
+        try {
+            Optional<T> result = replica.repository.getService().executeQuery(retry, sqlString, mapper, values);
+            succeeded = true;
+            return result;
+        } finally {
+            replica.end(start, succeeded);
+        }
+    }
+    public <T> @NotNull Optional<T> executeQuery(final @NotNull String sqlString,
+                                                 final @NotNull ThrowableFunction<ResultSet, T> mapper,
+                                                 final Object... values) throws MySQLServiceException {
+        return this.executeQuery(true, sqlString, mapper, values);
+    }
+
+    public @NotNull CompletableFuture<Integer> executeUpdateAsync(final boolean retry,
+                                                                  final @NotNull String sqlString,
+                                                                  final Object... values) {
+        final WriteMark mark = this.markWrite();
+        return this.primary.getService().executeUpdateAsync(retry, sqlString, values)
+                .whenComplete(($, exception) -> mark.touch());
+    }
+    public @NotNull CompletableFuture<Integer> executeUpdateAsync(final @NotNull String sqlString,
+                                                                  final Object... values) {
+        return this.executeUpdateAsync(true, sqlString, values);
+    }
+
+    public @NotNull Integer executeUpdate(final boolean retry,
+                                          final @NotNull String sqlString,
+                                          final Object... values) throws MySQLServiceException {
+        final WriteMark mark = this.markWrite();
+        try {
+            return this.primary.getService().executeUpdate(retry, sqlString, values);
+        } finally {
+            mark.touch();
+        }
+    }
+    public @NotNull Integer executeUpdate(final @NotNull String sqlString,
+                                          final Object... values) throws MySQLServiceException {
+        return this.executeUpdate(true, sqlString, values);
+    }
+
+    public @NotNull CompletableFuture<Void> transmit(final @NotNull ThrowableRunnable transmission) {
+        final WriteMark mark = this.markWrite();
+        return this.primary.getService().transmit(transmission)
+                .whenComplete(($, exception) -> mark.touch());
+    }
+
+    private static class WriteMark {
+        private volatile long touched;
+        private volatile boolean written;
+
+        private void touch() {
+            this.touched = System.nanoTime();
+            this.written = true;
+        }
+
+        private boolean isWithin(long nanos) {
+            return this.written && System.nanoTime() - this.touched <= nanos;
+        }
+    }
+
+    private static class Replica {
+        // Weight of the newest sample in the latency moving average, in eighths.
+        private static final int LATENCY_SAMPLE_WEIGHT = 2;
+        // A failed statement counts as this slow, so a replica that fails fast does not attract the traffic.
+        private static final long FAILURE_LATENCY_NANOS = 1_000_000_000L;
+        // The average halves for every second without a sample, so a replica that stopped being selected after a
+        // failure wins a statement back once its penalty drops below the others' latency.
+        private static final long LATENCY_HALF_LIFE_NANOS = 1_000_000_000L;
+
+        private final MySQLRepository repository;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicLong latencyNanos = new AtomicLong();
+        private volatile long sampled = System.nanoTime();
+
+        private Replica(@NotNull MySQLRepository repository) {
+            this.repository = repository;
+        }
+
+        private long load(@NotNull MySQLReplicaSelection selection) {
+            return switch (selection) {
+                case LEAST_OUTSTANDING -> this.outstanding.get();
+                case LOWEST_LATENCY -> decay(this.latencyNanos.get(), System.nanoTime() - this.sampled);
+            };
+        }
+
+        private long begin() {
+            this.outstanding.incrementAndGet();
+            return System.nanoTime();
+        }
+
+        private void end(long start, boolean succeeded) {
+            this.outstanding.decrementAndGet();
+            final long now = System.nanoTime();
+            final long elapsed = now - start;
+            final long sample = succeeded ? elapsed : Math.max(elapsed, FAILURE_LATENCY_NANOS);
+            final long idle = now - this.sampled;
+            this.sampled = now;
+            this.latencyNanos.accumulateAndGet(sample, (average, latest) -> {
+                final long decayed = decay(average, idle);
+                return decayed == 0 ? latest : decayed + (latest - decayed) * LATENCY_SAMPLE_WEIGHT / 8;
+            });
+        }
+
+        private static long decay(long average, long idleNanos) {
+            final long halvings = idleNanos / LATENCY_HALF_LIFE_NANOS;
+            return halvings >= Long.SIZE - 1 ? 0 : average >> halvings;
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package de.betacoding.mysql;
+
+public enum MySQLReplicaSelection {
+    LEAST_OUTSTANDING,
+    LOWEST_LATENCY
+}
@@ -3,6 +3,7 @@ package de.betacoding.mysql;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 
 public class MySQLRepository {
     private final MySQLConnector connector;
@@ -15,6 +16,10 @@ public class MySQLRepository {
     public boolean isEstablished() {
         return this.future.thenApply($ -> this.connector.isEstablished()).join();
     }
+    // Does not wait for a pending establish or close, so it reports the state before them.
+    public boolean isEstablishedNow() {
+        return this.connector.isEstablished();
+    }
 
     public @NotNull MySQLQueryService getService() {
         return this.connector.getService().orElseThrow(() -> new RuntimeException("MySQLService is not initiated: Connection is not established"));
@@ -28,14 +33,21 @@ public class MySQLRepository {
     public @NotNull CompletableFuture<Void> establish(final @NotNull String password) {
         return this.future = this.future.thenCompose($ -> {
             if (this.connector.isEstablished()) return CompletableFuture.completedFuture(null);
-            return CompletableFuture.runAsync(() ->
-                    this.connector.establish(password));
+            return this.runLifecycle(() -> this.connector.establish(password));
         });
     }
     public @NotNull CompletableFuture<Void> close() {
         return this.future = this.future.thenCompose($ -> {
             if (!this.connector.isEstablished()) return CompletableFuture.completedFuture(null);
-            return CompletableFuture.runAsync(this.connector::close);
+            return this.runLifecycle(this.connector::close);
         });
     }
+
+    // Each establish or close gets a thread of its own that ends with it, so a closed repository leaves no thread behind
+    // and can still be established again.
+    private @NotNull CompletableFuture<Void> runLifecycle(final @NotNull Runnable task) {
+        final ExecutorService executor = this.connector.getExecutionStrategy().createExecutor(1);
+        return CompletableFuture.runAsync(task, executor)
+                .whenComplete(($, exception) -> executor.shutdown());
+    }
 }
@@ -0,0 +1,132 @@
+package de.betacoding.mysql;
+
+import com.google.common.base.Preconditions;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransactionRollbackException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.SQLTransientException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Decides which failures are retried and how long to back off. Subclass and override classify to recognize more errors.
+public class MySQLResiliencePolicy {
+    public static final MySQLResiliencePolicy DEFAULT = new MySQLResiliencePolicy(3, Duration.ofMillis(50), Duration.ofSeconds(1), 0.1, 10, 5, Duration.ofSeconds(5));
+    // No retries and a breaker that never opens.
+    public static final MySQLResiliencePolicy NONE = new MySQLResiliencePolicy(1, Duration.ZERO, Duration.ZERO, 0, 0, Integer.MAX_VALUE, Duration.ZERO);
+
+    // Connector/J and server error codes: can't connect, server gone away, lost connection, connection killed, server shutdown.
+    private static final Set<Integer> CONNECTION_ERRORS = Set.of(2002, 2003, 2006, 2013, 1927, 1053);
+    // Deadlock found, lock wait timeout exceeded.
+    private static final Set<Integer> DEADLOCK_ERRORS = Set.of(1213, 1205);
+    // Too many connections, server is running with --read-only (replica promotion in progress).
+    private static final Set<Integer> TRANSIENT_ERRORS = Set.of(1040, 1290);
+
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final double retryBudgetRatio;
+    private final int retryBudgetReserve;
+    private final int failureThreshold;
+    private final Duration openDuration;
+
+    // retryBudgetRatio retries are earned per statement, up to retryBudgetReserve banked retries, which keeps a brownout
+    // from turning into a retry storm. failureThreshold consecutive connection failures open the breaker for openDuration.
+    public MySQLResiliencePolicy(int maxAttempts,
+                                 @NotNull Duration initialBackoff,
+                                 @NotNull Duration maxBackoff,
+                                 double retryBudgetRatio,
+                                 int retryBudgetReserve,
+                                 int failureThreshold,
+                                 @NotNull Duration openDuration) {
+        Preconditions.checkArgument(maxAttempts > 0, "Max attempts must be positive");
+        Preconditions.checkArgument(!initialBackoff.isNegative() && maxBackoff.compareTo(initialBackoff) >= 0, "Backoff must satisfy 0 <= initial <= max");
+        Preconditions.checkArgument(retryBudgetRatio >= 0 && retryBudgetReserve >= 0, "Retry budget cannot be negative");
+        Preconditions.checkArgument(failureThreshold > 0, "Failure threshold must be positive");
+
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.retryBudgetRatio = retryBudgetRatio;
+        this.retryBudgetReserve = retryBudgetReserve;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+    }
+
+    public int getMaxAttempts() {
+        return this.maxAttempts;
+    }
+    public @NotNull Duration getInitialBackoff() {
+        return this.initialBackoff;
+    }
+    public @NotNull Duration getMaxBackoff() {
+        return this.maxBackoff;
+    }
+    public double getRetryBudgetRatio() {
+        return this.retryBudgetRatio;
+    }
+    public int getRetryBudgetReserve() {
+        return this.retryBudgetReserve;
+    }
+    public int getFailureThreshold() {
+        return this.failureThreshold;
+    }
+    public @NotNull Duration getOpenDuration() {
+        return this.openDuration;
+    }
+
+    public @NotNull MySQLErrorKind classify(@NotNull Throwable exception) {
+        SQLException sqlException = findSQLException(exception);
+        if (sqlException == null || sqlException instanceof MySQLCircuitOpenException) return MySQLErrorKind.FATAL;
+        if (sqlException instanceof MySQLClientTimeoutException) return MySQLErrorKind.CLIENT_TIMEOUT;
+        if (sqlException instanceof SQLTimeoutException) return MySQLErrorKind.TIMEOUT;
+
+        String state = sqlException.getSQLState();
+        int code = sqlException.getErrorCode();
+        if ((state != null && state.startsWith("08"))
+                || CONNECTION_ERRORS.contains(code)
+                || sqlException instanceof SQLTransientConnectionException
+                || sqlException instanceof SQLNonTransientConnectionException
+                || sqlException instanceof SQLRecoverableException) {
+            return MySQLErrorKind.CONNECTION;
+        }
+        if ("40001".equals(state) || DEADLOCK_ERRORS.contains(code) || sqlException instanceof SQLTransactionRollbackException) {
+            return MySQLErrorKind.DEADLOCK;
+        }
+        if (TRANSIENT_ERRORS.contains(code) || sqlException instanceof SQLTransientException) {
+            return MySQLErrorKind.TRANSIENT;
+        }
+        return MySQLErrorKind.FATAL;
+    }
+
+    // Statements that never reached the server may always be retried. Otherwise only idempotent ones are, except after a
+    // deadlock, which the server has already rolled back.
+    public boolean isRetryable(@NotNull MySQLErrorKind kind, boolean idempotent, boolean executed) {
+        return switch (kind) {
+            case DEADLOCK -> true;
+            case CONNECTION, TRANSIENT -> idempotent || !executed;
+            // Statement and lease timeouts mean the deadline is spent or the pool is saturated; retrying makes both worse.
+            case TIMEOUT, CLIENT_TIMEOUT, FATAL -> false;
+        };
+    }
+
+    // Full jitter: a uniformly random delay up to the capped exponential backoff for this attempt.
+    public @NotNull Duration backoff(int attempt) {
+        long initial = this.initialBackoff.toNanos();
+        if (initial == 0) return Duration.ZERO;
+        long ceiling = Math.min(this.maxBackoff.toNanos(), initial << Math.min(attempt - 1, 30));
+        return Duration.ofNanos(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+    private static SQLException findSQLException(@NotNull Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException) return sqlException;
+        }
+        return null;
+    }
+}
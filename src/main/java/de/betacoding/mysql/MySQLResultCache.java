@@ -0,0 +1,367 @@
+package de.betacoding.mysql;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Entries remember the version of every table they read. Writes bump those versions, which makes dependent entries stale.
+// Tables are tracked per schema, with unqualified names resolved against the catalog the statement ran in.
+public class MySQLResultCache {
+    // Words that end a table reference's alias, or start the clause after the table list.
+    private static final Set<String> CLAUSE_KEYWORDS = Set.of(
+            "WHERE", "ON", "USING", "JOIN", "INNER", "CROSS", "LEFT", "RIGHT", "NATURAL", "STRAIGHT_JOIN", "OUTER",
+            "GROUP", "ORDER", "HAVING", "LIMIT", "WINDOW", "UNION", "EXCEPT", "INTERSECT", "FOR", "LOCK", "SET",
+            "PARTITION", "USE", "IGNORE", "FORCE", "INTO", "VALUES", "SELECT", "AS", "WITH");
+    private static final Set<String> FROM_CLAUSE_END = Set.of(
+            "WHERE", "GROUP", "ORDER", "HAVING", "LIMIT", "WINDOW", "UNION", "EXCEPT", "INTERSECT", "FOR", "LOCK", "INTO", "SET", ";");
+    private static final Pattern WRITE_TABLE = Pattern.compile(
+            "^\\s*(?:(?:INSERT|REPLACE)(?:\\s+(?:LOW_PRIORITY|DELAYED|HIGH_PRIORITY|IGNORE))*(?:\\s+INTO)?"
+                    + "|UPDATE(?:\\s+(?:LOW_PRIORITY|IGNORE))*"
+                    + "|DELETE\\b.*?\\bFROM"
+                    + "|(?:TRUNCATE|ALTER|DROP)(?:\\s+TABLE)?(?:\\s+IF\\s+EXISTS)?"
+                    + "|LOAD\\s+DATA\\b.*?\\bINTO\\s+TABLE)\\s+([`\\w.]+)",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private final Cache<Key, Entry> cache;
+    private final ConcurrentHashMap<Key, Entry> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> tableVersions = new ConcurrentHashMap<>();
+    private final AtomicLong globalVersion = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public MySQLResultCache(long maximumSize) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .removalListener(notification -> this.recordRemoval(notification.getCause()))
+                .build();
+    }
+    public MySQLResultCache(long maximumWeight, @NotNull ToIntFunction<Object> weigher) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maximumWeight)
+                .<Key, Entry>weigher((key, entry) -> entry.value.map(weigher::applyAsInt).orElse(1))
+                .removalListener(notification -> this.recordRemoval(notification.getCause()))
+                .build();
+    }
+
+    private void recordRemoval(@NotNull RemovalCause cause) {
+        if (cause == RemovalCause.SIZE) this.evictions.increment();
+    }
+
+    @SuppressWarnings("unchecked")
+    protected <T> @NotNull CompletableFuture<Optional<T>> get(final @NotNull Duration ttl,
+                                                              final @Nullable String catalog,
+                                                              final @NotNull String sqlString,
+                                                              final @NotNull Object mapper,
+                                                              final Object @NotNull [] values,
+                                                              final @NotNull Supplier<CompletableFuture<Optional<T>>> loader) {
+        final Set<String> read = readTables(sqlString);
+        if (read.isEmpty()) return loader.get();
+
+        // The same statement reads different tables in another schema, so the catalog is part of the key.
+        final Key key = new Key(catalog, sqlString, mapper, values);
+        final Entry cached = this.cache.getIfPresent(key);
+        if (cached != null) {
+            if (this.isFresh(cached)) {
+                this.hits.increment();
+                return CompletableFuture.completedFuture((Optional<T>) cached.value);
+            }
+            this.cache.asMap().remove(key, cached);
+        }
+        this.misses.increment();
+
+        final Set<String> tables = dependencies(catalog, read);
+        final Entry load = new Entry(tables, this.snapshot(tables), System.nanoTime() + ttl.toNanos());
+        final Entry running = this.inFlight.putIfAbsent(key, load);
+        if (running != null && this.isCurrent(running)) {
+            return running.loading.thenApply(value -> (Optional<T>) value);
+        }
+        if (running != null) this.inFlight.put(key, load);
+
+        loader.get().whenComplete((value, exception) -> {
+            this.inFlight.remove(key, load);
+            if (exception != null) {
+                load.loading.completeExceptionally(exception);
+                return;
+            }
+            load.value = value;
+            if (this.isCurrent(load)) this.cache.put(key, load);
+            load.loading.complete(value);
+        });
+        return load.loading.thenApply(value -> (Optional<T>) value);
+    }
+
+    public void invalidate(@NotNull String sqlString) {
+        this.invalidate(null, sqlString);
+    }
+    public void invalidate(@Nullable String catalog, @NotNull String sqlString) {
+        Set<String> tables = writtenTables(sqlString);
+        if (tables.isEmpty()) {
+            this.invalidateAll();
+            return;
+        }
+        this.invalidateTables(tables.stream().map(table -> qualify(catalog, table)).toList());
+    }
+
+    // Unqualified names stand for the table in every schema.
+    public void invalidateTables(@NotNull Collection<String> tables) {
+        for (String table : tables) {
+            this.tableVersions.computeIfAbsent(normalize(table), $ -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    public void invalidateAll() {
+        this.globalVersion.incrementAndGet();
+        this.cache.invalidateAll();
+    }
+
+    public long getHits() {
+        return this.hits.sum();
+    }
+    public long getMisses() {
+        return this.misses.sum();
+    }
+    public long getEvictions() {
+        return this.evictions.sum();
+    }
+    public long getSize() {
+        return this.cache.size();
+    }
+
+    private long @NotNull [] snapshot(@NotNull Set<String> tables) {
+        long[] versions = new long[tables.size() + 1];
+        versions[0] = this.globalVersion.get();
+        int i = 1;
+        for (String table : tables) {
+            versions[i++] = this.tableVersions.computeIfAbsent(table, $ -> new AtomicLong()).get();
+        }
+        return versions;
+    }
+
+    private boolean isCurrent(@NotNull Entry entry) {
+        return Arrays.equals(entry.versions, this.snapshot(entry.tables));
+    }
+
+    private boolean isFresh(@NotNull Entry entry) {
+        return System.nanoTime() - entry.expiresAt < 0 && this.isCurrent(entry);
+    }
+
+    // Every table listed after FROM or JOIN, including comma joins and the tables of subqueries. Empty when the statement
+    // has none, which keeps it out of the cache.
+    protected static @NotNull Set<String> readTables(@NotNull String sqlString) {
+        final List<String> tokens = tokenize(sqlString);
+        final Set<String> tables = new LinkedHashSet<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            if (isKeyword(tokens.get(i), "JOIN") || isKeyword(tokens.get(i), "STRAIGHT_JOIN")) {
+                tableList(tokens, i + 1, tables);
+            } else if (isKeyword(tokens.get(i), "FROM")) {
+                tableList(tokens, i + 1, tables);
+                // A comma after a join condition, as in FROM a JOIN b USING (id), c, starts another table reference.
+                int depth = 0;
+                for (int j = i + 1; j < tokens.size() && depth >= 0 && !(depth == 0 && FROM_CLAUSE_END.contains(tokens.get(j).toUpperCase(Locale.ROOT))); j++) {
+                    if (tokens.get(j).equals("(")) depth++;
+                    else if (tokens.get(j).equals(")")) depth--;
+                    else if (depth == 0 && tokens.get(j).equals(",")) tableList(tokens, j + 1, tables);
+                }
+            }
+        }
+        return tables;
+    }
+
+    // The target of the statement, the tables of a multi-table UPDATE or DELETE, and every table it reads, as any of them
+    // may be written. Empty when the statement cannot be classified, which invalidates everything.
+    protected static @NotNull Set<String> writtenTables(@NotNull String sqlString) {
+        final Set<String> tables = new LinkedHashSet<>();
+        final Matcher matcher = WRITE_TABLE.matcher(sqlString);
+        if (!matcher.find()) return tables;
+        tables.add(normalize(matcher.group(1)));
+
+        final List<String> tokens = tokenize(sqlString);
+        if (isKeyword(tokens.get(0), "UPDATE")) {
+            int start = 1;
+            while (start < tokens.size() && (isKeyword(tokens.get(start), "LOW_PRIORITY") || isKeyword(tokens.get(start), "IGNORE"))) start++;
+            tableList(tokens, start, tables);
+        } else if (isKeyword(tokens.get(0), "DELETE")) {
+            // DELETE FROM t1, t2 USING t1 JOIN t2 lists the tables after USING; the targets are in the FROM list.
+            for (int i = 1; i < tokens.size(); i++) {
+                if (isKeyword(tokens.get(i), "USING")) tableList(tokens, i + 1, tables);
+            }
+        }
+        tables.addAll(readTables(sqlString));
+        return tables;
+    }
+
+    // Reads "table [[AS] alias] [, table [[AS] alias]]..." from the given token on. Derived tables are skipped here, as
+    // readTables visits their own FROM lists.
+    private static void tableList(@NotNull List<String> tokens, int start, @NotNull Set<String> tables) {
+        int i = start;
+        while (i < tokens.size()) {
+            final String token = tokens.get(i);
+            if (token.equals("(")) {
+                int depth = 0;
+                do {
+                    if (tokens.get(i).equals("(")) depth++;
+                    else if (tokens.get(i).equals(")")) depth--;
+                    i++;
+                } while (depth > 0 && i < tokens.size());
+            } else if (isIdentifier(token)) {
+                tables.add(normalize(token));
+                i++;
+            } else {
+                return;
+            }
+
+            if (i < tokens.size() && isKeyword(tokens.get(i), "AS")) i++;
+            if (i < tokens.size() && isIdentifier(tokens.get(i))) i++;
+            if (i >= tokens.size() || !tokens.get(i).equals(",")) return;
+            i++;
+        }
+    }
+
+    private static boolean isKeyword(@NotNull String token, @NotNull String keyword) {
+        return token.equalsIgnoreCase(keyword);
+    }
+
+    private static boolean isIdentifier(@NotNull String token) {
+        final char first = token.charAt(0);
+        if (first == '`') return true;
+        return (Character.isLetterOrDigit(first) || first == '_' || first == '$')
+                && !CLAUSE_KEYWORDS.contains(token.toUpperCase(Locale.ROOT));
+    }
+
+    // Splits the statement into identifiers, which keep their backticks and dots, and single punctuation characters.
+    // String literals and comments are dropped.
+    private static @NotNull List<String> tokenize(@NotNull String sqlString) {
+        final List<String> tokens = new ArrayList<>();
+        final int length = sqlString.length();
+        int i = 0;
+        while (i < length) {
+            final char c = sqlString.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '\'' || c == '"') {
+                i++;
+                while (i < length && sqlString.charAt(i) != c) {
+                    if (sqlString.charAt(i) == '\\') i++;
+                    i++;
+                }
+                i++;
+            } else if (c == '#' || (c == '-' && sqlString.startsWith("-- ", i))) {
+                while (i < length && sqlString.charAt(i) != '\n') i++;
+            } else if (c == '/' && sqlString.startsWith("/*", i)) {
+                final int end = sqlString.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+            } else if (c == '`' || isIdentifierPart(c)) {
+                final int start = i;
+                while (i < length && (sqlString.charAt(i) == '`' || sqlString.charAt(i) == '.' || isIdentifierPart(sqlString.charAt(i)))) {
+                    if (sqlString.charAt(i) == '`') {
+                        final int end = sqlString.indexOf('`', i + 1);
+                        i = end < 0 ? length : end + 1;
+                    } else {
+                        i++;
+                    }
+                }
+                tokens.add(sqlString.substring(start, i));
+            } else {
+                tokens.add(String.valueOf(c));
+                i++;
+            }
+        }
+        if (tokens.isEmpty()) tokens.add(";");
+        return tokens;
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    private static @NotNull String normalize(@NotNull String table) {
+        return table.replace("`", "").toLowerCase(Locale.ROOT);
+    }
+
+    private static @NotNull String qualify(@Nullable String catalog, @NotNull String table) {
+        if (catalog == null || catalog.isEmpty() || table.indexOf('.') >= 0) return table;
+        return normalize(catalog) + "." + table;
+    }
+
+    // An entry depends on each table under its schema-qualified name, and under its bare name as well, which is what
+    // invalidations without a schema bump.
+    private static @NotNull Set<String> dependencies(@Nullable String catalog, @NotNull Set<String> tables) {
+        final Set<String> dependencies = new LinkedHashSet<>();
+        for (String table : tables) {
+            final String qualified = qualify(catalog, table);
+            dependencies.add(qualified);
+            dependencies.add(qualified.substring(qualified.lastIndexOf('.') + 1));
+        }
+        return dependencies;
+    }
+
+    private static class Key {
+        private final String catalog;
+        private final String sqlString;
+        // Two mappers can turn the same rows into different values, so they do not share entries.
+        private final Object mapper;
+        private final Object[] values;
+        private final int hash;
+
+        private Key(@Nullable String catalog, @NotNull String sqlString, @NotNull Object mapper, Object @NotNull [] values) {
+            this.catalog = catalog;
+            this.sqlString = sqlString;
+            this.mapper = mapper;
+            this.values = values.clone();
+            this.hash = 31 * (31 * (31 * Objects.hashCode(catalog) + sqlString.hashCode()) + mapper.hashCode()) + Arrays.deepHashCode(this.values);
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            return object instanceof Key key
+                    && this.hash == key.hash
+                    && Objects.equals(this.catalog, key.catalog)
+                    && this.sqlString.equals(key.sqlString)
+                    && this.mapper.equals(key.mapper)
+                    && Arrays.deepEquals(this.values, key.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+    private static class Entry {
+        private final Set<String> tables;
+        private final long[] versions;
+        private final long expiresAt;
+        private final CompletableFuture<Optional<?>> loading = new CompletableFuture<>();
+
+        private volatile Optional<?> value = Optional.empty();
+
+        private Entry(@NotNull Set<String> tables, long @NotNull [] versions, long expiresAt) {
+            this.tables = tables;
+            this.versions = versions;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package de.betacoding.mysql;
+
+import de.betacoding.util.ThrowableFunction;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// Forward-only cursor over a row-streamed ResultSet. The driver only holds the current row in memory.
+class MySQLResultCursor<T> implements AutoCloseable {
+    // Connector/J switches to row-by-row streaming for forward-only, read-only statements with this fetch size.
+    static final int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+
+    private final MySQLPooledConnection leasedConnection;
+    private final PreparedStatement statement;
+    private final ResultSet resultSet;
+    private final ThrowableFunction<ResultSet, T> rowMapper;
+
+    private boolean closed;
+
+    private MySQLResultCursor(@Nullable MySQLPooledConnection leasedConnection, @NotNull PreparedStatement statement, @NotNull ResultSet resultSet, @NotNull ThrowableFunction<ResultSet, T> rowMapper) {
+        this.leasedConnection = leasedConnection;
+        this.statement = statement;
+        this.resultSet = resultSet;
+        this.rowMapper = rowMapper;
+    }
+
+    static <T> @NotNull MySQLResultCursor<T> open(final @NotNull MySQLPooledConnection connection,
+                                                  final boolean leased,
+                                                  final @NotNull String sqlString,
+                                                  final @NotNull ThrowableFunction<ResultSet, T> rowMapper,
+                                                  final Object... values) throws SQLException {
+        PreparedStatement statement = connection.getConnection().prepareStatement(sqlString, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        try {
+            statement.setFetchSize(STREAMING_FETCH_SIZE);
+            for (int i = 0; i < values.length; i++) {
+                MySQLLob.bind(statement, i + 1, values[i]);
+            }
+            return new MySQLResultCursor<>(leased ? connection : null, statement, statement.executeQuery(), rowMapper);
+        } catch (SQLException exception) {
+            statement.close();
+            throw exception;
+        }
+    }
+
+    boolean advance() throws SQLException {
+        if (this.closed) return false;
+        if (this.resultSet.next()) return true;
+        this.close();
+        return false;
+    }
+
+    T map() throws Throwable {
+        return this.rowMapper.apply(this.resultSet);
+    }
+
+    @Override
+    public void close() {
+        if (this.closed) return;
+        this.closed = true;
+        try {
+            this.resultSet.close();
+            this.statement.close();
+        } catch (SQLException ignored) {
+        } finally {
+            if (this.leasedConnection != null) this.leasedConnection.close();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package de.betacoding.mysql;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.SQLException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Every subscription runs its own streaming query. Rows are only read from the socket once the subscriber requested them.
+public class MySQLResultPublisher<T> implements Flow.Publisher<T> {
+    private final CursorFactory<T> cursorFactory;
+    private final Executor executor;
+
+    protected MySQLResultPublisher(@NotNull CursorFactory<T> cursorFactory, @NotNull Executor executor) {
+        this.cursorFactory = cursorFactory;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        subscriber.onSubscribe(new Subscription(subscriber));
+    }
+
+    private class Subscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger workInProgress = new AtomicInteger();
+
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+
+        // Only touched by the draining thread.
+        private MySQLResultCursor<T> cursor;
+        private boolean done;
+
+        private Subscription(@NotNull Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                this.invalidRequest = new IllegalArgumentException("Requested " + n + " rows, expected a positive amount");
+            } else {
+                this.demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            this.schedule();
+        }
+
+        @Override
+        public void cancel() {
+            this.cancelled = true;
+            this.schedule();
+        }
+
+        private void schedule() {
+            if (this.workInProgress.getAndIncrement() != 0) return;
+            try {
+                MySQLResultPublisher.this.executor.execute(this);
+            } catch (RejectedExecutionException exception) {
+                this.workInProgress.set(0);
+                this.fail(exception);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                this.drain();
+                missed = this.workInProgress.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain() {
+            if (this.done) return;
+            if (this.cancelled) {
+                this.finish();
+                return;
+            }
+            if (this.invalidRequest != null) {
+                this.fail(this.invalidRequest);
+                return;
+            }
+
+            try {
+                if (this.cursor == null) this.cursor = MySQLResultPublisher.this.cursorFactory.open();
+
+                while (this.demand.get() > 0 && !this.cancelled) {
+                    if (!this.cursor.advance()) {
+                        this.finish();
+                        this.subscriber.onComplete();
+                        return;
+                    }
+                    T value = this.cursor.map();
+                    this.demand.decrementAndGet();
+                    this.subscriber.onNext(value);
+                }
+                if (this.cancelled) this.finish();
+            } catch (Throwable exception) {
+                this.fail(exception);
+            }
+        }
+
+        private void fail(@NotNull Throwable exception) {
+            if (this.done) return;
+            this.finish();
+            this.subscriber.onError(exception);
+        }
+
+        private void finish() {
+            this.done = true;
+            if (this.cursor != null) this.cursor.close();
+        }
+    }
+
+    @FunctionalInterface
+    interface CursorFactory<T> {
+        @NotNull MySQLResultCursor<T> open() throws SQLException;
+    }
+}
@@ -0,0 +1,38 @@
+package de.betacoding.mysql;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Token bucket in thousandths of a retry: every statement earns a fraction of a retry, every retry spends a whole one.
+class MySQLRetryBudget {
+    private static final long SCALE = 1000;
+
+    private final long deposit;
+    private final long capacity;
+    private final AtomicLong tokens;
+
+    MySQLRetryBudget(@NotNull MySQLResiliencePolicy policy) {
+        this.deposit = Math.round(policy.getRetryBudgetRatio() * SCALE);
+        this.capacity = policy.getRetryBudgetReserve() * SCALE;
+        this.tokens = new AtomicLong(this.capacity);
+    }
+
+    void deposit() {
+        if (this.deposit == 0) return;
+        long current;
+        do {
+            current = this.tokens.get();
+            if (current >= this.capacity) return;
+        } while (!this.tokens.compareAndSet(current, Math.min(this.capacity, current + this.deposit)));
+    }
+
+    boolean tryWithdraw() {
+        long current;
+        do {
+            current = this.tokens.get();
+            if (current < SCALE) return false;
+        } while (!this.tokens.compareAndSet(current, current - SCALE));
+        return true;
+    }
+}
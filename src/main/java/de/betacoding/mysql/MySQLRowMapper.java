@@ -0,0 +1,207 @@
+package de.betacoding.mysql;
+
+import de.betacoding.util.ThrowableFunction;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Maps rows onto records (canonical constructor) or beans (no-arg constructor plus setters). Columns are matched to
+// properties by name, ignoring case and underscores. Each distinct column layout is compiled once into a single
+// (ResultSet)T method handle that reads every column with its typed getter, so rows are mapped without reflection or boxing.
+public class MySQLRowMapper<T> {
+    private static final ClassValue<MySQLRowMapper<?>> MAPPERS = new ClassValue<>() {
+        @Override
+        protected MySQLRowMapper<?> computeValue(Class<?> type) {
+            return new MySQLRowMapper<>(type);
+        }
+    };
+    private static final Map<Class<?>, String> TYPED_GETTERS = Map.of(
+            int.class, "getInt",
+            long.class, "getLong",
+            double.class, "getDouble",
+            float.class, "getFloat",
+            boolean.class, "getBoolean",
+            short.class, "getShort",
+            byte.class, "getByte",
+            String.class, "getString",
+            BigDecimal.class, "getBigDecimal",
+            byte[].class, "getBytes");
+
+    private final Class<T> type;
+    private final MethodHandles.Lookup lookup;
+    private final Map<String, Property> properties;
+    private final ConcurrentHashMap<String, MethodHandle> plans = new ConcurrentHashMap<>();
+
+    private MySQLRowMapper(@NotNull Class<T> type) {
+        this.type = type;
+        try {
+            this.lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+        } catch (IllegalAccessException exception) {
+            throw new IllegalArgumentException("Cannot access " + type.getName() + " to map rows onto it", exception);
+        }
+        this.properties = type.isRecord() ? this.recordProperties() : this.beanProperties();
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> @NotNull MySQLRowMapper<T> of(@NotNull Class<T> type) {
+        return (MySQLRowMapper<T>) MAPPERS.get(type);
+    }
+
+    // Maps the current row. The returned function remembers the plan of the first result set it sees, so create one per query.
+    public @NotNull ThrowableFunction<ResultSet, T> row() {
+        return new ThrowableFunction<>() {
+            private MethodHandle plan;
+
+            @Override
+            public T apply(ResultSet resultSet) throws Throwable {
+                if (this.plan == null) this.plan = MySQLRowMapper.this.plan(resultSet);
+                return MySQLRowMapper.this.type.cast(this.plan.invokeExact(resultSet));
+            }
+        };
+    }
+
+    public @NotNull ThrowableFunction<ResultSet, List<T>> toList() {
+        return resultSet -> {
+            final MethodHandle plan = this.plan(resultSet);
+            final List<T> rows = new ArrayList<>();
+            while (resultSet.next()) {
+                rows.add(this.type.cast(plan.invokeExact(resultSet)));
+            }
+            MySQLMappedRows.report(rows.size());
+            return rows;
+        };
+    }
+
+    public @NotNull ThrowableFunction<ResultSet, T> first() {
+        return resultSet -> resultSet.next() ? this.type.cast(this.plan(resultSet).invokeExact(resultSet)) : null;
+    }
+
+    private @NotNull MethodHandle plan(@NotNull ResultSet resultSet) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        String[] labels = new String[metaData.getColumnCount()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = normalize(metaData.getColumnLabel(i + 1));
+        }
+        return this.plans.computeIfAbsent(String.join(",", labels), $ -> this.compile(labels));
+    }
+
+    private @NotNull MethodHandle compile(String @NotNull [] labels) {
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = labels.length - 1; i >= 0; i--) {
+            columns.put(labels[i], i + 1);
+        }
+
+        try {
+            MethodHandle mapper = this.type.isRecord() ? this.compileRecord(columns) : this.compileBean(columns);
+            return mapper.asType(MethodType.methodType(Object.class, ResultSet.class));
+        } catch (NoSuchMethodException | IllegalAccessException exception) {
+            throw new IllegalStateException("Failed to compile row mapper for " + this.type.getName(), exception);
+        }
+    }
+
+    private @NotNull MethodHandle compileRecord(@NotNull Map<String, Integer> columns) throws NoSuchMethodException, IllegalAccessException {
+        RecordComponent[] components = this.type.getRecordComponents();
+        Class<?>[] parameterTypes = new Class<?>[components.length];
+        MethodHandle[] getters = new MethodHandle[components.length];
+
+        for (int i = 0; i < components.length; i++) {
+            Property property = this.properties.get(normalize(components[i].getName()));
+            Integer column = columns.get(property.name);
+            if (column == null) {
+                throw new IllegalArgumentException("Result set has no column for record component '" + components[i].getName() + "' of " + this.type.getName());
+            }
+            parameterTypes[i] = property.type;
+            getters[i] = columnGetter(property.type, column);
+        }
+
+        // (T0 .. Tn)T, then every parameter is read from the same ResultSet argument.
+        MethodHandle constructor = this.lookup.findConstructor(this.type, MethodType.methodType(void.class, parameterTypes));
+        MethodHandle filtered = MethodHandles.filterArguments(constructor, 0, getters);
+        return MethodHandles.permuteArguments(filtered, MethodType.methodType(this.type, ResultSet.class), new int[components.length]);
+    }
+
+    private @NotNull MethodHandle compileBean(@NotNull Map<String, Integer> columns) throws NoSuchMethodException, IllegalAccessException {
+        // Start with (T, ResultSet)T returning the bean, and fold every setter in front of it.
+        MethodHandle body = MethodHandles.dropArguments(MethodHandles.identity(this.type), 1, ResultSet.class);
+        for (Map.Entry<String, Integer> column : columns.entrySet()) {
+            Property property = this.properties.get(column.getKey());
+            if (property == null) continue;
+
+            MethodHandle setter = MethodHandles.filterArguments(property.setter, 1, columnGetter(property.type, column.getValue()));
+            body = MethodHandles.foldArguments(body, setter.asType(MethodType.methodType(void.class, this.type, ResultSet.class)));
+        }
+
+        MethodHandle constructor = this.lookup.findConstructor(this.type, MethodType.methodType(void.class));
+        return MethodHandles.foldArguments(body, constructor);
+    }
+
+    private static @NotNull MethodHandle columnGetter(@NotNull Class<?> type, int column) throws NoSuchMethodException, IllegalAccessException {
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        String getter = TYPED_GETTERS.get(type);
+        if (getter != null) {
+            MethodHandle handle = lookup.findVirtual(ResultSet.class, getter, MethodType.methodType(type, int.class));
+            return MethodHandles.insertArguments(handle, 1, column);
+        }
+
+        // Boxed and driver-specific types keep SQL NULL as null.
+        MethodHandle handle = lookup.findVirtual(ResultSet.class, "getObject", MethodType.methodType(Object.class, int.class, Class.class));
+        return MethodHandles.insertArguments(handle, 1, column, type).asType(MethodType.methodType(type, ResultSet.class));
+    }
+
+    private @NotNull Map<String, Property> recordProperties() {
+        Map<String, Property> properties = new HashMap<>();
+        for (RecordComponent component : this.type.getRecordComponents()) {
+            String name = normalize(component.getName());
+            properties.put(name, new Property(name, component.getType(), null));
+        }
+        return properties;
+    }
+
+    private @NotNull Map<String, Property> beanProperties() {
+        Map<String, Property> properties = new HashMap<>();
+        for (Method method : this.type.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 1) continue;
+            if (!method.getName().startsWith("set") || method.getName().length() == 3) continue;
+
+            String name = normalize(method.getName().substring(3));
+            try {
+                properties.put(name, new Property(name, method.getParameterTypes()[0], this.lookup.unreflect(method)));
+            } catch (IllegalAccessException exception) {
+                throw new IllegalArgumentException("Cannot access setter " + method.getName() + " of " + this.type.getName(), exception);
+            }
+        }
+        return properties;
+    }
+
+    private static @NotNull String normalize(@NotNull String name) {
+        return name.replace("_", "").toLowerCase(Locale.ROOT);
+    }
+
+    private static class Property {
+        private final String name;
+        private final Class<?> type;
+        private final MethodHandle setter;
+
+        private Property(@NotNull String name, @NotNull Class<?> type, @Nullable MethodHandle setter) {
+            this.name = name;
+            this.type = type;
+            this.setter = setter;
+        }
+    }
+}
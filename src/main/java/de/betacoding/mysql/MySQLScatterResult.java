@@ -0,0 +1,30 @@
+package de.betacoding.mysql;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Map;
+
+// The merged rows of a query sent to every shard, along with the shards that failed to answer it.
+public class MySQLScatterResult<T> {
+    private final List<T> rows;
+    private final Map<Integer, Throwable> failures;
+
+    MySQLScatterResult(@NotNull List<T> rows, @NotNull Map<Integer, Throwable> failures) {
+        this.rows = rows;
+        this.failures = failures;
+    }
+
+    public @NotNull List<T> getRows() {
+        return this.rows;
+    }
+
+    // Failure causes by shard index. The rows of the other shards are still in the result.
+    public @NotNull Map<Integer, Throwable> getFailures() {
+        return this.failures;
+    }
+
+    public boolean isComplete() {
+        return this.failures.isEmpty();
+    }
+}
@@ -0,0 +1,265 @@
+package de.betacoding.mysql;
+
+import com.google.common.base.Preconditions;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Admission control in front of the execution strategy's threads. Work waits in one bounded lane per priority and at most
+// concurrency tasks run at once. A worker that becomes free takes the next task by smooth weighted round robin over the
+// lanes with work, so lanes share the workers in proportion to their weights and none of them starves.
+public class MySQLScheduler {
+    private final ExecutorService executor;
+    private final int concurrency;
+    private final long maxAdmissionWait;
+    private final Lane[] lanes;
+    private final Executor[] laneExecutors;
+    private final ThreadLocal<Boolean> worker = new ThreadLocal<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition space = this.lock.newCondition();
+
+    private int running;
+    private int waiting;
+    private boolean shutdown;
+
+    protected MySQLScheduler(@NotNull ExecutorService executor, int concurrency, @NotNull MySQLSchedulerSettings settings) {
+        Preconditions.checkArgument(concurrency > 0, "Concurrency must be positive");
+        this.executor = executor;
+        this.concurrency = concurrency;
+        this.maxAdmissionWait = settings.getMaxAdmissionWait().toNanos();
+
+        final MySQLPriority[] priorities = MySQLPriority.values();
+        this.lanes = new Lane[priorities.length];
+        this.laneExecutors = new Executor[priorities.length];
+        for (MySQLPriority priority : priorities) {
+            // Background work leaves one worker free for the other lanes whenever there is more than one.
+            int maxRunning = priority == MySQLPriority.BACKGROUND ? Math.max(1, concurrency - 1) : concurrency;
+            this.lanes[priority.ordinal()] = new Lane(priority, settings.getCapacity(priority), settings.getWeight(priority), maxRunning);
+            this.laneExecutors[priority.ordinal()] = task -> this.execute(priority, task);
+        }
+    }
+
+    public @NotNull Executor lane(@NotNull MySQLPriority priority) {
+        return this.laneExecutors[priority.ordinal()];
+    }
+
+    public void execute(@NotNull MySQLPriority priority, @NotNull Runnable runnable) {
+        this.execute(priority, runnable, true);
+    }
+
+    // Rejects the task right away when its lane is full instead of waiting for room, for callers that must not block.
+    public void tryExecute(@NotNull MySQLPriority priority, @NotNull Runnable runnable) {
+        this.execute(priority, runnable, false);
+    }
+
+    private void execute(@NotNull MySQLPriority priority, @NotNull Runnable runnable, boolean wait) {
+        final Lane lane = this.lanes[priority.ordinal()];
+        final Task task = new Task(lane, runnable, System.nanoTime());
+
+        Task started = null;
+        this.lock.lock();
+        try {
+            this.admit(lane, wait);
+            lane.tasks.addLast(task);
+            if (this.running < this.concurrency) {
+                started = this.next();
+                if (started != null) this.running++;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        if (started != null) this.executor.execute(new Worker(started));
+    }
+
+    // Must be called while holding the lock.
+    private void admit(@NotNull Lane lane, boolean wait) {
+        if (this.shutdown) throw new RejectedExecutionException("Scheduler has been shut down");
+        if (lane.tasks.size() < lane.capacity) return;
+
+        // A worker waiting for room could end up waiting for itself, so it is rejected right away.
+        long remaining = this.maxAdmissionWait;
+        if (wait && remaining > 0 && this.worker.get() == null) {
+            this.waiting++;
+            try {
+                while (lane.tasks.size() >= lane.capacity && remaining > 0 && !this.shutdown) {
+                    remaining = this.space.awaitNanos(remaining);
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            } finally {
+                this.waiting--;
+            }
+            if (this.shutdown) throw new RejectedExecutionException("Scheduler has been shut down");
+            if (lane.tasks.size() < lane.capacity) return;
+        }
+
+        lane.rejected.increment();
+        throw new RejectedExecutionException("Scheduler lane " + lane.priority + " is full with " + lane.capacity + " queued tasks");
+    }
+
+    // Must be called while holding the lock. Picks among the lanes that have work and may start another task.
+    private @Nullable Task next() {
+        Lane best = null;
+        int totalWeight = 0;
+        for (Lane lane : this.lanes) {
+            if (lane.tasks.isEmpty() || lane.running >= lane.maxRunning) continue;
+            lane.current += lane.weight;
+            totalWeight += lane.weight;
+            if (best == null || lane.current > best.current) best = lane;
+        }
+        if (best == null) return null;
+
+        best.current -= totalWeight;
+        best.running++;
+        final Task task = best.tasks.pollFirst();
+        // An idle lane starts over instead of cashing in credit it built up earlier.
+        if (best.tasks.isEmpty()) best.current = 0;
+        if (this.waiting > 0) this.space.signalAll();
+        return task;
+    }
+
+    private @Nullable Task finished(@NotNull Task task) {
+        this.lock.lock();
+        try {
+            task.lane.running--;
+            Task next = this.next();
+            if (next != null) return next;
+
+            this.running--;
+            if (this.shutdown && this.running == 0) this.executor.shutdown();
+            return null;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    // Stops admitting work. Queued tasks still run; the threads are released once the last one finished.
+    public void shutdown() {
+        boolean idle;
+        this.lock.lock();
+        try {
+            if (this.shutdown) return;
+            this.shutdown = true;
+            this.space.signalAll();
+            idle = this.running == 0;
+        } finally {
+            this.lock.unlock();
+        }
+        if (idle) this.executor.shutdown();
+    }
+
+    public int getConcurrency() {
+        return this.concurrency;
+    }
+    public int getRunningTasks() {
+        this.lock.lock();
+        try {
+            return this.running;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+    public int getQueuedTasks(@NotNull MySQLPriority priority) {
+        this.lock.lock();
+        try {
+            return this.lanes[priority.ordinal()].tasks.size();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+    public long getStartedTasks(@NotNull MySQLPriority priority) {
+        return this.lanes[priority.ordinal()].started.sum();
+    }
+    public long getRejectedTasks(@NotNull MySQLPriority priority) {
+        return this.lanes[priority.ordinal()].rejected.sum();
+    }
+    public @NotNull Duration getAverageQueueWait(@NotNull MySQLPriority priority) {
+        final Lane lane = this.lanes[priority.ordinal()];
+        long count = lane.started.sum();
+        return count == 0 ? Duration.ZERO : Duration.ofNanos(lane.waitNanos.sum() / count);
+    }
+    public @NotNull Duration getMaxQueueWait(@NotNull MySQLPriority priority) {
+        return Duration.ofNanos(this.lanes[priority.ordinal()].maxWaitNanos.get());
+    }
+
+    // Keeps taking tasks until none is eligible, so a busy scheduler does not hand every task back to the executor.
+    private class Worker implements Runnable {
+        private Task task;
+
+        private Worker(@NotNull Task task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            MySQLScheduler.this.worker.set(Boolean.TRUE);
+            try {
+                while (this.task != null) {
+                    this.task.lane.recordStart(System.nanoTime() - this.task.enqueued);
+                    try {
+                        this.task.runnable.run();
+                    } catch (Throwable exception) {
+                        Thread thread = Thread.currentThread();
+                        thread.getUncaughtExceptionHandler().uncaughtException(thread, exception);
+                    }
+                    this.task = MySQLScheduler.this.finished(this.task);
+                }
+            } finally {
+                MySQLScheduler.this.worker.remove();
+            }
+        }
+    }
+
+    private static class Task {
+        private final Lane lane;
+        private final Runnable runnable;
+        private final long enqueued;
+
+        private Task(@NotNull Lane lane, @NotNull Runnable runnable, long enqueued) {
+            this.lane = lane;
+            this.runnable = runnable;
+            this.enqueued = enqueued;
+        }
+    }
+
+    private static class Lane {
+        private final MySQLPriority priority;
+        private final int capacity;
+        private final int weight;
+        private final int maxRunning;
+        private final Deque<Task> tasks = new ArrayDeque<>();
+
+        private final LongAdder started = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        // Guarded by the scheduler lock.
+        private int running;
+        private int current;
+
+        private Lane(@NotNull MySQLPriority priority, int capacity, int weight, int maxRunning) {
+            this.priority = priority;
+            this.capacity = capacity;
+            this.weight = weight;
+            this.maxRunning = maxRunning;
+        }
+
+        private void recordStart(long waited) {
+            this.started.increment();
+            this.waitNanos.add(waited);
+            this.maxWaitNanos.accumulateAndGet(waited, Math::max);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package de.betacoding.mysql;
+
+import com.google.common.base.Preconditions;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+
+public class MySQLSchedulerSettings {
+    public static final MySQLSchedulerSettings DEFAULT = new MySQLSchedulerSettings(new int[]{1024, 1024, 256}, new int[]{8, 4, 1}, Duration.ZERO);
+
+    private final int[] capacities;
+    private final int[] weights;
+    private final Duration maxAdmissionWait;
+
+    // Capacities and weights are indexed by MySQLPriority ordinal. A zero admission wait rejects work for a full lane right
+    // away; a positive one makes the submitting thread wait up to that long for room, which pushes back on producers.
+    public MySQLSchedulerSettings(int @NotNull [] capacities, int @NotNull [] weights, @NotNull Duration maxAdmissionWait) {
+        final int lanes = MySQLPriority.values().length;
+        Preconditions.checkArgument(capacities.length == lanes && weights.length == lanes, "Expected a capacity and weight for each of the " + lanes + " priorities");
+        for (int i = 0; i < lanes; i++) {
+            Preconditions.checkArgument(capacities[i] > 0, "Lane capacity must be positive");
+            Preconditions.checkArgument(weights[i] > 0, "Lane weight must be positive");
+        }
+        Preconditions.checkArgument(!maxAdmissionWait.isNegative(), "Max admission wait cannot be negative");
+
+        this.capacities = capacities.clone();
+        this.weights = weights.clone();
+        this.maxAdmissionWait = maxAdmissionWait;
+    }
+
+    public @NotNull MySQLSchedulerSettings withLane(@NotNull MySQLPriority priority, int capacity, int weight) {
+        int[] capacities = this.capacities.clone();
+        int[] weights = this.weights.clone();
+        capacities[priority.ordinal()] = capacity;
+        weights[priority.ordinal()] = weight;
+        return new MySQLSchedulerSettings(capacities, weights, this.maxAdmissionWait);
+    }
+
+    public @NotNull MySQLSchedulerSettings withMaxAdmissionWait(@NotNull Duration maxAdmissionWait) {
+        return new MySQLSchedulerSettings(this.capacities, this.weights, maxAdmissionWait);
+    }
+
+    public int getCapacity(@NotNull MySQLPriority priority) {
+        return this.capacities[priority.ordinal()];
+    }
+    public int getWeight(@NotNull MySQLPriority priority) {
+        return this.weights[priority.ordinal()];
+    }
+    public @NotNull Duration getMaxAdmissionWait() {
+        return this.maxAdmissionWait;
+    }
+}
@@ -1,6 +1,8 @@
 package de.betacoding.mysql;
 
 public class MySQLServiceException extends Exception {
+    private static final long serialVersionUID = 1L;
+
     public MySQLServiceException() {
     }
     public MySQLServiceException(String message) {
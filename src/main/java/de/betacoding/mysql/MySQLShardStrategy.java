@@ -0,0 +1,65 @@
+package de.betacoding.mysql;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+// Decides which shard owns a shard key. The result must be stable: the same key has to map to the same shard every time.
+@FunctionalInterface
+public interface MySQLShardStrategy {
+    // Returns the index of the owning shard, between 0 and shardCount - 1.
+    int shardFor(@NotNull Object shardKey, int shardCount);
+
+    // Jump consistent hash over a murmur3 hash of the key, so adding a shard moves only about 1/n of the keys. Integral
+    // numbers hash by value whatever their boxed type, so 42 and 42L land on the same shard.
+    static @NotNull MySQLShardStrategy hash() {
+        final HashFunction function = Hashing.murmur3_128();
+        return (shardKey, shardCount) -> {
+            final long hash;
+            if (shardKey instanceof Long || shardKey instanceof Integer || shardKey instanceof Short || shardKey instanceof Byte) {
+                hash = function.hashLong(((Number) shardKey).longValue()).asLong();
+            } else if (shardKey instanceof byte[] bytes) {
+                hash = function.hashBytes(bytes).asLong();
+            } else if (shardKey instanceof UUID uuid) {
+                hash = function.newHasher().putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).hash().asLong();
+            } else {
+                hash = function.hashString(shardKey.toString(), StandardCharsets.UTF_8).asLong();
+            }
+            return Hashing.consistentHash(hash, shardCount);
+        };
+    }
+
+    // Shard i holds the keys below upperBounds[i] and the last shard everything from the last bound on, so n shards take
+    // n - 1 ascending bounds. Keys must be of the bounds' type.
+    static <K extends Comparable<? super K>> @NotNull MySQLShardStrategy range(@NotNull List<K> upperBounds) {
+        final List<K> bounds = new ArrayList<>(upperBounds);
+        for (int i = 1; i < bounds.size(); i++) {
+            Preconditions.checkArgument(bounds.get(i - 1).compareTo(bounds.get(i)) < 0, "Upper bounds must be strictly ascending");
+        }
+
+        return (shardKey, shardCount) -> {
+            Preconditions.checkState(bounds.size() + 1 == shardCount, "Range strategy has %s bounds for %s shards", bounds.size(), shardCount);
+            @SuppressWarnings("unchecked")
+            final int index = Collections.binarySearch(bounds, (K) shardKey);
+            // A key equal to a bound belongs to the next shard.
+            return index >= 0 ? index + 1 : -index - 1;
+        };
+    }
+
+    // Asks a directory, typically a cached mapping table, for the owning shard.
+    static @NotNull MySQLShardStrategy lookup(@NotNull Function<Object, Integer> directory) {
+        return (shardKey, shardCount) -> {
+            final Integer shard = directory.apply(shardKey);
+            if (shard == null) throw new IllegalArgumentException("No shard is assigned to key " + shardKey);
+            return shard;
+        };
+    }
+}
@@ -0,0 +1,250 @@
+package de.betacoding.mysql;
+
+import com.google.common.base.Preconditions;
+import de.betacoding.util.ThrowableFunction;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Spreads the data over several databases. Statements with a shard key go to the shard the strategy picks for it; queries
+// without one are sent to every shard in parallel and their rows merged.
+public class MySQLShardedRepository {
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^'\\\\]|\\\\.|'')*'|\"(?:[^\"\\\\]|\\\\.|\"\")*\"");
+    private static final Pattern LIMIT_OR_LOCK = Pattern.compile(
+            "\\b(?:LIMIT|OFFSET|FOR\\s+UPDATE|FOR\\s+SHARE|LOCK\\s+IN\\s+SHARE\\s+MODE)\\b", Pattern.CASE_INSENSITIVE);
+
+    private final List<MySQLRepository> shards;
+    private final MySQLShardStrategy strategy;
+
+    public MySQLShardedRepository(@NotNull List<MySQLRepository> shards, @NotNull MySQLShardStrategy strategy) {
+        Preconditions.checkArgument(!shards.isEmpty(), "At least one shard is required");
+        this.shards = List.copyOf(shards);
+        this.strategy = strategy;
+    }
+
+    public @NotNull List<MySQLRepository> getShards() {
+        return this.shards;
+    }
+    public int getShardCount() {
+        return this.shards.size();
+    }
+
+    public @NotNull MySQLRepository getShard(@NotNull Object shardKey) {
+        final int index = this.strategy.shardFor(shardKey, this.shards.size());
+        if (index < 0 || index >= this.shards.size()) {
+            throw new IllegalStateException("Shard strategy picked shard " + index + " of " + this.shards.size() + " for key " + shardKey);
+        }
+        return this.shards.get(index);
+    }
+
+    public @NotNull CompletableFuture<Void> establish(final @NotNull String password) {
+        return CompletableFuture.allOf(this.shards.stream().map(shard -> shard.establish(password)).toArray(CompletableFuture<?>[]::new));
+    }
+
+    public @NotNull CompletableFuture<Void> close() {
+        return CompletableFuture.allOf(this.shards.stream().map(MySQLRepository::close).toArray(CompletableFuture<?>[]::new));
+    }
+
+    public <T> @NotNull CompletableFuture<Optional<T>> executeQueryAsync(final @NotNull Object shardKey,
+                                                                         final boolean retry,
+                                                                         final @NotNull String sqlString,
+                                                                         final @NotNull ThrowableFunction<ResultSet, T> mapper,
+                                                                         final Object... values) {
+        return this.getShard(shardKey).getService().executeQueryAsync(retry, sqlString, mapper, values);
+    }
+    public <T> @NotNull CompletableFuture<Optional<T>> executeQueryAsync(final @NotNull Object shardKey,
+                                                                         final @NotNull String sqlString,
+                                                                         final @NotNull ThrowableFunction<ResultSet, T> mapper,
+                                                                         final Object... values) {
+        return this.executeQueryAsync(shardKey, true, sqlString, mapper, values);
+    }
+
+    public <T> @NotNull Optional<T> executeQuery(final @NotNull Object shardKey,
+                                                 final boolean retry,
+                                                 final @NotNull String sqlString,
+                                                 final @NotNull ThrowableFunction<ResultSet, T> mapper,
+                                                 final Object... values) throws MySQLServiceException {
+        return this.getShard(shardKey).getService().executeQuery(retry, sqlString, mapper, values);
+    }
+    public <T> @NotNull Optional<T> executeQuery(final @NotNull Object shardKey,
+                                                 final @NotNull String sqlString,
+                                                 final @NotNull ThrowableFunction<ResultSet, T> mapper,
+                                                 final Object... values) throws MySQLServiceException {
+        return this.executeQuery(shardKey, true, sqlString, mapper, values);
+    }
+
+    public @NotNull CompletableFuture<Integer> executeUpdateAsync(final @NotNull Object shardKey,
+                                                                  final boolean retry,
+                                                                  final @NotNull String sqlString,
+                                                                  final Object... values) {
+        return this.getShard(shardKey).getService().executeUpdateAsync(retry, sqlString, values);
+    }
+    public @NotNull CompletableFuture<Integer> executeUpdateAsync(final @NotNull Object shardKey,
+                                                                  final @NotNull String sqlString,
+                                                                  final Object... values) {
+        return this.executeUpdateAsync(shardKey, true, sqlString, values);
+    }
+
+    public @NotNull Integer executeUpdate(final @NotNull Object shardKey,
+                                          final boolean retry,
+                                          final @NotNull String sqlString,
+                                          final Object... values) throws MySQLServiceException {
+        return this.getShard(shardKey).getService().executeUpdate(retry, sqlString, values);
+    }
+    public @NotNull Integer executeUpdate(final @NotNull Object shardKey,
+                                          final @NotNull String sqlString,
+                                          final Object... values) throws MySQLServiceException {
+        return this.executeUpdate(shardKey, true, sqlString, values);
+    }
+
+    // Runs the query on every shard and merges the rows. With an order each shard's rows are merged in that order, which
+    // should match the query's ORDER BY. A positive limit is appended to the query as LIMIT, so every shard returns at
+    // most that many rows, and the merged rows are cut to it. The query must then have neither a LIMIT or OFFSET of its
+    // own nor a locking clause, and for a top-N it needs an ORDER BY matching the order, or each shard returns arbitrary
+    // rows. A shard that fails or does not answer within the timeout is reported in the result and does not hold up the
+    // others.
+    public <T> @NotNull CompletableFuture<MySQLScatterResult<T>> scatterAsync(final @Nullable Duration timeout,
+                                                                              final @Nullable Comparator<? super T> order,
+                                                                              final int limit,
+                                                                              final @NotNull String sqlString,
+                                                                              final @NotNull ThrowableFunction<ResultSet, T> rowMapper,
+                                                                              final Object... values) {
+        Preconditions.checkArgument(limit >= 0, "Limit cannot be negative");
+        final String shardSql = limit > 0 ? withLimit(sqlString, limit) : sqlString;
+        final int maxRows = limit > 0 ? limit : Integer.MAX_VALUE;
+        final ThrowableFunction<ResultSet, List<T>> mapper = resultSet -> {
+            final List<T> rows = new ArrayList<>();
+            while (rows.size() < maxRows && resultSet.next()) {
+                rows.add(rowMapper.apply(resultSet));
+            }
+            MySQLMappedRows.report(rows.size());
+            return rows;
+        };
+
+        final int shardCount = this.shards.size();
+        // Each shard writes only its own slot, and allOf orders those writes before the merge reads them.
+        final AtomicReferenceArray<List<T>> shardRows = new AtomicReferenceArray<>(shardCount);
+        final Map<Integer, Throwable> failures = new ConcurrentSkipListMap<>();
+        final CompletableFuture<?>[] futures = new CompletableFuture<?>[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            final int shard = i;
+            CompletableFuture<Optional<List<T>>> future;
+            try {
+                future = this.shards.get(shard).getService().executeQueryAsync(timeout, true, shardSql, mapper, values);
+            } catch (RuntimeException exception) {
+                // The shard's connection is not established.
+                future = CompletableFuture.failedFuture(exception);
+            }
+            futures[shard] = future.handle((rows, exception) -> {
+                if (exception != null) {
+                    failures.put(shard, exception instanceof CompletionException && exception.getCause() != null ? exception.getCause() : exception);
+                } else {
+                    shardRows.set(shard, rows.orElse(List.of()));
+                }
+                return null;
+            });
+        }
+
+        return CompletableFuture.allOf(futures).thenApply($ -> {
+            final List<List<T>> collected = new ArrayList<>(shardCount);
+            for (int shard = 0; shard < shardCount; shard++) {
+                final List<T> rows = shardRows.get(shard);
+                collected.add(rows == null ? List.of() : rows);
+            }
+            final List<T> rows = order == null ? concat(collected, maxRows) : merge(collected, order, maxRows);
+            return new MySQLScatterResult<>(rows, Collections.unmodifiableMap(failures));
+        });
+    }
+    public <T> @NotNull CompletableFuture<MySQLScatterResult<T>> scatterAsync(final @NotNull String sqlString,
+                                                                              final @NotNull ThrowableFunction<ResultSet, T> rowMapper,
+                                                                              final Object... values) {
+        return this.scatterAsync(null, null, 0, sqlString, rowMapper, values);
+    }
+
+    public <T> @NotNull MySQLScatterResult<T> scatter(final @Nullable Duration timeout,
+                                                      final @Nullable Comparator<? super T> order,
+                                                      final int limit,
+                                                      final @NotNull String sqlString,
+                                                      final @NotNull ThrowableFunction<ResultSet, T> rowMapper,
+                                                      final Object... values) {
+        return this.scatterAsync(timeout, order, limit, sqlString, rowMapper, values).join();
+    }
+    public <T> @NotNull MySQLScatterResult<T> scatter(final @NotNull String sqlString,
+                                                      final @NotNull ThrowableFunction<ResultSet, T> rowMapper,
+                                                      final Object... values) {
+        return this.scatter(null, null, 0, sqlString, rowMapper, values);
+    }
+
+    private static @NotNull String withLimit(@NotNull String sqlString, int limit) {
+        String trimmed = sqlString.strip();
+        if (trimmed.endsWith(";")) trimmed = trimmed.substring(0, trimmed.length() - 1);
+
+        // Only the outermost query counts, so subqueries and string literals are left out of the check.
+        final String outer = STRING_LITERAL.matcher(trimmed).replaceAll("''");
+        final Matcher clause = LIMIT_OR_LOCK.matcher(outer);
+        if (clause.find(outer.lastIndexOf(')') + 1)) {
+            throw new IllegalArgumentException("Cannot append a LIMIT to a query that already has " + clause.group().toUpperCase(Locale.ROOT) + ": " + sqlString);
+        }
+        return trimmed + " LIMIT " + limit;
+    }
+
+    private static <T> @NotNull List<T> concat(@NotNull List<List<T>> shardRows, int maxRows) {
+        final List<T> rows = new ArrayList<>();
+        for (List<T> shard : shardRows) {
+            for (T row : shard) {
+                if (rows.size() >= maxRows) return rows;
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    // K-way merge that stops after maxRows, so only the rows that make it into the result are compared.
+    private static <T> @NotNull List<T> merge(@NotNull List<List<T>> shardRows, @NotNull Comparator<? super T> order, int maxRows) {
+        final PriorityQueue<Cursor<T>> heads = new PriorityQueue<>((left, right) -> order.compare(left.head(), right.head()));
+        for (List<T> shard : shardRows) {
+            if (shard.isEmpty()) continue;
+            // Usually sorted by the query already, in which case this is a single linear pass.
+            final List<T> sorted = new ArrayList<>(shard);
+            sorted.sort(order);
+            heads.add(new Cursor<>(sorted));
+        }
+
+        final List<T> rows = new ArrayList<>();
+        while (!heads.isEmpty() && rows.size() < maxRows) {
+            final Cursor<T> cursor = heads.poll();
+            rows.add(cursor.head());
+            if (++cursor.position < cursor.rows.size()) heads.add(cursor);
+        }
+        return rows;
+    }
+
+    private static class Cursor<T> {
+        private final List<T> rows;
+        private int position;
+
+        private Cursor(@NotNull List<T> rows) {
+            this.rows = rows;
+        }
+
+        private T head() {
+            return this.rows.get(this.position);
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package de.betacoding.mysql;
+
+import com.google.common.base.Preconditions;
+import de.betacoding.util.DebugLogger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+// Aggregates statements by fingerprint, i.e. their SQL with the literals replaced, so the expensive ones show up without
+// turning on the server's slow log. Statements slower than the threshold get their EXPLAIN plan written to the logger.
+public class MySQLSlowQueryLog {
+    public static final Duration DEFAULT_EXPLAIN_INTERVAL = Duration.ofMinutes(1);
+    public static final int DEFAULT_MAX_FINGERPRINTS = 1000;
+
+    private static final String OTHER = "(other)";
+    private static final int MAX_CACHED_SQL = 10_000;
+    private static final Pattern IN_LIST = Pattern.compile("\\bin ?\\( ?\\?(?: ?, ?\\?)* ?\\)");
+    private static final Pattern VALUES_LIST = Pattern.compile("\\b(values|value) ?\\( ?\\?(?: ?, ?\\?)* ?\\)(?: ?, ?\\( ?\\?(?: ?, ?\\?)* ?\\))*");
+    private static final Pattern EXPLAINABLE = Pattern.compile("^\\(?(select|insert|update|delete|replace|with)\\b");
+    // A plan that takes longer than this is given up on, so a lost EXPLAIN task cannot turn off plan capture for good.
+    private static final long EXPLAIN_LEASE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Duration threshold;
+    private final Duration explainInterval;
+    private final int maxFingerprints;
+    private final DebugLogger logger;
+
+    private final Map<String, String> fingerprints = new ConcurrentHashMap<>();
+    private final Map<String, Aggregate> aggregates = new ConcurrentHashMap<>();
+    private final LongAdder slowStatements = new LongAdder();
+    // One plan at a time, so a burst of slow statements does not pile EXPLAINs onto an already struggling server. Holds
+    // the time the running EXPLAIN started, or zero.
+    private final AtomicLong explaining = new AtomicLong();
+
+    public MySQLSlowQueryLog(@NotNull Duration threshold, @NotNull Duration explainInterval, int maxFingerprints, @NotNull DebugLogger logger) {
+        Preconditions.checkArgument(!threshold.isNegative(), "Threshold cannot be negative");
+        Preconditions.checkArgument(!explainInterval.isNegative(), "Explain interval cannot be negative");
+        Preconditions.checkArgument(maxFingerprints > 0, "Max fingerprints must be positive");
+        this.threshold = threshold;
+        this.explainInterval = explainInterval;
+        this.maxFingerprints = maxFingerprints;
+        this.logger = logger;
+    }
+    public MySQLSlowQueryLog(@NotNull Duration threshold, @NotNull DebugLogger logger) {
+        this(threshold, DEFAULT_EXPLAIN_INTERVAL, DEFAULT_MAX_FINGERPRINTS, logger);
+    }
+
+    public @NotNull Duration getThreshold() {
+        return this.threshold;
+    }
+    public @NotNull Duration getExplainInterval() {
+        return this.explainInterval;
+    }
+    public long getSlowStatements() {
+        return this.slowStatements.sum();
+    }
+
+    // Returns true if the caller should fetch the statement's plan through explain, which it must then call.
+    boolean record(@NotNull MySQLStatementType type, @NotNull String sqlString, long executionNanos, long rows, @Nullable Throwable error) {
+        final String fingerprint = this.fingerprintOf(sqlString);
+        final Aggregate aggregate = this.aggregateOf(fingerprint, sqlString);
+        aggregate.count.increment();
+        aggregate.totalNanos.add(executionNanos);
+        aggregate.maxNanos.accumulate(executionNanos);
+        aggregate.rows.add(Math.max(0, rows));
+        if (error != null) aggregate.errors.increment();
+
+        if (executionNanos < this.threshold.toNanos()) return false;
+        this.slowStatements.increment();
+
+        final long now = System.nanoTime();
+        // Batches and transaction commits have nothing to explain, and neither do failed statements. They are logged
+        // without a plan, on an interval of their own so they do not hold back the plan of the next slow run.
+        if (type != MySQLStatementType.QUERY && type != MySQLStatementType.UPDATE || error != null || !EXPLAINABLE.matcher(fingerprint).find()) {
+            if (claim(aggregate.lastLogged, now, this.explainInterval.toNanos())) this.logSlowStatement(type, sqlString, executionNanos, rows, null);
+            return false;
+        }
+
+        // At most one plan per fingerprint and interval.
+        final long last = aggregate.lastExplained.get();
+        if (last != 0 && now - last < this.explainInterval.toNanos()) return false;
+        final long since = this.explaining.get();
+        if (since != 0 && now - since < EXPLAIN_LEASE_NANOS) return false;
+        if (!this.explaining.compareAndSet(since, now == 0 ? 1 : now)) return false;
+        if (!aggregate.lastExplained.compareAndSet(last, now == 0 ? 1 : now)) {
+            this.explaining.set(0);
+            return false;
+        }
+        return true;
+    }
+
+    // Fetches the plan on the executor and logs it with the statement. Whatever happens to the task, the next plan is not
+    // held up by it: failures are logged in place of the plan, and a task that never runs loses its claim after a while.
+    void explain(@NotNull MySQLStatementType type,
+                 @NotNull String sqlString,
+                 long executionNanos,
+                 long rows,
+                 @NotNull Executor executor,
+                 @Nullable Callable<String> planner) {
+        if (planner == null) {
+            this.logPlan(type, sqlString, executionNanos, rows, null);
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                String plan = null;
+                try {
+                    plan = planner.call();
+                } catch (Exception exception) {
+                    plan = "EXPLAIN failed: " + exception.getMessage();
+                } finally {
+                    this.logPlan(type, sqlString, executionNanos, rows, plan);
+                }
+            });
+        } catch (RejectedExecutionException exception) {
+            this.logPlan(type, sqlString, executionNanos, rows, null);
+        }
+    }
+
+    private void logPlan(@NotNull MySQLStatementType type, @NotNull String sqlString, long executionNanos, long rows, @Nullable String plan) {
+        try {
+            this.logSlowStatement(type, sqlString, executionNanos, rows, plan);
+        } finally {
+            this.explaining.set(0);
+        }
+    }
+
+    private void logSlowStatement(@NotNull MySQLStatementType type, @NotNull String sqlString, long executionNanos, long rows, @Nullable String plan) {
+        StringBuilder message = new StringBuilder("Slow ").append(type.name().toLowerCase(Locale.ROOT))
+                .append(" (").append(TimeUnit.NANOSECONDS.toMillis(executionNanos)).append(" ms, ")
+                .append(rows).append(" rows): ").append(sqlString);
+        if (plan != null) message.append(System.lineSeparator()).append(plan);
+        this.logger.warning(message.toString());
+    }
+
+    private static boolean claim(@NotNull AtomicLong last, long now, long intervalNanos) {
+        final long previous = last.get();
+        if (previous != 0 && now - previous < intervalNanos) return false;
+        return last.compareAndSet(previous, now == 0 ? 1 : now);
+    }
+
+    private @NotNull String fingerprintOf(@NotNull String sqlString) {
+        String fingerprint = this.fingerprints.get(sqlString);
+        if (fingerprint != null) return fingerprint;
+
+        fingerprint = fingerprint(sqlString);
+        // Statements with inlined literals would grow the cache without bound.
+        if (this.fingerprints.size() < MAX_CACHED_SQL) this.fingerprints.put(sqlString, fingerprint);
+        return fingerprint;
+    }
+
+    private @NotNull Aggregate aggregateOf(@NotNull String fingerprint, @NotNull String sqlString) {
+        Aggregate aggregate = this.aggregates.get(fingerprint);
+        if (aggregate != null) return aggregate;
+
+        if (this.aggregates.size() >= this.maxFingerprints) {
+            return this.aggregates.computeIfAbsent(OTHER, key -> new Aggregate(OTHER, sqlString));
+        }
+        return this.aggregates.computeIfAbsent(fingerprint, key -> new Aggregate(fingerprint, sqlString));
+    }
+
+    // The fingerprints with the highest total execution time first.
+    public @NotNull List<Entry> getTopQueries(int limit) {
+        return this.getTopQueries(limit, Comparator.comparingLong(Entry::getTotalNanos));
+    }
+
+    public @NotNull List<Entry> getTopQueries(int limit, @NotNull Comparator<Entry> order) {
+        Preconditions.checkArgument(limit > 0, "Limit must be positive");
+
+        // Counters keep moving while we sort, so rank snapshots rather than the live aggregates.
+        final PriorityQueue<Entry> top = new PriorityQueue<>(limit + 1, order);
+        for (Aggregate aggregate : this.aggregates.values()) {
+            top.add(aggregate.snapshot());
+            if (top.size() > limit) top.poll();
+        }
+
+        final List<Entry> entries = new ArrayList<>(top);
+        entries.sort(order.reversed());
+        return entries;
+    }
+
+    public void logReport(int limit) {
+        final List<Entry> entries = this.getTopQueries(limit);
+        final StringBuilder report = new StringBuilder("Top ").append(entries.size()).append(" statements by total execution time:");
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            report.append(System.lineSeparator())
+                    .append(String.format(Locale.ROOT, "%3d. %d ms total, %d calls, %d ms mean, %d ms max, %d rows, %d errors: %s",
+                            i + 1,
+                            entry.getTotalTime().toMillis(),
+                            entry.getCount(),
+                            entry.getMeanTime().toMillis(),
+                            entry.getMaxTime().toMillis(),
+                            entry.getRows(),
+                            entry.getErrors(),
+                            entry.getFingerprint()));
+        }
+        this.logger.info(report.toString());
+    }
+
+    public void reset() {
+        this.aggregates.clear();
+    }
+
+    // Lower-cases the statement, drops comments, replaces string, numeric, hex and bit literals with ? and collapses
+    // IN lists and multi-row VALUES lists to a single (?+), so statements differing only in their arguments match.
+    public static @NotNull String fingerprint(@NotNull String sqlString) {
+        final int length = sqlString.length();
+        final StringBuilder builder = new StringBuilder(length);
+        boolean space = false;
+
+        int i = 0;
+        while (i < length) {
+            char c = sqlString.charAt(i);
+            char next = i + 1 < length ? sqlString.charAt(i + 1) : 0;
+
+            if (Character.isWhitespace(c)) {
+                space = true;
+                i++;
+                continue;
+            }
+            if (c == '#' || (c == '-' && next == '-' && (i + 2 >= length || Character.isWhitespace(sqlString.charAt(i + 2))))) {
+                while (i < length && sqlString.charAt(i) != '\n') i++;
+                space = true;
+                continue;
+            }
+            if (c == '/' && next == '*') {
+                int end = sqlString.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+                space = true;
+                continue;
+            }
+
+            if (space && builder.length() > 0) builder.append(' ');
+            space = false;
+
+            if (c == '\'' || c == '"') {
+                i = skipQuoted(sqlString, i, c);
+                builder.append('?');
+            } else if (c == '`') {
+                int end = sqlString.indexOf('`', i + 1);
+                end = end < 0 ? length : end + 1;
+                builder.append(sqlString, i, end);
+                i = end;
+            } else if ((c == 'x' || c == 'X' || c == 'b' || c == 'B') && next == '\'' && !isWordPart(builder)) {
+                i = skipQuoted(sqlString, i + 1, '\'');
+                builder.append('?');
+            } else if ((Character.isDigit(c) || (c == '.' && Character.isDigit(next))) && !isWordPart(builder)) {
+                i = skipNumber(sqlString, i);
+                builder.append('?');
+            } else if (Character.isLetter(c) || c == '_' || c == '$' || c == '@') {
+                int start = i;
+                while (i < length && isIdentifierChar(sqlString.charAt(i))) i++;
+                builder.append(sqlString.substring(start, i).toLowerCase(Locale.ROOT));
+            } else {
+                builder.append(c);
+                i++;
+            }
+        }
+
+        int end = builder.length();
+        while (end > 0 && (builder.charAt(end - 1) == ';' || builder.charAt(end - 1) == ' ')) end--;
+        builder.setLength(end);
+
+        String fingerprint = builder.toString();
+        fingerprint = IN_LIST.matcher(fingerprint).replaceAll("in (?+)");
+        fingerprint = VALUES_LIST.matcher(fingerprint).replaceAll("$1 (?+)");
+        return fingerprint;
+    }
+
+    private static int skipQuoted(@NotNull String sqlString, int start, char quote) {
+        int i = start + 1;
+        while (i < sqlString.length()) {
+            char c = sqlString.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == quote) {
+                // A doubled quote is an escaped quote inside the literal.
+                if (i + 1 < sqlString.length() && sqlString.charAt(i + 1) == quote) {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return sqlString.length();
+    }
+
+    private static int skipNumber(@NotNull String sqlString, int start) {
+        int i = start;
+        if (sqlString.startsWith("0x", i) || sqlString.startsWith("0X", i) || sqlString.startsWith("0b", i) || sqlString.startsWith("0B", i)) {
+            i += 2;
+            while (i < sqlString.length() && Character.isLetterOrDigit(sqlString.charAt(i))) i++;
+            return i;
+        }
+        while (i < sqlString.length()) {
+            char c = sqlString.charAt(i);
+            if (Character.isDigit(c) || c == '.') {
+                i++;
+            } else if ((c == 'e' || c == 'E') && i + 1 < sqlString.length()) {
+                char next = sqlString.charAt(i + 1);
+                if (Character.isDigit(next)) {
+                    i += 1;
+                } else if ((next == '+' || next == '-') && i + 2 < sqlString.length() && Character.isDigit(sqlString.charAt(i + 2))) {
+                    i += 2;
+                } else {
+                    return i;
+                }
+            } else {
+                return i;
+            }
+        }
+        return i;
+    }
+
+    // Digits right after a name belong to it, as in table1.
+    private static boolean isWordPart(@NotNull StringBuilder builder) {
+        return builder.length() > 0 && isIdentifierChar(builder.charAt(builder.length() - 1));
+    }
+
+    private static boolean isIdentifierChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '@';
+    }
+
+    private static class Aggregate {
+        private final String fingerprint;
+        private final String sample;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final AtomicLong lastExplained = new AtomicLong();
+        private final AtomicLong lastLogged = new AtomicLong();
+
+        private Aggregate(@NotNull String fingerprint, @NotNull String sample) {
+            this.fingerprint = fingerprint;
+            this.sample = sample;
+        }
+
+        private @NotNull Entry snapshot() {
+            return new Entry(this.fingerprint, this.sample, this.count.sum(), this.totalNanos.sum(), this.maxNanos.get(), this.rows.sum(), this.errors.sum());
+        }
+    }
+
+    public static class Entry {
+        private final String fingerprint;
+        private final String sample;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long rows;
+        private final long errors;
+
+        private Entry(@NotNull String fingerprint, @NotNull String sample, long count, long totalNanos, long maxNanos, long rows, long errors) {
+            this.fingerprint = fingerprint;
+            this.sample = sample;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.rows = rows;
+            this.errors = errors;
+        }
+
+        public @NotNull String getFingerprint() {
+            return this.fingerprint;
+        }
+        // The first statement seen with this fingerprint.
+        public @NotNull String getSample() {
+            return this.sample;
+        }
+        public long getCount() {
+            return this.count;
+        }
+        public long getTotalNanos() {
+            return this.totalNanos;
+        }
+        public @NotNull Duration getTotalTime() {
+            return Duration.ofNanos(this.totalNanos);
+        }
+        public @NotNull Duration getMeanTime() {
+            return this.count == 0 ? Duration.ZERO : Duration.ofNanos(this.totalNanos / this.count);
+        }
+        public @NotNull Duration getMaxTime() {
+            return Duration.ofNanos(this.maxNanos);
+        }
+        public long getRows() {
+            return this.rows;
+        }
+        public long getErrors() {
+            return this.errors;
+        }
+    }
+}
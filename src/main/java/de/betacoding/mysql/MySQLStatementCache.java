@@ -0,0 +1,124 @@
+package de.betacoding.mysql;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Cached statements are marked in use while checked out, so nested statements with the same SQL on one connection get their own instance.
+public class MySQLStatementCache {
+    private final Connection connection;
+    private final int capacity;
+    private final Stats stats;
+    private final LinkedHashMap<String, CachedStatement> statements;
+
+    protected MySQLStatementCache(@NotNull Connection connection, int capacity, @NotNull Stats stats) {
+        this.connection = connection;
+        this.capacity = capacity;
+        this.stats = stats;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                // An in-use statement is never the least recently used one in practice; if it is, let the cache overshoot.
+                if (this.size() <= MySQLStatementCache.this.capacity || eldest.getValue().inUse) return false;
+                MySQLStatementCache.this.stats.evictions.increment();
+                MySQLStatementCache.closeQuietly(eldest.getValue().statement);
+                return true;
+            }
+        };
+    }
+
+    public @NotNull PreparedStatement acquire(@NotNull String sqlString) throws SQLException {
+        if (this.capacity > 0) {
+            CachedStatement cached = this.statements.get(sqlString);
+            if (cached != null && !cached.inUse) {
+                if (!cached.statement.isClosed()) {
+                    this.stats.hits.increment();
+                    cached.inUse = true;
+                    return cached.statement;
+                }
+                this.statements.remove(sqlString);
+            }
+            this.stats.misses.increment();
+        }
+        return this.connection.prepareStatement(sqlString);
+    }
+
+    public void release(@NotNull String sqlString, @NotNull PreparedStatement statement) {
+        if (this.capacity <= 0) {
+            closeQuietly(statement);
+            return;
+        }
+
+        CachedStatement cached = this.statements.get(sqlString);
+        if (cached != null && cached.statement != statement) {
+            closeQuietly(statement);
+            return;
+        }
+        // Bound values, such as the streams of a MySQLLob, would otherwise stay reachable until the statement's next use.
+        try {
+            if (statement.isClosed()) {
+                if (cached != null) this.statements.remove(sqlString);
+                return;
+            }
+            statement.clearParameters();
+        } catch (SQLException exception) {
+            closeQuietly(statement);
+            if (cached != null) this.statements.remove(sqlString);
+            return;
+        }
+        if (cached != null) {
+            cached.inUse = false;
+        } else {
+            this.statements.put(sqlString, new CachedStatement(statement));
+        }
+    }
+
+    public int size() {
+        return this.statements.size();
+    }
+
+    protected void close() {
+        List<CachedStatement> statements = new ArrayList<>(this.statements.values());
+        this.statements.clear();
+        statements.forEach(cached -> closeQuietly(cached.statement));
+    }
+
+    private static void closeQuietly(@NotNull PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private static class CachedStatement {
+        private final PreparedStatement statement;
+        private boolean inUse;
+
+        private CachedStatement(@NotNull PreparedStatement statement) {
+            this.statement = statement;
+        }
+    }
+
+    public static class Stats {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+
+        public long getHits() {
+            return this.hits.sum();
+        }
+        public long getMisses() {
+            return this.misses.sum();
+        }
+        public long getEvictions() {
+            return this.evictions.sum();
+        }
+    }
+}
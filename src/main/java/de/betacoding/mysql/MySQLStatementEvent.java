@@ -0,0 +1,43 @@
+package de.betacoding.mysql;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("de.betacoding.mysql.Statement")
+@Label("MySQL Statement")
+@Category({"MySQLLib"})
+@Description("A statement executed by MySQLQueryService")
+@StackTrace(false)
+class MySQLStatementEvent extends Event {
+    @Label("Type")
+    String type;
+
+    @Label("SQL")
+    String sql;
+
+    @Label("Queue Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long queueTime;
+
+    @Label("Execution Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long executionTime;
+
+    @Label("Mapper Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long mapperTime;
+
+    @Label("Rows")
+    long rows;
+
+    @Label("Retries")
+    int retries;
+
+    @Label("Failed")
+    boolean failed;
+}
@@ -0,0 +1,74 @@
+package de.betacoding.mysql;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Default metrics sink: per statement type counters and latency histograms.
+public class MySQLStatementMetrics implements MySQLMetricsListener {
+    private final Map<MySQLStatementType, Stats> stats = new EnumMap<>(MySQLStatementType.class);
+
+    public MySQLStatementMetrics() {
+        for (MySQLStatementType type : MySQLStatementType.values()) {
+            this.stats.put(type, new Stats());
+        }
+    }
+
+    @Override
+    public void onStatement(@NotNull MySQLStatementType type,
+                            @NotNull String sqlString,
+                            long queueNanos,
+                            long executionNanos,
+                            long mapperNanos,
+                            long rows,
+                            int retries,
+                            @Nullable Throwable error) {
+        Stats stats = this.stats.get(type);
+        stats.statements.increment();
+        stats.rows.add(Math.max(0, rows));
+        stats.retries.add(retries);
+        if (error != null) stats.errors.increment();
+        stats.queueTime.record(queueNanos);
+        stats.executionTime.record(executionNanos);
+        stats.mapperTime.record(mapperNanos);
+    }
+
+    public @NotNull Stats getStats(@NotNull MySQLStatementType type) {
+        return this.stats.get(type);
+    }
+
+    public static class Stats {
+        private final LongAdder statements = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final MySQLLatencyHistogram queueTime = new MySQLLatencyHistogram();
+        private final MySQLLatencyHistogram executionTime = new MySQLLatencyHistogram();
+        private final MySQLLatencyHistogram mapperTime = new MySQLLatencyHistogram();
+
+        public long getStatements() {
+            return this.statements.sum();
+        }
+        public long getRows() {
+            return this.rows.sum();
+        }
+        public long getRetries() {
+            return this.retries.sum();
+        }
+        public long getErrors() {
+            return this.errors.sum();
+        }
+        public @NotNull MySQLLatencyHistogram getQueueTime() {
+            return this.queueTime;
+        }
+        public @NotNull MySQLLatencyHistogram getExecutionTime() {
+            return this.executionTime;
+        }
+        public @NotNull MySQLLatencyHistogram getMapperTime() {
+            return this.mapperTime;
+        }
+    }
+}
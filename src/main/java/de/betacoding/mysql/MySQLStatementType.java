@@ -0,0 +1,8 @@
+package de.betacoding.mysql;
+
+public enum MySQLStatementType {
+    QUERY,
+    UPDATE,
+    BATCH,
+    TRANSMIT
+}
@@ -0,0 +1,386 @@
+package de.betacoding.mysql;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ObjectArrays;
+import de.betacoding.util.ThrowableFunction;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.StringJoiner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Reads a whole table over several connections at once. The key range is cut into chunks, workers take the chunks in key
+// order and page through each with keyset pagination (key > last ORDER BY key LIMIT n), so every page is an index range
+// scan and no connection is held between pages. A chunk whose page fails resumes from the last key it delivered.
+// The key must be unique and not null, such as the primary key.
+public class MySQLTableScan<T> {
+    private static final int CHUNKS_PER_WORKER = 4;
+    private static final int BUFFERED_PAGES = 2;
+    private static final Object END = new Object();
+
+    private final MySQLQueryService service;
+    private final Executor executor;
+    private final String table;
+    private final String keyColumn;
+    private final ThrowableFunction<ResultSet, T> rowMapper;
+    private final AtomicInteger resumes = new AtomicInteger();
+
+    private List<String> columns = List.of();
+    private String filter;
+    private Object[] filterValues = new Object[0];
+    private int parallelism;
+    private int pageSize = 1000;
+    private int maxResumes = 3;
+    private boolean ordered = true;
+
+    protected MySQLTableScan(@NotNull MySQLQueryService service,
+                             @NotNull Executor executor,
+                             @NotNull String table,
+                             @NotNull String keyColumn,
+                             @NotNull ThrowableFunction<ResultSet, T> rowMapper) {
+        Preconditions.checkArgument(!table.isBlank(), "Table cannot be empty");
+        Preconditions.checkArgument(!keyColumn.isBlank(), "Key column cannot be empty");
+        this.service = service;
+        this.executor = executor;
+        this.table = table;
+        this.keyColumn = keyColumn;
+        this.rowMapper = rowMapper;
+        this.parallelism = Math.max(1, service.getScheduler().getConcurrency() - 1);
+    }
+
+    // Selects every column when none are given. The key column is always selected.
+    public @NotNull MySQLTableScan<T> setColumns(@NotNull String... columns) {
+        this.columns = List.of(columns);
+        return this;
+    }
+
+    public @NotNull MySQLTableScan<T> setFilter(@Nullable String condition, @NotNull Object... values) {
+        this.filter = condition;
+        this.filterValues = values;
+        return this;
+    }
+
+    public @NotNull MySQLTableScan<T> setParallelism(int parallelism) {
+        Preconditions.checkArgument(parallelism > 0, "Parallelism must be positive");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public @NotNull MySQLTableScan<T> setPageSize(int pageSize) {
+        Preconditions.checkArgument(pageSize > 0, "Page size must be positive");
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    // How often a chunk may resume after a failed page before the scan fails. Only failures the resilience policy
+    // considers retryable for an idempotent statement are resumed.
+    public @NotNull MySQLTableScan<T> setMaxResumes(int maxResumes) {
+        Preconditions.checkArgument(maxResumes >= 0, "Max resumes cannot be negative");
+        this.maxResumes = maxResumes;
+        return this;
+    }
+
+    // Ordered scans return rows in key order. Unordered ones return each page as soon as any worker has read it.
+    public @NotNull MySQLTableScan<T> setOrdered(boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+
+    public int getResumes() {
+        return this.resumes.get();
+    }
+
+    // The returned stream keeps workers busy until it is exhausted or closed, so use it with try-with-resources.
+    public @NotNull Stream<T> stream() throws MySQLServiceException {
+        final Run run;
+        try {
+            run = new Run(this.split());
+        } catch (SQLException exception) {
+            throw new MySQLServiceException(exception);
+        }
+        run.start();
+        return StreamSupport.stream(run, false).onClose(run::cancel);
+    }
+
+    private @NotNull String where(@NotNull String... conditions) {
+        final StringJoiner where = new StringJoiner(" AND ", " WHERE ", "").setEmptyValue("");
+        if (this.filter != null) where.add("(" + this.filter + ")");
+        for (String condition : conditions) {
+            where.add(condition);
+        }
+        return where.toString();
+    }
+
+    private @NotNull String pageQuery(boolean first, boolean bounded) {
+        final String key = MySQLQueryService.quoteIdentifier(this.keyColumn);
+        final StringJoiner select = new StringJoiner(", ");
+        if (this.columns.isEmpty()) {
+            select.add("*");
+        } else {
+            if (this.columns.stream().noneMatch(this.keyColumn::equalsIgnoreCase)) select.add(key);
+            this.columns.forEach(column -> select.add(MySQLQueryService.quoteIdentifier(column)));
+        }
+
+        final String lower = key + (first ? " >= ?" : " > ?");
+        return "SELECT " + select + " FROM " + MySQLQueryService.quoteIdentifier(this.table)
+                + (bounded ? this.where(lower, key + " < ?") : this.where(lower))
+                + " ORDER BY " + key + " LIMIT " + this.pageSize;
+    }
+
+    // Integer keys are split arithmetically. Any other ordered key is split at evenly spaced row offsets, which costs one
+    // index probe per chunk.
+    private @NotNull List<Chunk> split() throws SQLException {
+        final String key = MySQLQueryService.quoteIdentifier(this.keyColumn);
+        final String from = " FROM " + MySQLQueryService.quoteIdentifier(this.table);
+        final int chunkCount = this.parallelism * CHUNKS_PER_WORKER;
+
+        final Optional<Object[]> bounds = this.service.executeScanQuery("SELECT MIN(" + key + "), MAX(" + key + ")" + from + this.where(),
+                resultSet -> resultSet.next() ? new Object[]{resultSet.getObject(1), resultSet.getObject(2)} : null, this.filterValues);
+        if (bounds.isEmpty() || bounds.get()[0] == null) return List.of();
+
+        final List<Object> lowerBounds = new ArrayList<>();
+        final Object min = bounds.get()[0];
+        final Object max = bounds.get()[1];
+        if (isInteger(min) && isInteger(max)) {
+            final BigInteger lowest = new BigInteger(min.toString());
+            final BigInteger span = new BigInteger(max.toString()).subtract(lowest);
+            for (int i = 0; i < chunkCount; i++) {
+                final BigInteger lower = lowest.add(span.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(chunkCount)));
+                final Object bound = lower.bitLength() < Long.SIZE ? (Object) lower.longValue() : lower;
+                if (lowerBounds.isEmpty() || !lowerBounds.get(lowerBounds.size() - 1).equals(bound)) lowerBounds.add(bound);
+            }
+        } else {
+            final long rows = this.service.executeScanQuery("SELECT COUNT(*)" + from + this.where(),
+                    resultSet -> resultSet.next() ? resultSet.getLong(1) : 0L, this.filterValues).orElse(0L);
+            final String probe = "SELECT " + key + from + this.where() + " ORDER BY " + key + " LIMIT 1 OFFSET ?";
+            lowerBounds.add(min);
+            for (int i = 1; i < chunkCount; i++) {
+                final Optional<Object> bound = this.service.executeScanQuery(probe, resultSet -> resultSet.next() ? resultSet.getObject(1) : null,
+                        ObjectArrays.concat(this.filterValues, rows * i / chunkCount));
+                if (bound.isPresent() && !lowerBounds.get(lowerBounds.size() - 1).equals(bound.get())) lowerBounds.add(bound.get());
+            }
+        }
+
+        final List<Chunk> chunks = new ArrayList<>(lowerBounds.size());
+        for (int i = 0; i < lowerBounds.size(); i++) {
+            chunks.add(new Chunk(i, lowerBounds.get(i), i + 1 < lowerBounds.size() ? lowerBounds.get(i + 1) : null));
+        }
+        return chunks;
+    }
+
+    private static boolean isInteger(@NotNull Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte || value instanceof BigInteger;
+    }
+
+    private static @NotNull RuntimeException propagate(@NotNull Throwable exception) {
+        return exception instanceof RuntimeException runtimeException ? runtimeException : new RuntimeException(exception);
+    }
+
+    private static class Chunk {
+        private final int index;
+        private final Object lower;
+        private final Object upper;
+
+        private Chunk(int index, @NotNull Object lower, @Nullable Object upper) {
+            this.index = index;
+            this.lower = lower;
+            this.upper = upper;
+        }
+    }
+
+    private static class Page<T> {
+        private final List<T> rows;
+        private final Object lastKey;
+
+        private Page(@NotNull List<T> rows, @Nullable Object lastKey) {
+            this.rows = rows;
+            this.lastKey = lastKey;
+        }
+    }
+
+    private static class Failure {
+        private final Throwable cause;
+
+        private Failure(@NotNull Throwable cause) {
+            this.cause = cause;
+        }
+    }
+
+    // Ordered runs give every chunk its own buffer and drain them in key order; unordered runs share one buffer. Buffers
+    // are bounded, so a slow consumer stalls the workers between pages rather than piling rows up in memory.
+    private class Run extends Spliterators.AbstractSpliterator<T> {
+        private final Queue<Chunk> pending;
+        private final List<BlockingQueue<Object>> buffers;
+        private final String[] queries = {
+                MySQLTableScan.this.pageQuery(true, true),
+                MySQLTableScan.this.pageQuery(false, true),
+                MySQLTableScan.this.pageQuery(true, false),
+                MySQLTableScan.this.pageQuery(false, false)
+        };
+
+        private volatile boolean cancelled;
+        private volatile Throwable failure;
+
+        // Only touched by the consuming thread.
+        private int buffer;
+        private int remainingEnds;
+        private Iterator<T> page = Collections.emptyIterator();
+
+        private Run(@NotNull List<Chunk> chunks) {
+            super(Long.MAX_VALUE, MySQLTableScan.this.ordered ? Spliterator.ORDERED : 0);
+            this.pending = new ConcurrentLinkedQueue<>(chunks);
+            this.buffers = new ArrayList<>();
+            if (chunks.isEmpty()) return;
+            if (MySQLTableScan.this.ordered) {
+                chunks.forEach(chunk -> this.buffers.add(new ArrayBlockingQueue<>(BUFFERED_PAGES)));
+                this.remainingEnds = 1;
+            } else {
+                this.buffers.add(new ArrayBlockingQueue<>(BUFFERED_PAGES * MySQLTableScan.this.parallelism));
+                this.remainingEnds = chunks.size();
+            }
+        }
+
+        private void start() throws MySQLServiceException {
+            if (this.pending.isEmpty()) return;
+
+            final int workers = Math.min(MySQLTableScan.this.parallelism, this.pending.size());
+            int started = 0;
+            for (int i = 0; i < workers; i++) {
+                try {
+                    MySQLTableScan.this.executor.execute(this::work);
+                    started++;
+                } catch (RejectedExecutionException exception) {
+                    // The workers that did start take over the remaining chunks.
+                    if (started == 0) throw new MySQLServiceException(exception);
+                    break;
+                }
+            }
+        }
+
+        private void work() {
+            Chunk chunk;
+            while (!this.cancelled && (chunk = this.pending.poll()) != null) {
+                final BlockingQueue<Object> output = this.buffers.get(MySQLTableScan.this.ordered ? chunk.index : 0);
+                try {
+                    this.scan(chunk, output);
+                } catch (Throwable exception) {
+                    this.fail(exception);
+                    return;
+                }
+            }
+        }
+
+        private void scan(@NotNull Chunk chunk, @NotNull BlockingQueue<Object> output) throws Throwable {
+            final MySQLResiliencePolicy policy = MySQLTableScan.this.service.getResiliencePolicy();
+            final int pageSize = MySQLTableScan.this.pageSize;
+            final ThrowableFunction<ResultSet, Page<T>> pageMapper = resultSet -> {
+                final List<T> rows = new ArrayList<>(pageSize);
+                final int keyIndex = resultSet.findColumn(MySQLTableScan.this.keyColumn);
+                Object lastKey = null;
+                while (resultSet.next()) {
+                    lastKey = resultSet.getObject(keyIndex);
+                    rows.add(MySQLTableScan.this.rowMapper.apply(resultSet));
+                }
+                MySQLMappedRows.report(rows.size());
+                return new Page<>(rows, lastKey);
+            };
+
+            Object lastKey = null;
+            int resumed = 0;
+            while (!this.cancelled) {
+                final boolean first = lastKey == null;
+                final String query = this.queries[(first ? 0 : 1) + (chunk.upper == null ? 2 : 0)];
+                Object[] values = ObjectArrays.concat(MySQLTableScan.this.filterValues, first ? chunk.lower : lastKey);
+                if (chunk.upper != null) values = ObjectArrays.concat(values, chunk.upper);
+
+                final Page<T> page;
+                try {
+                    page = MySQLTableScan.this.service.executeScanQuery(query, pageMapper, values).orElseThrow();
+                } catch (SQLException | RuntimeException exception) {
+                    if (resumed >= MySQLTableScan.this.maxResumes || !policy.isRetryable(policy.classify(exception), true, true)) throw exception;
+                    resumed++;
+                    MySQLTableScan.this.resumes.incrementAndGet();
+                    TimeUnit.NANOSECONDS.sleep(policy.backoff(resumed).toNanos());
+                    continue;
+                }
+
+                if (!page.rows.isEmpty() && !this.deliver(output, page.rows)) return;
+                if (page.rows.size() < pageSize) break;
+                lastKey = page.lastKey;
+            }
+            this.deliver(output, END);
+        }
+
+        // Waits for room in the buffer, but gives up once the scan is cancelled and nobody will drain it anymore.
+        private boolean deliver(@NotNull BlockingQueue<Object> output, @NotNull Object item) throws InterruptedException {
+            while (!output.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                if (this.cancelled) return false;
+            }
+            return true;
+        }
+
+        private void fail(@NotNull Throwable exception) {
+            if (this.cancelled) return;
+            this.failure = exception;
+            this.cancelled = true;
+            // Wakes the consumer, which only ever waits on an empty buffer.
+            this.buffers.forEach(buffer -> buffer.offer(new Failure(exception)));
+        }
+
+        private void cancel() {
+            this.cancelled = true;
+            this.buffers.forEach(BlockingQueue::clear);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super T> action) {
+            while (!this.page.hasNext()) {
+                if (this.buffer == this.buffers.size()) return false;
+                if (this.failure != null) throw propagate(this.failure);
+
+                final Object item;
+                try {
+                    item = this.buffers.get(this.buffer).take();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    this.cancel();
+                    throw new RuntimeException(exception);
+                }
+
+                if (item == END) {
+                    if (--this.remainingEnds == 0) {
+                        this.buffer++;
+                        this.remainingEnds = 1;
+                    }
+                } else if (item instanceof Failure failure) {
+                    throw propagate(failure.cause);
+                } else {
+                    this.page = ((List<T>) item).iterator();
+                }
+            }
+            action.accept(this.page.next());
+            return true;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package de.betacoding.mysql;
+
+import com.google.common.base.Preconditions;
+import de.betacoding.util.ThrowableFunction;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+// One connection pinned for the whole transaction. Statements run directly on the calling thread; closing without commit rolls back.
+public class MySQLTransaction implements AutoCloseable {
+    private final MySQLQueryService service;
+    private final MySQLPooledConnection connection;
+    private final int previousIsolation;
+    private final boolean readOnly;
+    private final long submitted;
+    private final long started;
+    private final Set<String> writes = new HashSet<>();
+
+    private boolean completed;
+    private boolean closed;
+    private Throwable failure;
+
+    protected MySQLTransaction(@NotNull MySQLQueryService service,
+                               @NotNull MySQLPooledConnection connection,
+                               long submitted,
+                               @Nullable MySQLIsolationLevel isolationLevel,
+                               boolean readOnly) throws SQLException {
+        this.service = service;
+        this.connection = connection;
+        this.submitted = submitted;
+        this.started = System.nanoTime();
+
+        // Reading the isolation level may cost a round trip, so settings are only touched when asked for. Pooled
+        // connections are writable again once a read-only transaction closes.
+        final Connection rawConnection = connection.getConnection();
+        this.readOnly = readOnly;
+        try {
+            this.previousIsolation = isolationLevel == null ? -1 : rawConnection.getTransactionIsolation();
+            if (isolationLevel != null && isolationLevel.getLevel() != this.previousIsolation) {
+                rawConnection.setTransactionIsolation(isolationLevel.getLevel());
+            }
+            if (readOnly) rawConnection.setReadOnly(true);
+            rawConnection.setAutoCommit(false);
+        } catch (SQLException | RuntimeException exception) {
+            // Some of the settings may already be changed, so the connection is discarded rather than pooled with them.
+            connection.markBroken();
+            throw exception;
+        }
+    }
+
+    protected @NotNull MySQLPooledConnection getPooledConnection() {
+        return this.connection;
+    }
+    protected void recordWrite(@NotNull String sqlString) {
+        this.writes.add(sqlString);
+    }
+    protected long getSubmitted() {
+        return this.submitted;
+    }
+    protected long getStarted() {
+        return this.started;
+    }
+
+    public boolean isActive() {
+        return !this.completed;
+    }
+
+    private void checkActive() {
+        Preconditions.checkState(!this.completed, "Transaction is already completed");
+    }
+
+    public <T> @NotNull Optional<T> executeQuery(final @NotNull String sqlString,
+                                                 final @NotNull ThrowableFunction<ResultSet, T> mapper,
+                                                 final Object... values) throws MySQLServiceException {
+        this.checkActive();
+        try {
+            return this.service.executeTransactionalQuery(this, sqlString, mapper, values);
+        } catch (SQLException | RuntimeException exception) {
+            throw this.fail(exception);
+        }
+    }
+
+    public int executeUpdate(final @NotNull String sqlString, final Object... values) throws MySQLServiceException {
+        this.checkActive();
+        try {
+            return this.service.executeTransactionalUpdate(this, sqlString, values);
+        } catch (SQLException | RuntimeException exception) {
+            throw this.fail(exception);
+        }
+    }
+
+    public int @NotNull [] executeBatch(final int chunkSize,
+                                        final @NotNull String sqlString,
+                                        final @NotNull Iterable<Object[]> rows) throws MySQLServiceException {
+        this.checkActive();
+        try {
+            return this.service.executeTransactionalBatch(this, chunkSize, sqlString, rows);
+        } catch (SQLException | RuntimeException exception) {
+            throw this.fail(exception);
+        }
+    }
+    public int @NotNull [] executeBatch(final @NotNull String sqlString,
+                                        final @NotNull Iterable<Object[]> rows) throws MySQLServiceException {
+        return this.executeBatch(MySQLQueryService.DEFAULT_BATCH_CHUNK_SIZE, sqlString, rows);
+    }
+
+    public @NotNull Savepoint setSavepoint() throws MySQLServiceException {
+        this.checkActive();
+        try {
+            return this.connection.getConnection().setSavepoint();
+        } catch (SQLException exception) {
+            throw this.fail(exception);
+        }
+    }
+    public @NotNull Savepoint setSavepoint(final @NotNull String name) throws MySQLServiceException {
+        this.checkActive();
+        try {
+            return this.connection.getConnection().setSavepoint(name);
+        } catch (SQLException exception) {
+            throw this.fail(exception);
+        }
+    }
+
+    public void rollbackTo(final @NotNull Savepoint savepoint) throws MySQLServiceException {
+        this.checkActive();
+        try {
+            this.connection.getConnection().rollback(savepoint);
+        } catch (SQLException exception) {
+            throw this.fail(exception);
+        }
+    }
+
+    public void releaseSavepoint(final @NotNull Savepoint savepoint) throws MySQLServiceException {
+        this.checkActive();
+        try {
+            this.connection.getConnection().releaseSavepoint(savepoint);
+        } catch (SQLException exception) {
+            throw this.fail(exception);
+        }
+    }
+
+    public void commit() throws MySQLServiceException {
+        this.checkActive();
+        try {
+            this.connection.getConnection().commit();
+        } catch (SQLException exception) {
+            this.setFailure(exception);
+            this.close();
+            throw this.fail(exception);
+        }
+        this.completed = true;
+        this.close();
+    }
+
+    public void rollback() throws MySQLServiceException {
+        this.checkActive();
+        try {
+            this.connection.getConnection().rollback();
+            this.completed = true;
+        } catch (SQLException exception) {
+            this.setFailure(exception);
+            this.completed = true;
+            // Restoring autocommit would commit the work that failed to roll back.
+            this.connection.markBroken();
+            throw this.fail(exception);
+        } finally {
+            this.close();
+        }
+    }
+
+    private @NotNull MySQLServiceException fail(@NotNull Exception exception) {
+        return new MySQLServiceException(exception);
+    }
+
+    // The cause reported to metrics when this transaction ends up rolled back.
+    protected void setFailure(@NotNull Throwable failure) {
+        if (this.failure == null) this.failure = failure;
+    }
+
+    // Rolls back unless committed, restores the connection's settings and returns it to the pool. A connection that could
+    // not be rolled back or restored is discarded instead. Safe to call repeatedly.
+    @Override
+    public void close() {
+        if (this.closed) return;
+        this.closed = true;
+
+        final Connection rawConnection = this.connection.getConnection();
+        try {
+            if (this.connection.isBroken()) return;
+            if (!this.completed) {
+                this.completed = true;
+                rawConnection.rollback();
+            }
+            rawConnection.setAutoCommit(true);
+            if (this.previousIsolation >= 0) rawConnection.setTransactionIsolation(this.previousIsolation);
+            if (this.readOnly) rawConnection.setReadOnly(false);
+        } catch (SQLException exception) {
+            this.setFailure(exception);
+            this.connection.markBroken();
+        } finally {
+            this.connection.close();
+            this.service.completeTransaction(this, this.writes, this.failure);
+        }
+    }
+}
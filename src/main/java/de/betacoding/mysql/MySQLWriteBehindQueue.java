@@ -0,0 +1,198 @@
+package de.betacoding.mysql;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Coalesces queued updates and commits them together, in the order they were queued. Consecutive writes of the same
+// statement go out as one batch, so interleaving statements yields smaller batches. A row's capacity is only given back
+// once it is committed.
+public class MySQLWriteBehindQueue implements AutoCloseable {
+    private final MySQLQueryService service;
+    private final int capacity;
+    private final int flushSize;
+    private final Duration flushTimeout;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = this.lock.newCondition();
+    private final ScheduledExecutorService flusher;
+
+    private List<Run> pending = new ArrayList<>();
+    private int pendingSize;
+    private int size;
+    private boolean flushScheduled;
+    private boolean closed;
+
+    protected MySQLWriteBehindQueue(@NotNull MySQLQueryService service, int capacity, int flushSize, @NotNull Duration flushInterval, @Nullable Duration flushTimeout) {
+        Preconditions.checkArgument(flushSize > 0, "Flush size must be positive");
+        Preconditions.checkArgument(capacity >= flushSize, "Capacity must be at least the flush size");
+        Preconditions.checkArgument(!flushInterval.isNegative() && !flushInterval.isZero(), "Flush interval must be positive");
+
+        this.service = service;
+        this.capacity = capacity;
+        this.flushSize = flushSize;
+        this.flushTimeout = flushTimeout;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("mysql-write-behind-%d")
+                .setDaemon(true)
+                .build());
+
+        long interval = flushInterval.toNanos();
+        this.flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.NANOSECONDS);
+    }
+
+    public @NotNull CompletableFuture<Integer> enqueue(final @NotNull String sqlString, final Object... values) {
+        return this.enqueue(null, sqlString, values);
+    }
+
+    // Blocks while the queue is full. With a timeout the returned future fails once it elapses instead.
+    public @NotNull CompletableFuture<Integer> enqueue(final @Nullable Duration timeout, final @NotNull String sqlString, final Object... values) {
+        Preconditions.checkArgument(!sqlString.isEmpty() && !sqlString.isBlank(), "SQLString cannot be empty");
+        Preconditions.checkNotNull(values, "Values cannot be null");
+
+        final PendingWrite write = new PendingWrite(values);
+
+        this.lock.lock();
+        try {
+            long remaining = timeout == null ? Long.MAX_VALUE : timeout.toNanos();
+            while (this.size >= this.capacity && !this.closed) {
+                if (remaining <= 0) {
+                    return CompletableFuture.failedFuture(new RejectedExecutionException("Write-behind queue is full"));
+                }
+                if (timeout == null) {
+                    this.notFull.await();
+                } else {
+                    remaining = this.notFull.awaitNanos(remaining);
+                }
+            }
+            if (this.closed) {
+                return CompletableFuture.failedFuture(new RejectedExecutionException("Write-behind queue is closed"));
+            }
+
+            final Run last = this.pending.isEmpty() ? null : this.pending.get(this.pending.size() - 1);
+            if (last != null && last.sqlString.equals(sqlString)) {
+                last.writes.add(write);
+            } else {
+                this.pending.add(new Run(sqlString, write));
+            }
+            this.pendingSize++;
+            this.size++;
+
+            if (this.pendingSize >= this.flushSize && !this.flushScheduled) {
+                this.flushScheduled = true;
+                this.flusher.execute(this::flush);
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(exception);
+        } finally {
+            this.lock.unlock();
+        }
+
+        return write.future;
+    }
+
+    public int size() {
+        this.lock.lock();
+        try {
+            return this.size;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public @NotNull CompletableFuture<Void> flushAsync() {
+        return CompletableFuture.runAsync(this::flush, this.flusher);
+    }
+
+    private void flush() {
+        final List<Run> batch;
+        final int batchSize;
+
+        this.lock.lock();
+        try {
+            this.flushScheduled = false;
+            if (this.pendingSize == 0) return;
+            batch = this.pending;
+            batchSize = this.pendingSize;
+            this.pending = new ArrayList<>();
+            this.pendingSize = 0;
+        } finally {
+            this.lock.unlock();
+        }
+
+        List<String> sqlStrings = batch.stream().map(run -> run.sqlString).toList();
+        List<List<Object[]>> rows = batch.stream().map(run -> run.writes.stream().map(write -> write.values).toList()).toList();
+
+        try {
+            // The flusher waits for the commit, so flushes still commit one after the other in queue order.
+            List<int[]> updateCounts = this.service.executeGroupCommitAsync(this.flushTimeout, sqlStrings, rows).join();
+            for (int i = 0; i < batch.size(); i++) {
+                List<PendingWrite> writes = batch.get(i).writes;
+                int[] counts = updateCounts.get(i);
+                for (int j = 0; j < writes.size(); j++) {
+                    writes.get(j).future.complete(counts[j]);
+                }
+            }
+        } catch (Throwable exception) {
+            final Throwable failure = exception instanceof CompletionException && exception.getCause() != null ? exception.getCause() : exception;
+            batch.forEach(run -> run.writes.forEach(write -> write.future.completeExceptionally(failure)));
+        } finally {
+            this.lock.lock();
+            try {
+                this.size -= batchSize;
+                this.notFull.signalAll();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    // Stops accepting writes and commits everything still queued.
+    @Override
+    public void close() {
+        this.lock.lock();
+        try {
+            if (this.closed) return;
+            this.closed = true;
+            this.notFull.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+
+        this.flushAsync().join();
+        this.flusher.shutdown();
+    }
+
+    private static class Run {
+        private final String sqlString;
+        private final List<PendingWrite> writes = new ArrayList<>();
+
+        private Run(String sqlString, PendingWrite write) {
+            this.sqlString = sqlString;
+            this.writes.add(write);
+        }
+    }
+
+    private static class PendingWrite {
+        private final Object[] values;
+        private final CompletableFuture<Integer> future = new CompletableFuture<>();
+
+        private PendingWrite(Object[] values) {
+            this.values = values;
+        }
+    }
+}
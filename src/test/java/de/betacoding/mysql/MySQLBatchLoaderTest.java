@@ -0,0 +1,120 @@
+package de.betacoding.mysql;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+class MySQLBatchLoaderTest {
+    // Long enough that only full batches and explicit dispatches send queries.
+    private static final Duration WINDOW = Duration.ofMinutes(1);
+
+    private TestDatabase database;
+    private MySQLQueryService service;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        this.database = new TestDatabase();
+        this.service = this.database.openService(2);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        TestDatabase.shutdown(this.service);
+        this.database.close();
+    }
+
+    private MySQLBatchLoader<Long, String> nameLoader(int maxBatchSize) {
+        return this.service.batchLoader("test_user", "id", Long.class, resultSet -> resultSet.getString("name"), maxBatchSize, WINDOW);
+    }
+
+    @Test
+    void fullBatchesAreSentAtTheMaxBatchSize() {
+        MySQLBatchLoader<Long, String> loader = this.nameLoader(4);
+        List<CompletableFuture<Optional<String>>> futures = new ArrayList<>();
+        for (long id = 0; id < 10; id++) {
+            futures.add(loader.load(id));
+        }
+        assertEquals(2, loader.getBatches());
+        assertFalse(futures.get(9).isDone());
+
+        loader.dispatch();
+        for (int id = 0; id < 10; id++) {
+            assertEquals(Optional.of("user-" + id), futures.get(id).join());
+        }
+        assertEquals(3, loader.getBatches());
+        assertEquals(10, loader.getLoadedKeys());
+    }
+
+    @Test
+    void repeatedKeysShareOneLookup() {
+        MySQLBatchLoader<Long, String> loader = this.nameLoader(128);
+        CompletableFuture<Optional<String>> first = loader.load(5L);
+        CompletableFuture<Optional<String>> second = loader.load(5L);
+        CompletableFuture<Optional<String>> other = loader.load(6L);
+        assertNotSame(first, second);
+
+        // Callers get their own copy of the shared lookup, so one cannot cancel it for the others.
+        second.cancel(false);
+        loader.dispatch();
+        assertEquals(Optional.of("user-5"), first.join());
+        assertEquals(Optional.of("user-6"), other.join());
+        assertEquals(3, loader.getRequestedKeys());
+        assertEquals(2, loader.getLoadedKeys());
+        assertEquals(1, loader.getBatches());
+    }
+
+    @Test
+    void missingKeysCompleteEmpty() {
+        MySQLBatchLoader<Long, String> loader = this.nameLoader(128);
+        CompletableFuture<Map<Long, String>> rows = loader.loadAll(List.of(1L, 2L, 1L, 500L));
+        loader.dispatch();
+        assertEquals(Map.of(1L, "user-1", 2L, "user-2"), rows.join());
+    }
+
+    @Test
+    void keysMatchRowsByValueWhateverTheirType() throws SQLException {
+        // The column is BIGINT, but is read as the key type, so these Integer keys match even without normalization.
+        MySQLBatchLoader<Integer, String> byInteger = this.service.batchLoader("test_user", "id", Integer.class, resultSet -> resultSet.getString("name"), 128, WINDOW);
+        CompletableFuture<Optional<String>> user = byInteger.load(7);
+        byInteger.dispatch();
+        assertEquals(Optional.of("user-7"), user.join());
+        byInteger.setKeyNormalizer(Function.identity());
+        CompletableFuture<Optional<String>> identity = byInteger.load(8);
+        byInteger.dispatch();
+        assertEquals(Optional.of("user-8"), identity.join());
+
+        // A case-insensitive column matches keys the way a MySQL default collation does.
+        this.database.execute("CREATE TABLE test_tag (name VARCHAR_IGNORECASE(32) PRIMARY KEY, weight INT NOT NULL)");
+        this.database.execute("INSERT INTO test_tag (name, weight) VALUES ('alice', 3)");
+        MySQLBatchLoader<String, Integer> byName = this.service.batchLoader("test_tag", "name", String.class, resultSet -> resultSet.getInt("weight"), 128, WINDOW);
+        CompletableFuture<Optional<Integer>> tag = byName.load("Alice");
+        byName.dispatch();
+        assertEquals(Optional.of(3), tag.join());
+    }
+
+    @Test
+    void batchesRunOutsideTheCallersTransaction() throws MySQLServiceException {
+        MySQLBatchLoader<Long, String> loader = this.nameLoader(1);
+        Optional<String> seen = this.service.transaction(transaction -> {
+            transaction.executeUpdate(TestDatabase.INSERT_USER, 1000L, "uncommitted", 0);
+            // The batch fills on this thread, but must not read through the transaction's connection.
+            CompletableFuture<Optional<String>> future = loader.load(1000L);
+            assertEquals(1, loader.getBatches());
+            return future.join();
+        });
+        assertEquals(Optional.empty(), seen);
+    }
+}
@@ -0,0 +1,115 @@
+package de.betacoding.mysql;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLSyntaxErrorException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MySQLCircuitBreakerTest {
+    private static final Duration OPEN_DURATION = Duration.ofMillis(200);
+    private static final MySQLResiliencePolicy POLICY = new MySQLResiliencePolicy(3, Duration.ofMillis(1), Duration.ofMillis(10), 0.1, 10, 3, OPEN_DURATION);
+
+    @Test
+    void opensAfterConsecutiveConnectionFailures() {
+        MySQLCircuitBreaker breaker = new MySQLCircuitBreaker(POLICY);
+        breaker.onFailure(MySQLErrorKind.CONNECTION);
+        breaker.onFailure(MySQLErrorKind.CONNECTION);
+        assertEquals(MySQLCircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.onFailure(MySQLErrorKind.CONNECTION);
+        assertEquals(MySQLCircuitBreaker.State.OPEN, breaker.getState());
+        assertThrows(MySQLCircuitOpenException.class, breaker::acquirePermission);
+        assertEquals(1, breaker.getRejectedCalls());
+    }
+
+    @Test
+    void letsOneProbeThroughOnceTheOpenDurationHasPassed() throws Exception {
+        MySQLCircuitBreaker breaker = new MySQLCircuitBreaker(POLICY);
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure(MySQLErrorKind.CONNECTION);
+        }
+
+        Thread.sleep(OPEN_DURATION.toMillis() + 50);
+        assertEquals(MySQLCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertDoesNotThrow(breaker::acquirePermission);
+        // The probe holds the breaker open for everyone else until it reports back.
+        assertThrows(MySQLCircuitOpenException.class, breaker::acquirePermission);
+
+        breaker.onSuccess();
+        assertEquals(MySQLCircuitBreaker.State.CLOSED, breaker.getState());
+        assertDoesNotThrow(breaker::acquirePermission);
+    }
+
+    @Test
+    void failedProbeOpensTheBreakerAgain() throws Exception {
+        MySQLCircuitBreaker breaker = new MySQLCircuitBreaker(POLICY);
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure(MySQLErrorKind.CONNECTION);
+        }
+
+        Thread.sleep(OPEN_DURATION.toMillis() + 50);
+        breaker.acquirePermission();
+        breaker.onFailure(MySQLErrorKind.CONNECTION);
+        assertEquals(MySQLCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void timeoutsCountAsFailures() {
+        assertEquals(MySQLErrorKind.TIMEOUT, POLICY.classify(new SQLTimeoutException("Statement timed out")));
+        assertFalse(POLICY.isRetryable(MySQLErrorKind.TIMEOUT, true, false));
+
+        MySQLCircuitBreaker breaker = new MySQLCircuitBreaker(POLICY);
+        breaker.onFailure(MySQLErrorKind.TIMEOUT);
+        breaker.onFailure(MySQLErrorKind.CONNECTION);
+        breaker.onFailure(MySQLErrorKind.TIMEOUT);
+        assertEquals(MySQLCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void serverErrorsResetTheFailureCount() {
+        assertEquals(MySQLErrorKind.FATAL, POLICY.classify(new SQLSyntaxErrorException("Table doesn't exist", "42S02", 1146)));
+        assertEquals(MySQLErrorKind.CONNECTION, POLICY.classify(new SQLTransientConnectionException("Communications link failure")));
+        assertEquals(MySQLErrorKind.DEADLOCK, POLICY.classify(new SQLException("Deadlock found", "40001", 1213)));
+
+        MySQLCircuitBreaker breaker = new MySQLCircuitBreaker(POLICY);
+        breaker.onFailure(MySQLErrorKind.CONNECTION);
+        breaker.onFailure(MySQLErrorKind.CONNECTION);
+        // Any answer from the server shows it is reachable.
+        breaker.onFailure(MySQLErrorKind.FATAL);
+        breaker.onFailure(MySQLErrorKind.CONNECTION);
+        assertEquals(MySQLCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void saturatedPoolDoesNotOpenTheBreaker() throws Exception {
+        assertEquals(MySQLErrorKind.CLIENT_TIMEOUT, POLICY.classify(new MySQLClientTimeoutException("Timed out waiting for a pooled connection")));
+
+        try (TestDatabase database = new TestDatabase()) {
+            MySQLConnectionPool pool = database.openPool(new MySQLPoolSettings(1, 1, Duration.ofMinutes(10), Duration.ofMillis(20), false, 16));
+            MySQLQueryService service = new MySQLQueryService(pool, MySQLExecutionStrategy.POOLED, null, null, POLICY);
+            try {
+                MySQLPooledConnection held = pool.borrow();
+                for (int i = 0; i < 5; i++) {
+                    assertThrows(MySQLServiceException.class, () -> service.executeQuery(TestDatabase.SELECT_NAME, resultSet -> resultSet.next() ? resultSet.getString(1) : null, 1L));
+                    // A deadline too tight for the wait is the caller's limit, not the server's.
+                    assertThrows(MySQLServiceException.class, () -> service.executeQuery(Duration.ofMillis(5), true, TestDatabase.SELECT_NAME, resultSet -> resultSet.next() ? resultSet.getString(1) : null, 1L));
+                }
+                assertEquals(MySQLCircuitBreaker.State.CLOSED, service.getCircuitBreaker().getState());
+
+                held.close();
+                assertEquals(Optional.of("user-1"), service.executeQuery(TestDatabase.SELECT_NAME, resultSet -> resultSet.next() ? resultSet.getString(1) : null, 1L));
+            } finally {
+                TestDatabase.shutdown(service);
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package de.betacoding.mysql;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MySQLConnectionPoolTest {
+    private TestDatabase database;
+    private MySQLConnectionPool pool;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        this.database = new TestDatabase();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        if (this.pool != null) this.pool.close();
+        this.database.close();
+    }
+
+    @Test
+    void closingTwiceReturnsTheConnectionOnce() throws SQLException {
+        this.pool = this.database.openPool(new MySQLPoolSettings(0, 2, Duration.ofMinutes(10), Duration.ofSeconds(5), false, 16));
+
+        MySQLPooledConnection connection = this.pool.borrow();
+        connection.close();
+        connection.close();
+        assertEquals(0, this.pool.getActiveConnections());
+        assertEquals(1, this.pool.getIdleConnections());
+
+        // A second copy in the idle deque would hand the same connection to both borrowers.
+        MySQLPooledConnection first = this.pool.borrow();
+        MySQLPooledConnection second = this.pool.borrow();
+        assertSame(connection, first);
+        assertNotSame(first, second);
+        assertEquals(2, this.pool.getActiveConnections());
+        first.close();
+        second.close();
+    }
+
+    @Test
+    void releaseRollsBackUncommittedWork() throws SQLException {
+        this.pool = this.database.openPool(1);
+
+        MySQLPooledConnection connection = this.pool.borrow();
+        Connection rawConnection = connection.getConnection();
+        rawConnection.setAutoCommit(false);
+        try (Statement statement = rawConnection.createStatement()) {
+            statement.executeUpdate("DELETE FROM test_user");
+        }
+        connection.close();
+
+        assertEquals(TestDatabase.ROWS, this.database.count("test_user"));
+        try (MySQLPooledConnection reused = this.pool.borrow()) {
+            assertSame(connection, reused);
+            assertTrue(reused.getConnection().getAutoCommit());
+        }
+    }
+
+    @Test
+    void brokenConnectionIsDiscardedOnRelease() throws SQLException {
+        this.pool = this.database.openPool(1);
+
+        MySQLPooledConnection connection = this.pool.borrow();
+        connection.markBroken();
+        connection.close();
+
+        assertTrue(connection.getConnection().isClosed());
+        assertEquals(0, this.pool.getIdleConnections());
+        try (MySQLPooledConnection replacement = this.pool.borrow()) {
+            assertNotSame(connection, replacement);
+        }
+    }
+
+    @Test
+    void borrowTimesOutWhenThePoolIsExhausted() throws SQLException {
+        this.pool = this.database.openPool(new MySQLPoolSettings(1, 1, Duration.ofMinutes(10), Duration.ofMillis(100), false, 16));
+
+        MySQLPooledConnection held = this.pool.borrow();
+        assertThrows(SQLTimeoutException.class, () -> this.pool.borrow());
+        held.close();
+        this.pool.borrow().close();
+    }
+
+    @Test
+    void idleConnectionsAboveTheMinimumAreEvicted() throws Exception {
+        this.pool = this.database.openPool(new MySQLPoolSettings(1, 3, Duration.ofMillis(100), Duration.ofSeconds(5), false, 16));
+
+        MySQLPooledConnection first = this.pool.borrow();
+        MySQLPooledConnection second = this.pool.borrow();
+        MySQLPooledConnection third = this.pool.borrow();
+        first.close();
+        second.close();
+        third.close();
+        assertEquals(3, this.pool.getIdleConnections());
+
+        // The evictor runs once a second at the most.
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (this.pool.getIdleConnections() > 1 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(1, this.pool.getIdleConnections());
+        assertTrue(first.getConnection().isClosed() || second.getConnection().isClosed() || third.getConnection().isClosed());
+    }
+
+    @Test
+    void releasedStatementsKeepNoParameters() throws SQLException {
+        this.pool = this.database.openPool(2);
+        try (MySQLPooledConnection connection = this.pool.borrow()) {
+            PreparedStatement statement = connection.prepareStatement(TestDatabase.SELECT_NAME);
+            statement.setLong(1, 1L);
+            connection.releaseStatement(TestDatabase.SELECT_NAME, statement);
+
+            // The cached instance comes back, but without the value bound to it, as that could be a stream.
+            PreparedStatement reused = connection.prepareStatement(TestDatabase.SELECT_NAME);
+            assertSame(statement, reused);
+            assertThrows(SQLException.class, reused::executeQuery);
+            connection.releaseStatement(TestDatabase.SELECT_NAME, reused);
+        }
+    }
+
+    @Test
+    void settingsRejectInvalidValues() {
+        assertThrows(IllegalArgumentException.class, () -> new MySQLPoolSettings(5, 2, Duration.ofMinutes(10), Duration.ofSeconds(5), false, 16));
+        assertThrows(IllegalArgumentException.class, () -> new MySQLPoolSettings(-1, 2, Duration.ofMinutes(10), Duration.ofSeconds(5), false, 16));
+        assertThrows(IllegalArgumentException.class, () -> new MySQLPoolSettings(0, 0, Duration.ofMinutes(10), Duration.ofSeconds(5), false, 16));
+        assertThrows(IllegalArgumentException.class, () -> new MySQLPoolSettings(1, 2, Duration.ZERO, Duration.ofSeconds(5), false, 16));
+        assertThrows(IllegalArgumentException.class, () -> new MySQLPoolSettings(1, 2, Duration.ofMinutes(10), Duration.ofSeconds(-1), false, 16));
+        assertThrows(IllegalArgumentException.class, () -> new MySQLPoolSettings(1, 2, Duration.ofMinutes(10), Duration.ofSeconds(5), false, -1));
+    }
+}
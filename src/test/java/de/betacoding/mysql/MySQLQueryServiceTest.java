@@ -0,0 +1,173 @@
+package de.betacoding.mysql;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MySQLQueryServiceTest {
+    private TestDatabase database;
+    private MySQLQueryService service;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        this.database = new TestDatabase();
+        this.service = this.database.openService(2);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        TestDatabase.shutdown(this.service);
+        this.database.close();
+    }
+
+    private static @NotNull List<Object[]> newUsers(int count) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[] {1000L + i, "new-" + i, 0});
+        }
+        return rows;
+    }
+
+    @Test
+    void transactionalBatchIsAllOrNothing() throws MySQLServiceException, SQLException {
+        List<Object[]> rows = newUsers(10);
+        this.service.executeBatch(true, 4, TestDatabase.INSERT_USER, rows);
+        assertEquals(TestDatabase.ROWS + 10, this.database.count("test_user"));
+
+        // The duplicate key fails the third chunk after the first two were sent.
+        List<Object[]> failing = newUsers(10);
+        failing.replaceAll(row -> new Object[] {(Long) row[0] + 100, row[1], row[2]});
+        failing.set(9, new Object[] {0L, "duplicate", 0});
+        assertThrows(MySQLServiceException.class, () -> this.service.executeBatch(true, 4, TestDatabase.INSERT_USER, failing));
+        assertEquals(TestDatabase.ROWS + 10, this.database.count("test_user"));
+    }
+
+    @Test
+    void transactionalBatchRollsBackOnUncheckedFailure() throws MySQLServiceException, SQLException {
+        List<Object[]> rows = newUsers(10);
+        rows.set(6, null);
+        assertThrows(MySQLServiceException.class, () -> this.service.executeBatch(true, 4, TestDatabase.INSERT_USER, rows));
+        assertEquals(TestDatabase.ROWS, this.database.count("test_user"));
+
+        // The connection went back in autocommit mode, so later statements are not swallowed by an open transaction.
+        assertEquals(1, this.service.executeUpdate(TestDatabase.INSERT_USER, 2000L, "after", 0));
+        assertEquals(TestDatabase.ROWS + 1, this.database.count("test_user"));
+    }
+
+    @Test
+    void groupCommitRollsBackEveryGroupOnFailure() throws SQLException {
+        List<Object[]> updates = List.<Object[]>of(new Object[] {1L});
+        List<Object[]> inserts = newUsers(2);
+        inserts.add(null);
+
+        assertThrows(NullPointerException.class, () -> this.service.executeGroupCommit(
+                List.of("UPDATE test_user SET score = 99 WHERE id = ?", TestDatabase.INSERT_USER),
+                List.of(updates, inserts)));
+        assertEquals(TestDatabase.ROWS, this.database.count("test_user"));
+        assertEquals(0, this.database.count("test_user WHERE score = 99"));
+    }
+
+    @Test
+    void writeBehindFlushesInTheWriteLane() throws SQLException {
+        long started = this.service.getScheduler().getStartedTasks(MySQLPriority.WRITE);
+        try (MySQLWriteBehindQueue queue = this.service.writeBehind(10, 10, Duration.ofMinutes(1), Duration.ofSeconds(5))) {
+            CompletableFuture<Integer> insert = queue.enqueue(TestDatabase.INSERT_USER, 1000L, "queued", 0);
+            CompletableFuture<Integer> update = queue.enqueue("UPDATE test_user SET score = ? WHERE id = ?", 7, 1000L);
+            queue.flushAsync().join();
+
+            assertEquals(1, insert.join());
+            assertEquals(1, update.join());
+        }
+        assertEquals(1, this.database.count("test_user WHERE id = 1000 AND score = 7"));
+        assertEquals(started + 1, this.service.getScheduler().getStartedTasks(MySQLPriority.WRITE));
+
+        try (MySQLWriteBehindQueue queue = this.service.writeBehind(10, 10, Duration.ofMinutes(1))) {
+            CompletableFuture<Integer> duplicate = queue.enqueue(TestDatabase.INSERT_USER, 1L, "duplicate", 0);
+            queue.flushAsync().join();
+            CompletionException exception = assertThrows(CompletionException.class, duplicate::join);
+            assertTrue(exception.getCause() instanceof SQLException, exception.getCause().toString());
+        }
+    }
+
+    @Test
+    void queryFailsWhenItsDeadlinePasses() {
+        long start = System.nanoTime();
+        MySQLServiceException exception = assertThrows(MySQLServiceException.class, () ->
+                this.service.executeQuery(Duration.ofMillis(200), false, TestDatabase.SLOW_QUERY, resultSet -> resultSet.next() ? resultSet.getLong(1) : null));
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        assertNotNull(findTimeout(exception));
+        assertTrue(elapsed.compareTo(Duration.ofSeconds(2)) < 0, "Deadline of 200 ms took " + elapsed.toMillis() + " ms");
+    }
+
+    @Test
+    void defaultDeadlineAppliesToCompiledQueries() throws MySQLServiceException {
+        this.service.setDefaultQueryTimeout(Duration.ofMillis(200));
+        MySQLCompiledQuery query = this.service.compile(TestDatabase.SLOW_QUERY);
+
+        MySQLServiceException exception = assertThrows(MySQLServiceException.class, () ->
+                query.bind().executeQuery(resultSet -> resultSet.next() ? resultSet.getLong(1) : null));
+        assertNotNull(findTimeout(exception));
+
+        // The killed statement's connection is replaced, and the next call gets a fresh deadline.
+        Optional<String> name = this.service.executeQuery(TestDatabase.SELECT_NAME, resultSet -> resultSet.next() ? resultSet.getString(1) : null, 1L);
+        assertEquals(Optional.of("user-1"), name);
+    }
+
+    @Test
+    void defaultDeadlineAppliesToBatches() throws SQLException {
+        this.database.execute("CREATE TABLE test_total (total BIGINT)");
+        this.service.setDefaultQueryTimeout(Duration.ofMillis(200));
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[] {100_000_000_000L});
+
+        long start = System.nanoTime();
+        MySQLServiceException exception = assertThrows(MySQLServiceException.class, () ->
+                this.service.executeBatch("INSERT INTO test_total (total) SELECT SUM(X) FROM SYSTEM_RANGE(1, ?)", rows));
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        assertNotNull(findTimeout(exception));
+        assertTrue(elapsed.compareTo(Duration.ofSeconds(2)) < 0, "Deadline of 200 ms took " + elapsed.toMillis() + " ms");
+    }
+
+    @Test
+    void metricsCountTheRowsTheMapperRead() throws MySQLServiceException, SQLException {
+        MySQLStatementMetrics metrics = new MySQLStatementMetrics();
+        MySQLQueryService measured = new MySQLQueryService(this.database.openPool(1), MySQLExecutionStrategy.POOLED, null, metrics, MySQLResiliencePolicy.NONE);
+        try {
+            measured.executeQuery("SELECT id, name, score FROM test_user WHERE id < ?", MySQLRowMapper.of(User.class).toList(), 10L);
+            assertEquals(10, metrics.getStats(MySQLStatementType.QUERY).getRows());
+
+            // A mapper of its own is counted up to the row it stopped on.
+            measured.executeQuery(TestDatabase.SELECT_NAME, resultSet -> resultSet.next() ? resultSet.getString(1) : null, 1L);
+            assertEquals(11, metrics.getStats(MySQLStatementType.QUERY).getRows());
+        } finally {
+            TestDatabase.shutdown(measured);
+        }
+    }
+
+    record User(long id, String name, int score) {
+    }
+
+    private static SQLTimeoutException findTimeout(@NotNull Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTimeoutException timeout) return timeout;
+        }
+        return null;
+    }
+}
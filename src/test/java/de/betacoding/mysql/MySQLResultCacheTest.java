@@ -0,0 +1,107 @@
+package de.betacoding.mysql;
+
+import de.betacoding.util.ThrowableFunction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MySQLResultCacheTest {
+    private static final Duration TTL = Duration.ofMinutes(1);
+    private static final String SELECT_SCORE = "SELECT score FROM test_user WHERE id = ?";
+    private static final ThrowableFunction<ResultSet, Integer> SCORE = resultSet -> resultSet.next() ? resultSet.getInt(1) : null;
+
+    private TestDatabase database;
+    private MySQLResultCache cache;
+    private MySQLQueryService service;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        this.database = new TestDatabase();
+        this.database.execute("CREATE TABLE test_group (user_id BIGINT NOT NULL, name VARCHAR(64) NOT NULL)");
+        this.database.execute("INSERT INTO test_group (user_id, name) VALUES (1, 'admins')");
+        this.cache = new MySQLResultCache(100);
+        this.service = new MySQLQueryService(this.database.openPool(2), MySQLExecutionStrategy.POOLED, this.cache, null, MySQLResiliencePolicy.NONE);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        TestDatabase.shutdown(this.service);
+        this.database.close();
+    }
+
+    @Test
+    void resultIsServedUntilItsTableIsWritten() throws MySQLServiceException, SQLException {
+        assertEquals(Optional.of(1), this.service.executeCachedQuery(TTL, SELECT_SCORE, SCORE, 1L));
+
+        // Writes that bypass the service are not seen, which shows the second read came from the cache.
+        this.database.execute("UPDATE test_user SET score = 41 WHERE id = 1");
+        assertEquals(Optional.of(1), this.service.executeCachedQuery(TTL, SELECT_SCORE, SCORE, 1L));
+        assertEquals(1, this.cache.getHits());
+
+        this.service.executeUpdate("UPDATE test_user SET score = 42 WHERE id = ?", 1L);
+        assertEquals(Optional.of(42), this.service.executeCachedQuery(TTL, SELECT_SCORE, SCORE, 1L));
+    }
+
+    @Test
+    void writeToAnyTableOfACommaJoinInvalidates() throws MySQLServiceException {
+        String sqlString = "SELECT g.name FROM test_user u, test_group g WHERE g.user_id = u.id AND u.id = ?";
+        ThrowableFunction<ResultSet, String> mapper = resultSet -> resultSet.next() ? resultSet.getString(1) : null;
+        assertEquals(Optional.of("admins"), this.service.executeCachedQuery(TTL, sqlString, mapper, 1L));
+
+        this.service.executeUpdate("UPDATE test_group SET name = 'owners' WHERE user_id = ?", 1L);
+        assertEquals(Optional.of("owners"), this.service.executeCachedQuery(TTL, sqlString, mapper, 1L));
+    }
+
+    @Test
+    void differentMappersDoNotShareEntries() throws MySQLServiceException {
+        ThrowableFunction<ResultSet, String> text = resultSet -> resultSet.next() ? "score " + resultSet.getInt(1) : null;
+        assertEquals(Optional.of(3), this.service.executeCachedQuery(TTL, SELECT_SCORE, SCORE, 3L));
+        assertEquals(Optional.of("score 3"), this.service.executeCachedQuery(TTL, SELECT_SCORE, text, 3L));
+        assertEquals(0, this.cache.getHits());
+    }
+
+    @Test
+    void catalogsDoNotShareEntriesOrInvalidations() {
+        MySQLResultCache shared = new MySQLResultCache(100);
+        String sqlString = "SELECT name FROM test_user WHERE id = ?";
+        assertEquals(Optional.of("first"), shared.get(TTL, "first", sqlString, SCORE, new Object[] {1L}, () -> CompletableFuture.completedFuture(Optional.of("first"))).join());
+        assertEquals(Optional.of("second"), shared.get(TTL, "second", sqlString, SCORE, new Object[] {1L}, () -> CompletableFuture.completedFuture(Optional.of("second"))).join());
+
+        shared.invalidate("second", "UPDATE test_user SET name = 'x'");
+        assertEquals(Optional.of("first"), shared.get(TTL, "first", sqlString, SCORE, new Object[] {1L}, () -> CompletableFuture.completedFuture(Optional.of("reloaded"))).join());
+        assertEquals(Optional.of("reloaded"), shared.get(TTL, "second", sqlString, SCORE, new Object[] {1L}, () -> CompletableFuture.completedFuture(Optional.of("reloaded"))).join());
+
+        // A schema-qualified write reaches the other catalog, and a bare table name reaches every catalog.
+        shared.invalidate("second", "UPDATE `first`.test_user SET name = 'x'");
+        assertEquals(Optional.of("reloaded"), shared.get(TTL, "first", sqlString, SCORE, new Object[] {1L}, () -> CompletableFuture.completedFuture(Optional.of("reloaded"))).join());
+        shared.invalidateTables(Set.of("test_user"));
+        assertEquals(Optional.of("again"), shared.get(TTL, "second", sqlString, SCORE, new Object[] {1L}, () -> CompletableFuture.completedFuture(Optional.of("again"))).join());
+    }
+
+    @Test
+    void readTablesCoverJoinsAndSubqueries() {
+        assertEquals(Set.of("a", "b"), MySQLResultCache.readTables("SELECT * FROM a, b WHERE a.id = b.id"));
+        assertEquals(Set.of("db.a", "b", "c"), MySQLResultCache.readTables("SELECT * FROM `db`.`a` x JOIN b USING (id), c"));
+        assertEquals(Set.of("a", "b"), MySQLResultCache.readTables("SELECT * FROM a WHERE id IN (SELECT a_id FROM b) AND name <> 'FROM c'"));
+        assertEquals(Set.of(), MySQLResultCache.readTables("SELECT NOW()"));
+    }
+
+    @Test
+    void writtenTablesCoverMultiTableStatements() {
+        assertEquals(Set.of("a"), MySQLResultCache.writtenTables("INSERT INTO a (id) VALUES (?)"));
+        assertEquals(Set.of("a", "b"), MySQLResultCache.writtenTables("UPDATE a, b SET a.x = b.x WHERE a.id = b.id"));
+        assertEquals(Set.of("a", "b"), MySQLResultCache.writtenTables("DELETE a FROM a JOIN b ON a.id = b.id"));
+        assertEquals(Set.of("a", "b"), MySQLResultCache.writtenTables("DELETE FROM a, b USING a JOIN b"));
+        // Unclassified statements invalidate everything.
+        assertEquals(Set.of(), MySQLResultCache.writtenTables("CALL refresh()"));
+    }
+}
@@ -0,0 +1,125 @@
+package de.betacoding.mysql;
+
+import org.h2.tools.Server;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Every shard is an in-memory database behind one H2 TCP server, as repositories connect through a URL.
+class MySQLShardedRepositoryTest {
+    private static final AtomicInteger DATABASE_IDS = new AtomicInteger();
+    // Shard i holds the scores i + 1, i + 4, ... up to 10.
+    private static final int SHARDS = 3;
+    private static final String SELECT_SCORES = "SELECT score FROM test_score ORDER BY score";
+
+    private static Server server;
+
+    private MySQLShardedRepository repository;
+
+    @BeforeAll
+    static void startServer() throws SQLException {
+        server = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop();
+    }
+
+    @BeforeEach
+    void setUp() throws MySQLServiceException {
+        List<MySQLRepository> shards = new ArrayList<>();
+        for (int i = 0; i < SHARDS; i++) {
+            shards.add(new MySQLRepository(shardBuilder("mem:shard" + DATABASE_IDS.incrementAndGet() + ";MODE=MySQL;DB_CLOSE_DELAY=-1")));
+        }
+        this.repository = new MySQLShardedRepository(shards, MySQLShardStrategy.lookup(key -> (Integer) key));
+        this.repository.establish("").join();
+
+        for (int shard = 0; shard < SHARDS; shard++) {
+            MySQLQueryService service = this.repository.getShards().get(shard).getService();
+            service.executeUpdate("CREATE TABLE test_score (score INT NOT NULL)");
+            for (int score = shard + 1; score <= 10; score += SHARDS) {
+                service.executeUpdate("INSERT INTO test_score (score) VALUES (?)", score);
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.repository.close().join();
+    }
+
+    private static @NotNull MySQLConnectionBuilder shardBuilder(@NotNull String databaseName) {
+        MySQLConnectionBuilder builder = new MySQLConnectionBuilder("jdbc:h2:tcp:", "localhost", server.getPort(), databaseName, "sa")
+                .setLogger(TestDatabase.SILENT_LOGGER)
+                .setPoolSize(1, 2)
+                .setResiliencePolicy(MySQLResiliencePolicy.NONE);
+        // H2 takes its settings after the database name instead of as URL parameters.
+        for (MySQLConnectionProperty<?> property : MySQLConnectionProperty.defaultProperties()) {
+            builder.setProperty(property, null);
+        }
+        return builder;
+    }
+
+    @Test
+    void statementsWithAShardKeyGoToItsShard() throws MySQLServiceException {
+        this.repository.executeUpdate(2, "INSERT INTO test_score (score) VALUES (?)", 11);
+        assertEquals(1, this.repository.getShards().get(2).getService().executeQuery(
+                "SELECT COUNT(*) FROM test_score WHERE score = 11", resultSet -> resultSet.next() ? resultSet.getInt(1) : null).orElseThrow());
+        assertEquals(0, this.repository.getShards().get(0).getService().executeQuery(
+                "SELECT COUNT(*) FROM test_score WHERE score = 11", resultSet -> resultSet.next() ? resultSet.getInt(1) : null).orElseThrow());
+    }
+
+    @Test
+    void scatterMergesShardsInOrder() {
+        MySQLScatterResult<Integer> result = this.repository.scatter(null, Comparator.naturalOrder(), 0, SELECT_SCORES, resultSet -> resultSet.getInt(1));
+        assertTrue(result.isComplete());
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), result.getRows());
+    }
+
+    @Test
+    void scatterCutsTheMergedRowsToTheLimit() {
+        MySQLScatterResult<Integer> result = this.repository.scatter(null, Comparator.naturalOrder(), 4, SELECT_SCORES, resultSet -> resultSet.getInt(1));
+        assertEquals(List.of(1, 2, 3, 4), result.getRows());
+
+        // Without an order the shards' rows are concatenated in shard order.
+        MySQLScatterResult<Integer> unordered = this.repository.scatter(null, null, 3, SELECT_SCORES, resultSet -> resultSet.getInt(1));
+        assertEquals(List.of(1, 4, 7), unordered.getRows());
+    }
+
+    @Test
+    void limitIsRejectedForQueriesThatCannotTakeOne() {
+        assertThrows(IllegalArgumentException.class, () -> this.repository.scatter(null, null, 2, SELECT_SCORES + " LIMIT 5", resultSet -> resultSet.getInt(1)));
+        assertThrows(IllegalArgumentException.class, () -> this.repository.scatter(null, null, 2, SELECT_SCORES + " FOR UPDATE", resultSet -> resultSet.getInt(1)));
+
+        // The keyword inside a string literal is no clause of the query.
+        MySQLScatterResult<Integer> result = this.repository.scatter(null, Comparator.naturalOrder(), 2,
+                "SELECT score FROM test_score WHERE 'LIMIT' <> '' ORDER BY score", resultSet -> resultSet.getInt(1));
+        assertEquals(List.of(1, 2), result.getRows());
+    }
+
+    @Test
+    void failingShardsAreReportedWithTheOthersRows() throws MySQLServiceException {
+        this.repository.getShards().get(1).getService().executeUpdate("DROP TABLE test_score");
+
+        MySQLScatterResult<Integer> result = this.repository.scatter(null, Comparator.naturalOrder(), 0, SELECT_SCORES, resultSet -> resultSet.getInt(1));
+        assertFalse(result.isComplete());
+        assertEquals(Set.of(1), result.getFailures().keySet());
+        assertEquals(List.of(1, 3, 4, 6, 7, 9, 10), result.getRows());
+    }
+}
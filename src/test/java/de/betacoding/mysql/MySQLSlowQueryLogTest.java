@@ -0,0 +1,120 @@
+package de.betacoding.mysql;
+
+import de.betacoding.util.DebugLogger;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MySQLSlowQueryLogTest {
+    private static final long SLOW = Duration.ofSeconds(2).toNanos();
+    private static final long FAST = Duration.ofMillis(1).toNanos();
+
+    private final List<String> warnings = new ArrayList<>();
+    private final MySQLSlowQueryLog log = new MySQLSlowQueryLog(Duration.ofSeconds(1), Duration.ofMinutes(1), 100, new RecordingLogger());
+
+    @Test
+    void fingerprintReplacesLiterals() {
+        assertEquals("select * from t where name = ? and note = ? and id = ? and x = ?",
+                MySQLSlowQueryLog.fingerprint("SELECT * FROM t WHERE name = 'it''s' AND note = \"a\\\"b\" AND id = 42 AND x = 1.5e3"));
+        assertEquals("select * from t where h = ? and i = ? and b = ? and c = ?",
+                MySQLSlowQueryLog.fingerprint("SELECT * FROM t WHERE h = X'1F' AND i = 0x1F AND b = b'101' AND c = 0b101"));
+    }
+
+    @Test
+    void fingerprintDropsComments() {
+        assertEquals("select ?", MySQLSlowQueryLog.fingerprint("/* hint */ SELECT 1 -- trailing\n# other\n;"));
+    }
+
+    @Test
+    void fingerprintCollapsesLists() {
+        assertEquals("select * from t where id in (?+)", MySQLSlowQueryLog.fingerprint("SELECT * FROM t WHERE id IN (1, 2, 3)"));
+        assertEquals("select * from t where id in (?+)", MySQLSlowQueryLog.fingerprint("SELECT * FROM t WHERE id in (?,?)"));
+        assertEquals("insert into t (a, b) values (?+)", MySQLSlowQueryLog.fingerprint("INSERT INTO t (a, b) VALUES (1, 'x'), (2, 'y')"));
+        assertEquals("insert into t (a, b) values (?+)", MySQLSlowQueryLog.fingerprint("INSERT INTO t (a, b) VALUES (?, ?)"));
+    }
+
+    @Test
+    void fingerprintKeepsDigitsOfIdentifiers() {
+        assertEquals("select col2 from table1 join `t 2` on table1.id = `t 2`.id where a = ?",
+                MySQLSlowQueryLog.fingerprint("SELECT col2 FROM table1 JOIN `t 2` ON table1.id = `t 2`.id WHERE a = 1"));
+    }
+
+    @Test
+    void recordAggregatesByFingerprint() {
+        assertFalse(this.log.record(MySQLStatementType.QUERY, "SELECT name FROM t WHERE id = 1", FAST, 1, null));
+        assertFalse(this.log.record(MySQLStatementType.QUERY, "SELECT name FROM t WHERE id = 2", 3 * FAST, 1, null));
+        assertFalse(this.log.record(MySQLStatementType.QUERY, "SELECT name FROM t WHERE id = 3", FAST, 0, new IllegalStateException()));
+
+        MySQLSlowQueryLog.Entry entry = this.log.getTopQueries(1).get(0);
+        assertEquals("select name from t where id = ?", entry.getFingerprint());
+        assertEquals(3, entry.getCount());
+        assertEquals(5 * FAST, entry.getTotalNanos());
+        assertEquals(2, entry.getRows());
+        assertEquals(1, entry.getErrors());
+        assertEquals(0, this.log.getSlowStatements());
+    }
+
+    @Test
+    void onePlanPerFingerprintAndInterval() {
+        String first = "SELECT name FROM t WHERE id = 1";
+        assertTrue(this.log.record(MySQLStatementType.QUERY, first, SLOW, 1, null));
+        // The claim is held until the plan is logged, for every fingerprint.
+        assertFalse(this.log.record(MySQLStatementType.QUERY, "SELECT name FROM u WHERE id = 1", SLOW, 1, null));
+
+        this.log.explain(MySQLStatementType.QUERY, first, SLOW, 1, Runnable::run, () -> "plan");
+        assertEquals(1, this.warnings.size());
+        assertTrue(this.warnings.get(0).endsWith(System.lineSeparator() + "plan"), this.warnings.get(0));
+
+        // Once released, another fingerprint gets its plan, but the same one waits for the interval.
+        assertFalse(this.log.record(MySQLStatementType.QUERY, "SELECT name FROM t WHERE id = 2", SLOW, 1, null));
+        assertTrue(this.log.record(MySQLStatementType.QUERY, "SELECT name FROM u WHERE id = 1", SLOW, 1, null));
+        assertEquals(4, this.log.getSlowStatements());
+    }
+
+    @Test
+    void failedPlanReleasesTheClaim() {
+        assertTrue(this.log.record(MySQLStatementType.QUERY, "SELECT name FROM t", SLOW, 1, null));
+        this.log.explain(MySQLStatementType.QUERY, "SELECT name FROM t", SLOW, 1, Runnable::run, () -> {
+            throw new IllegalStateException("gone");
+        });
+        assertTrue(this.warnings.get(0).endsWith("EXPLAIN failed: gone"), this.warnings.get(0));
+        assertTrue(this.log.record(MySQLStatementType.QUERY, "SELECT name FROM u", SLOW, 1, null));
+    }
+
+    @Test
+    void unexplainableStatementsAreLoggedOncePerInterval() {
+        assertFalse(this.log.record(MySQLStatementType.BATCH, "INSERT INTO t (id) VALUES (?)", SLOW, 100, null));
+        assertFalse(this.log.record(MySQLStatementType.BATCH, "INSERT INTO t (id) VALUES (?)", SLOW, 100, null));
+        assertFalse(this.log.record(MySQLStatementType.QUERY, "SELECT name FROM t", SLOW, 0, new IllegalStateException()));
+        assertEquals(2, this.warnings.size());
+
+        // They do not hold the claim, so the next explainable statement still gets its plan.
+        assertTrue(this.log.record(MySQLStatementType.QUERY, "SELECT name FROM u", SLOW, 1, null));
+    }
+
+    private class RecordingLogger implements DebugLogger {
+        @Override
+        public void info(@NotNull String s) {
+        }
+
+        @Override
+        public void warning(@NotNull String s) {
+            MySQLSlowQueryLogTest.this.warnings.add(s);
+        }
+
+        @Override
+        public void severe(@NotNull String s) {
+        }
+
+        @Override
+        public void severe(@NotNull String s, @NotNull Throwable throwable) {
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package de.betacoding.mysql;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class MySQLTableScanTest {
+    private TestDatabase database;
+    private MySQLQueryService service;
+    // Makes the next page after the first of a chunk fail on its second row, once.
+    private final AtomicBoolean failNextPage = new AtomicBoolean();
+    private final List<Long> ids = new ArrayList<>();
+    private final List<String> words = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        this.database = new TestDatabase();
+        // Squares leave gaps that grow towards the end of the key range, so the arithmetic chunks hold uneven row counts.
+        this.database.execute("CREATE TABLE test_square (id BIGINT PRIMARY KEY, root INT NOT NULL)");
+        for (int root = 1; root <= 60; root++) {
+            this.database.execute("INSERT INTO test_square (id, root) VALUES (" + (long) root * root + ", " + root + ")");
+            this.ids.add((long) root * root);
+        }
+        this.database.execute("CREATE TABLE test_word (word VARCHAR(16) PRIMARY KEY)");
+        for (int i = 0; i < 50; i++) {
+            String word = (char) ('a' + i * 7 % 26) + "-" + i;
+            this.database.execute("INSERT INTO test_word (word) VALUES ('" + word + "')");
+            this.words.add(word);
+        }
+        this.words.sort(null);
+
+        MySQLConnectionPool pool = this.database.openPool(new MySQLPoolSettings(1, 4, Duration.ofMinutes(10), Duration.ofSeconds(5), false, 16), this::openConnection);
+        this.service = new MySQLQueryService(pool, MySQLExecutionStrategy.POOLED, null, null, MySQLResiliencePolicy.NONE);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        TestDatabase.shutdown(this.service);
+        this.database.close();
+    }
+
+    // Pages after the first of a chunk select rows above the last key they delivered.
+    private @NotNull Connection openConnection() throws SQLException {
+        return proxy(Connection.class, this.database.openConnection(), (method, args, result) ->
+                method.getName().equals("prepareStatement") && ((String) args[0]).contains(" > ?") ? this.failingStatement((PreparedStatement) result) : result);
+    }
+
+    private @NotNull PreparedStatement failingStatement(@NotNull PreparedStatement statement) {
+        return proxy(PreparedStatement.class, statement, (method, args, result) -> {
+            if (!method.getName().equals("executeQuery")) return result;
+            final AtomicInteger rows = new AtomicInteger();
+            return proxy(ResultSet.class, (ResultSet) result, (next, nextArgs, hasRow) -> {
+                if (next.getName().equals("next") && rows.incrementAndGet() == 2 && this.failNextPage.compareAndSet(true, false)) {
+                    throw new SQLTransientConnectionException("Connection lost mid-page");
+                }
+                return hasRow;
+            });
+        });
+    }
+
+    private static <T> @NotNull T proxy(@NotNull Class<T> type, @NotNull T target, @NotNull ResultFilter filter) {
+        final InvocationHandler handler = (instance, method, args) -> {
+            final Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException exception) {
+                throw exception.getCause();
+            }
+            return filter.apply(method, args, result);
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+
+    @FunctionalInterface
+    private interface ResultFilter {
+        Object apply(Method method, Object[] args, Object result) throws Throwable;
+    }
+
+    private @NotNull MySQLTableScan<Long> squares() {
+        return this.service.scan("test_square", "id", resultSet -> resultSet.getLong("id")).setParallelism(3).setPageSize(4);
+    }
+
+    @Test
+    void orderedScanReturnsEveryRowInKeyOrder() throws MySQLServiceException {
+        try (Stream<Long> rows = this.squares().stream()) {
+            assertEquals(this.ids, rows.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void unorderedScanReturnsEveryRowOnce() throws MySQLServiceException {
+        try (Stream<Long> rows = this.squares().setOrdered(false).stream()) {
+            assertEquals(this.ids, rows.sorted().collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void nonIntegerKeysAreSplitAtRowOffsets() throws MySQLServiceException {
+        MySQLTableScan<String> scan = this.service.scan("test_word", "word", resultSet -> resultSet.getString("word")).setParallelism(3).setPageSize(3);
+        try (Stream<String> rows = scan.stream()) {
+            assertEquals(this.words, rows.collect(Collectors.toList()));
+        }
+        try (Stream<String> rows = scan.setOrdered(false).stream()) {
+            assertEquals(this.words, rows.sorted().collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void filterAppliesToSplitAndPages() throws MySQLServiceException {
+        MySQLTableScan<Long> scan = this.squares().setFilter("root % 2 = ?", 0);
+        try (Stream<Long> rows = scan.stream()) {
+            assertEquals(this.ids.stream().filter(id -> Math.round(Math.sqrt(id)) % 2 == 0).collect(Collectors.toList()), rows.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void failedPageResumesFromTheLastDeliveredKey() throws MySQLServiceException {
+        MySQLTableScan<Long> scan = this.squares().setParallelism(1);
+        this.failNextPage.set(true);
+        try (Stream<Long> rows = scan.stream()) {
+            // The rows the failed page read before the failure are dropped and read again, so none is lost or repeated.
+            assertEquals(this.ids, rows.collect(Collectors.toList()));
+        }
+        assertFalse(this.failNextPage.get());
+        assertEquals(1, scan.getResumes());
+    }
+}
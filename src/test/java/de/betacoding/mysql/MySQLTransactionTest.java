@@ -0,0 +1,112 @@
+package de.betacoding.mysql;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MySQLTransactionTest {
+    private TestDatabase database;
+    private MySQLQueryService service;
+    // Methods of the connections that fail until removed again, and the autocommit changes made while rollback failed.
+    private final Set<String> failing = ConcurrentHashMap.newKeySet();
+    private final List<Boolean> autoCommitChanges = new ArrayList<>();
+    private final List<Connection> opened = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        this.database = new TestDatabase();
+        MySQLConnectionPool pool = this.database.openPool(new MySQLPoolSettings(1, 2, Duration.ofMinutes(10), Duration.ofSeconds(5), false, 16), this::openConnection);
+        this.service = new MySQLQueryService(pool, MySQLExecutionStrategy.POOLED, null, null, MySQLResiliencePolicy.NONE);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        TestDatabase.shutdown(this.service);
+        this.database.close();
+    }
+
+    private @NotNull Connection openConnection() throws SQLException {
+        final Connection connection = this.database.openConnection();
+        final Connection proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class}, (instance, method, args) -> {
+            if (this.failing.contains(method.getName())) throw new SQLException(method.getName() + " failed");
+            if (method.getName().equals("setAutoCommit") && this.failing.contains("rollback")) {
+                synchronized (this.autoCommitChanges) {
+                    this.autoCommitChanges.add((Boolean) args[0]);
+                }
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException exception) {
+                throw exception.getCause();
+            }
+        });
+        synchronized (this.opened) {
+            this.opened.add(proxy);
+        }
+        return proxy;
+    }
+
+    @Test
+    void commitKeepsTheWork() throws MySQLServiceException, SQLException {
+        this.service.transaction(transaction -> transaction.executeUpdate(TestDatabase.INSERT_USER, 1000L, "committed", 0));
+        assertEquals(TestDatabase.ROWS + 1, this.database.count("test_user"));
+    }
+
+    @Test
+    void closeWithoutCommitRollsBack() throws MySQLServiceException, SQLException {
+        try (MySQLTransaction transaction = this.service.beginTransaction()) {
+            transaction.executeUpdate(TestDatabase.INSERT_USER, 1000L, "abandoned", 0);
+        }
+        assertEquals(TestDatabase.ROWS, this.database.count("test_user"));
+
+        try (MySQLPooledConnection connection = this.service.getPool().borrow()) {
+            assertTrue(connection.getConnection().getAutoCommit());
+        }
+    }
+
+    @Test
+    void failedRollbackDiscardsTheConnectionWithoutCommitting() throws MySQLServiceException, SQLException {
+        MySQLTransaction transaction = this.service.beginTransaction();
+        Connection rawConnection = transaction.getPooledConnection().getConnection();
+        transaction.executeUpdate(TestDatabase.INSERT_USER, 1000L, "rolled back", 0);
+
+        this.failing.add("rollback");
+        assertThrows(MySQLServiceException.class, transaction::rollback);
+        assertFalse(transaction.isActive());
+        // Turning autocommit back on would have committed the insert.
+        assertTrue(this.autoCommitChanges.isEmpty(), "Autocommit changed to " + this.autoCommitChanges);
+        this.failing.clear();
+
+        assertTrue(rawConnection.isClosed());
+        assertEquals(0, this.service.getPool().getIdleConnections());
+        assertEquals(TestDatabase.ROWS, this.database.count("test_user"));
+    }
+
+    @Test
+    void failedSetupDiscardsTheConnection() throws SQLException {
+        this.failing.add("setAutoCommit");
+        assertThrows(MySQLServiceException.class, () -> this.service.beginTransaction(MySQLIsolationLevel.SERIALIZABLE, true));
+        this.failing.clear();
+
+        // The connection had its isolation level and read-only flag changed already.
+        assertEquals(0, this.service.getPool().getIdleConnections());
+        assertEquals(0, this.service.getPool().getActiveConnections());
+        assertTrue(this.opened.get(0).isClosed());
+    }
+}
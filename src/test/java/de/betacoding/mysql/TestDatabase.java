@@ -0,0 +1,108 @@
+package de.betacoding.mysql;
+
+import de.betacoding.util.DebugLogger;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// In-memory H2 in MySQL mode stands in for a server, so the tests run without one. Every instance is a database of its
+// own holding ROWS users with ids 0 to ROWS - 1.
+final class TestDatabase implements AutoCloseable {
+    static final int ROWS = 100;
+    static final String SELECT_NAME = "SELECT name FROM test_user WHERE id = ?";
+    static final String INSERT_USER = "INSERT INTO test_user (id, name, score) VALUES (?, ?, ?)";
+    // Runs for minutes unless cancelled, and H2 checks for cancellation while it runs.
+    static final String SLOW_QUERY = "SELECT SUM(X) FROM SYSTEM_RANGE(1, 100000000000)";
+
+    static final DebugLogger SILENT_LOGGER = new DebugLogger() {
+        @Override
+        public void info(@NotNull String s) {
+        }
+
+        @Override
+        public void warning(@NotNull String s) {
+        }
+
+        @Override
+        public void severe(@NotNull String s) {
+        }
+
+        @Override
+        public void severe(@NotNull String s, @NotNull Throwable throwable) {
+        }
+    };
+
+    private static final AtomicInteger DATABASE_IDS = new AtomicInteger();
+
+    private final String url;
+    private final Connection keepAlive;
+
+    TestDatabase() throws SQLException {
+        this.url = "jdbc:h2:mem:test" + DATABASE_IDS.incrementAndGet() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        this.keepAlive = DriverManager.getConnection(this.url);
+
+        this.execute("CREATE TABLE test_user (id BIGINT PRIMARY KEY, name VARCHAR(64) NOT NULL, score INT NOT NULL)");
+        try (PreparedStatement statement = this.keepAlive.prepareStatement(INSERT_USER)) {
+            for (int id = 0; id < ROWS; id++) {
+                statement.setLong(1, id);
+                statement.setString(2, "user-" + id);
+                statement.setInt(3, id % 10);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    @NotNull Connection openConnection() throws SQLException {
+        return DriverManager.getConnection(this.url);
+    }
+
+    @NotNull MySQLConnectionPool openPool(@NotNull MySQLPoolSettings settings, @NotNull MySQLConnectionPool.ConnectionFactory factory) throws SQLException {
+        MySQLConnectionPool pool = new MySQLConnectionPool(factory, settings, SILENT_LOGGER);
+        pool.start();
+        return pool;
+    }
+    @NotNull MySQLConnectionPool openPool(@NotNull MySQLPoolSettings settings) throws SQLException {
+        return this.openPool(settings, this::openConnection);
+    }
+    @NotNull MySQLConnectionPool openPool(int maxSize) throws SQLException {
+        return this.openPool(new MySQLPoolSettings(1, maxSize, Duration.ofMinutes(10), Duration.ofSeconds(5), false, 16));
+    }
+
+    @NotNull MySQLQueryService openService(int maxSize) throws SQLException {
+        return new MySQLQueryService(this.openPool(maxSize), MySQLExecutionStrategy.POOLED, null, null, MySQLResiliencePolicy.NONE);
+    }
+
+    // Statements on a connection of its own, outside any pool.
+    void execute(@NotNull String sqlString) throws SQLException {
+        try (Statement statement = this.keepAlive.createStatement()) {
+            statement.execute(sqlString);
+        }
+    }
+
+    int count(@NotNull String table) throws SQLException {
+        try (Statement statement = this.keepAlive.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    static void shutdown(@NotNull MySQLQueryService service) {
+        service.shutdown();
+        service.getPool().close();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        this.execute("SHUTDOWN");
+        this.keepAlive.close();
+    }
+}